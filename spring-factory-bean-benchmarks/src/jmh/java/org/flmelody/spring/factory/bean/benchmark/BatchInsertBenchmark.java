@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.flmelody.spring.factory.bean.JdbiRepositoryFactoryBean;
+import org.flmelody.spring.factory.bean.MultiRowInsert;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.sqlobject.SqlObjectPlugin;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Bulk load of a {@code @SqlBatch} insert against embedded H2, as a JDBC batch and as {@link
+ * MultiRowInsert} chunks.
+ *
+ * @author esotericman
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class BatchInsertBenchmark {
+
+  @Param({"100", "10000"})
+  private int rows;
+
+  private HikariDataSource dataSource;
+  private Jdbi jdbi;
+  private BatchItemRepository repository;
+  private List<Long> ids;
+  private List<String> names;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    dataSource = new HikariDataSource();
+    dataSource.setJdbcUrl("jdbc:h2:mem:batch;DB_CLOSE_DELAY=-1");
+    jdbi = Jdbi.create(dataSource).installPlugin(new SqlObjectPlugin());
+    jdbi.useHandle(
+        handle -> handle.execute("create table batch_item (id bigint, name varchar(64))"));
+    JdbiRepositoryFactoryBean<BatchItemRepository> factoryBean =
+        new JdbiRepositoryFactoryBean<>(BatchItemRepository.class);
+    factoryBean.setJdbi(jdbi);
+    repository = factoryBean.getObject();
+    ids = new ArrayList<>(rows);
+    names = new ArrayList<>(rows);
+    for (int i = 0; i < rows; i++) {
+      ids.add((long) i);
+      names.add("item-" + i);
+    }
+  }
+
+  @Setup(Level.Iteration)
+  public void truncate() {
+    jdbi.useHandle(handle -> handle.execute("truncate table batch_item"));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    jdbi.useHandle(handle -> handle.execute("drop table batch_item"));
+    dataSource.close();
+  }
+
+  @Benchmark
+  public int[] jdbcBatch() {
+    return repository.insert(ids, names);
+  }
+
+  @Benchmark
+  public int[] multiRowInsert() {
+    return repository.insertMultiRow(ids, names);
+  }
+}
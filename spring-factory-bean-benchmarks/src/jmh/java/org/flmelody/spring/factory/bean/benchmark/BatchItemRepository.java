@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.benchmark;
+
+import java.util.List;
+import org.flmelody.spring.factory.bean.MultiRowInsert;
+import org.flmelody.spring.factory.bean.annotation.SpringBean;
+import org.jdbi.v3.sqlobject.customizer.Bind;
+import org.jdbi.v3.sqlobject.statement.SqlBatch;
+
+/**
+ * @author esotericman
+ */
+@SpringBean
+public interface BatchItemRepository {
+
+  @SqlBatch("insert into batch_item (id, name) values (:id, :name)")
+  int[] insert(@Bind("id") List<Long> ids, @Bind("name") List<String> names);
+
+  @MultiRowInsert
+  @SqlBatch("insert into batch_item (id, name) values (:id, :name)")
+  int[] insertMultiRow(@Bind("id") List<Long> ids, @Bind("name") List<String> names);
+}
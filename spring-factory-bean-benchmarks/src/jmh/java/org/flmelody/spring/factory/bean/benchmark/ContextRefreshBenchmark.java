@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.benchmark;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.flmelody.spring.factory.bean.annotation.ProxyBeanDefinitionRegistryPostProcessor;
+import org.flmelody.spring.factory.bean.annotation.SpringBean;
+import org.flmelody.spring.factory.bean.annotation.SpringBeanScanDefinition;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.support.GenericApplicationContext;
+
+/**
+ * Refresh time of a context registering synthetic proxy beans, with and without lazy
+ * initialization.
+ *
+ * @author esotericman
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ContextRefreshBenchmark {
+
+  @Param({"100", "1000"})
+  private int interfaces;
+
+  @Param({"false", "true"})
+  private boolean lazyInitialization;
+
+  private SyntheticInterfaces syntheticInterfaces;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    syntheticInterfaces = SyntheticInterfaces.generate(interfaces);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    syntheticInterfaces.close();
+  }
+
+  @Benchmark
+  public int refresh() {
+    SpringBeanScanDefinition scanDefinition = new SpringBeanScanDefinition();
+    scanDefinition.setFactoryBean(StubFactoryBean.type());
+    scanDefinition.setBeanAnnotation(SpringBean.class);
+    scanDefinition.setBasePackages(SyntheticInterfaces.BASE_PACKAGE);
+    scanDefinition.setLazyInitialization(lazyInitialization);
+    try (GenericApplicationContext context = new GenericApplicationContext()) {
+      context.setClassLoader(syntheticInterfaces.getClassLoader());
+      context.registerBean(
+          ProxyBeanDefinitionRegistryPostProcessor.BEAN_NAME,
+          ProxyBeanDefinitionRegistryPostProcessor.class,
+          definition ->
+              definition.getPropertyValues().add("scanDefinitions", List.of(scanDefinition)));
+      context.refresh();
+      return context.getBeanDefinitionCount();
+    }
+  }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import org.flmelody.spring.factory.bean.annotation.ProxyBeanDefinitionRegistryPostProcessor;
+import org.flmelody.spring.factory.bean.annotation.ProxyClassPathBeanDefinitionScanner;
+import org.flmelody.spring.factory.bean.annotation.SpringBean;
+import org.flmelody.spring.factory.bean.annotation.SpringBeanScanDefinition;
+import org.openjdk.jol.info.GraphLayout;
+import org.springframework.beans.factory.FactoryBean;
+import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.support.AbstractBeanDefinition;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.type.filter.AnnotationTypeFilter;
+
+/**
+ * Retained size of the definitions registered for synthetic proxy beans, compared with the
+ * scanned definitions a plain classpath scan would leave in the registry.
+ *
+ * <p>Run with {@code ./gradlew :spring-factory-bean-benchmarks:definitionFootprint}.
+ *
+ * @author esotericman
+ */
+public final class DefinitionFootprint {
+
+  private DefinitionFootprint() {}
+
+  public static void main(String[] args) throws IOException {
+    int[] sizes = args.length == 0 ? new int[] {100, 1000, 5000} : parse(args);
+    System.out.printf(
+        "%10s %16s %16s %8s%n", "interfaces", "scanned (bytes)", "compact (bytes)", "ratio");
+    for (int interfaces : sizes) {
+      try (SyntheticInterfaces syntheticInterfaces = SyntheticInterfaces.generate(interfaces)) {
+        // class loaders and other shared infrastructure are retained either way
+        GraphLayout shared = GraphLayout.parseInstance(syntheticInterfaces.getClassLoader());
+        long scanned =
+            GraphLayout.parseInstance(scanned(syntheticInterfaces)).subtract(shared).totalSize();
+        long compact =
+            GraphLayout.parseInstance(registered(syntheticInterfaces)).subtract(shared).totalSize();
+        System.out.printf(
+            "%10d %16d %16d %8.2f%n", interfaces, scanned, compact, (double) compact / scanned);
+      }
+    }
+  }
+
+  private static Object[] scanned(SyntheticInterfaces syntheticInterfaces) {
+    ClassPathScanningCandidateComponentProvider provider =
+        new ClassPathScanningCandidateComponentProvider(false) {
+          /** {@inheritDoc} */
+          @Override
+          protected boolean isCandidateComponent(AnnotatedBeanDefinition beanDefinition) {
+            return beanDefinition.getMetadata().isInterface();
+          }
+        };
+    provider.setResourceLoader(new DefaultResourceLoader(syntheticInterfaces.getClassLoader()));
+    provider.addIncludeFilter(new AnnotationTypeFilter(SpringBean.class));
+    Set<BeanDefinition> candidates =
+        provider.findCandidateComponents(SyntheticInterfaces.BASE_PACKAGE);
+    for (BeanDefinition candidate : candidates) {
+      // configured as the scanner configured them before compact definitions were registered
+      String beanClassName = candidate.getBeanClassName();
+      candidate.getConstructorArgumentValues().addGenericArgumentValue(beanClassName);
+      candidate.setBeanClassName(StubFactoryBean.class.getName());
+      candidate.setAttribute(FactoryBean.OBJECT_TYPE_ATTRIBUTE, beanClassName);
+      candidate.setAttribute(
+          ProxyClassPathBeanDefinitionScanner.PROXY_INTERFACE_ATTRIBUTE, beanClassName);
+      ((AbstractBeanDefinition) candidate)
+          .setAutowireMode(AbstractBeanDefinition.AUTOWIRE_BY_TYPE);
+      candidate.setLazyInit(true);
+      candidate.setScope(BeanDefinition.SCOPE_SINGLETON);
+    }
+    return candidates.toArray();
+  }
+
+  private static Object[] registered(SyntheticInterfaces syntheticInterfaces) {
+    SpringBeanScanDefinition scanDefinition = new SpringBeanScanDefinition();
+    scanDefinition.setFactoryBean(StubFactoryBean.type());
+    scanDefinition.setBeanAnnotation(SpringBean.class);
+    scanDefinition.setBasePackages(SyntheticInterfaces.BASE_PACKAGE);
+    scanDefinition.setLazyInitialization(true);
+    try (GenericApplicationContext context = new GenericApplicationContext()) {
+      context.setClassLoader(syntheticInterfaces.getClassLoader());
+      context.registerBean(
+          ProxyBeanDefinitionRegistryPostProcessor.BEAN_NAME,
+          ProxyBeanDefinitionRegistryPostProcessor.class,
+          definition ->
+              definition.getPropertyValues().add("scanDefinitions", List.of(scanDefinition)));
+      context.refresh();
+      ConfigurableListableBeanFactory beanFactory = context.getBeanFactory();
+      List<BeanDefinition> definitions = new ArrayList<>();
+      for (String beanName : beanFactory.getBeanDefinitionNames()) {
+        BeanDefinition definition = beanFactory.getBeanDefinition(beanName);
+        if (definition.hasAttribute(
+            ProxyClassPathBeanDefinitionScanner.PROXY_INTERFACE_ATTRIBUTE)) {
+          definitions.add(definition);
+        }
+      }
+      return definitions.toArray();
+    }
+  }
+
+  private static int[] parse(String[] args) {
+    int[] sizes = new int[args.length];
+    for (int i = 0; i < args.length; i++) {
+      sizes[i] = Integer.parseInt(args[i]);
+    }
+    return sizes;
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.flmelody.spring.factory.bean.JdbiRepositoryFactoryBean;
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.sqlobject.SqlObjectPlugin;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Per-call cost of a {@link JdbiRepositoryFactoryBean} product against embedded H2, compared with
+ * a repository attached to an open handle.
+ *
+ * @author esotericman
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RepositoryInvocationBenchmark {
+  private static final int ROWS = 1_000;
+
+  private HikariDataSource dataSource;
+  private ItemRepository factoryBeanRepository;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    dataSource = new HikariDataSource();
+    dataSource.setJdbcUrl("jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1");
+    Jdbi jdbi = Jdbi.create(dataSource).installPlugin(new SqlObjectPlugin());
+    jdbi.useHandle(
+        handle -> {
+          handle.execute("create table item (id bigint primary key, name varchar(64))");
+          for (int i = 0; i < ROWS; i++) {
+            handle.execute("insert into item (id, name) values (?, ?)", i, "item-" + i);
+          }
+        });
+    JdbiRepositoryFactoryBean<ItemRepository> factoryBean =
+        new JdbiRepositoryFactoryBean<>(ItemRepository.class);
+    factoryBean.setJdbi(jdbi);
+    factoryBeanRepository = factoryBean.getObject();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    dataSource.close();
+  }
+
+  /** Handle attached once per benchmark thread. */
+  @State(Scope.Thread)
+  public static class AttachedHandle {
+    private Handle handle;
+    private ItemRepository repository;
+
+    @Setup(Level.Trial)
+    public void setUp(RepositoryInvocationBenchmark benchmark) {
+      handle = Jdbi.create(benchmark.dataSource).installPlugin(new SqlObjectPlugin()).open();
+      repository = handle.attach(ItemRepository.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      handle.close();
+    }
+  }
+
+  @Benchmark
+  public String factoryBeanProduct() {
+    return factoryBeanRepository.findName(ThreadLocalRandom.current().nextInt(ROWS));
+  }
+
+  @Benchmark
+  public String attachedHandle(AttachedHandle attachedHandle) {
+    return attachedHandle.repository.findName(ThreadLocalRandom.current().nextInt(ROWS));
+  }
+}
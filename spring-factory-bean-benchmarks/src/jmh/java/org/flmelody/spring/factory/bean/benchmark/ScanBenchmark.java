@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.benchmark;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.flmelody.spring.factory.bean.annotation.ProxyClassPathBeanDefinitionScanner;
+import org.flmelody.spring.factory.bean.annotation.SpringBean;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinitionHolder;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.core.io.DefaultResourceLoader;
+
+/**
+ * Cost of {@link ProxyClassPathBeanDefinitionScanner#doScan(String...)} over synthetic packages.
+ *
+ * @author esotericman
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ScanBenchmark {
+
+  @Param({"10", "100", "1000", "10000"})
+  private int interfaces;
+
+  private SyntheticInterfaces syntheticInterfaces;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    syntheticInterfaces = SyntheticInterfaces.generate(interfaces);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    syntheticInterfaces.close();
+  }
+
+  @Benchmark
+  public Set<BeanDefinitionHolder> doScan() {
+    ProxyClassPathBeanDefinitionScanner scanner =
+        new ProxyClassPathBeanDefinitionScanner(new DefaultListableBeanFactory());
+    // a fresh resource loader, so that metadata is not cached across invocations
+    scanner.setResourceLoader(new DefaultResourceLoader(syntheticInterfaces.getClassLoader()));
+    scanner.setBeanAnnotation(SpringBean.class);
+    scanner.setFactoryBean(StubFactoryBean.type());
+    scanner.setBeanScope(BeanDefinition.SCOPE_SINGLETON);
+    scanner.registerFilters();
+    return scanner.doScan(SyntheticInterfaces.BASE_PACKAGE);
+  }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.benchmark;
+
+import java.lang.reflect.Proxy;
+import org.springframework.beans.factory.FactoryBean;
+
+/**
+ * Factory bean creating no-op proxies, so that benchmarks measure the bridge rather than a client
+ * library.
+ *
+ * @author esotericman
+ */
+public class StubFactoryBean<T> implements FactoryBean<T> {
+  private final Class<T> beanInterface;
+
+  public StubFactoryBean(Class<T> beanInterface) {
+    this.beanInterface = beanInterface;
+  }
+
+  @SuppressWarnings("unchecked")
+  static Class<? extends FactoryBean<?>> type() {
+    return (Class<? extends FactoryBean<?>>) (Class<?>) StubFactoryBean.class;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public T getObject() {
+    return beanInterface.cast(
+        Proxy.newProxyInstance(
+            beanInterface.getClassLoader(),
+            new Class<?>[] {beanInterface},
+            (proxy, method, args) -> null));
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Class<T> getObjectType() {
+    return beanInterface;
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.benchmark;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.flmelody.spring.factory.bean.annotation.SpringBean;
+import org.springframework.asm.AnnotationVisitor;
+import org.springframework.asm.ClassWriter;
+import org.springframework.asm.Opcodes;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.FileSystemUtils;
+
+/**
+ * Generates a package of interfaces annotated with {@link SpringBean}, along with the same number
+ * of plain interfaces that the scanner has to reject.
+ *
+ * @author esotericman
+ */
+final class SyntheticInterfaces implements AutoCloseable {
+  static final String BASE_PACKAGE = "org.flmelody.spring.factory.bean.synthetic";
+  private final Path directory;
+  private final URLClassLoader classLoader;
+
+  private SyntheticInterfaces(Path directory) throws MalformedURLException {
+    this.directory = directory;
+    this.classLoader =
+        new URLClassLoader(
+            new URL[] {directory.toUri().toURL()}, SyntheticInterfaces.class.getClassLoader());
+  }
+
+  /**
+   * Write the given number of candidate interfaces to a temporary class directory.
+   *
+   * @param candidates number of annotated interfaces
+   * @return generated classes
+   */
+  static SyntheticInterfaces generate(int candidates) {
+    try {
+      Path directory = Files.createTempDirectory("synthetic-interfaces");
+      Path packageDirectory =
+          directory.resolve(ClassUtils.convertClassNameToResourcePath(BASE_PACKAGE));
+      for (int i = 0; i < candidates; i++) {
+        // spread the interfaces over sub-packages like a real code base
+        String subPackage = "module" + (i % 16);
+        Files.createDirectories(packageDirectory.resolve(subPackage));
+        write(directory, subPackage + ".Repository" + i, true);
+        write(directory, subPackage + ".Model" + i, false);
+      }
+      return new SyntheticInterfaces(directory);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static void write(Path directory, String name, boolean candidate) throws IOException {
+    String internalName = ClassUtils.convertClassNameToResourcePath(BASE_PACKAGE + "." + name);
+    ClassWriter writer = new ClassWriter(0);
+    writer.visit(
+        Opcodes.V17,
+        Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT | Opcodes.ACC_INTERFACE,
+        internalName,
+        null,
+        "java/lang/Object",
+        null);
+    if (candidate) {
+      String descriptor =
+          "L" + ClassUtils.convertClassNameToResourcePath(SpringBean.class.getName()) + ";";
+      AnnotationVisitor annotationVisitor = writer.visitAnnotation(descriptor, true);
+      annotationVisitor.visitEnd();
+    }
+    writer
+        .visitMethod(
+            Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT,
+            "findName",
+            "(J)Ljava/lang/String;",
+            null,
+            null)
+        .visitEnd();
+    writer.visitEnd();
+    Files.write(directory.resolve(internalName + ".class"), writer.toByteArray());
+  }
+
+  ClassLoader getClassLoader() {
+    return classLoader;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void close() throws IOException {
+    classLoader.close();
+    FileSystemUtils.deleteRecursively(directory);
+  }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.actuate;
+
+import java.util.List;
+import org.flmelody.spring.factory.bean.annotation.ProxyBeanCreationRecorder;
+import org.flmelody.spring.factory.bean.annotation.ProxyBeanDescriptor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+/**
+ * Lists the beans registered by {@code SpringBeanScan} with their factory, scope, laziness and
+ * creation time.
+ *
+ * @author esotericman
+ */
+@Endpoint(id = "proxybeans")
+public class ProxyBeansEndpoint {
+  private final ProxyBeanCreationRecorder creationRecorder;
+
+  public ProxyBeansEndpoint(ProxyBeanCreationRecorder creationRecorder) {
+    this.creationRecorder = creationRecorder;
+  }
+
+  @ReadOperation
+  public List<ProxyBeanDescriptor> proxyBeans() {
+    return creationRecorder.getProxyBeans();
+  }
+}
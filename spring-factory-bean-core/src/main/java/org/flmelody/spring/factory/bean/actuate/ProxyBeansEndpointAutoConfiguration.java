@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.actuate;
+
+import org.flmelody.spring.factory.bean.annotation.ProxyBeanCreationRecorder;
+import org.springframework.boot.actuate.autoconfigure.endpoint.condition.ConditionalOnAvailableEndpoint;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+
+/**
+ * @author esotericman
+ */
+@AutoConfiguration
+@ConditionalOnClass(Endpoint.class)
+@ConditionalOnAvailableEndpoint(endpoint = ProxyBeansEndpoint.class)
+public class ProxyBeansEndpointAutoConfiguration {
+
+  @Bean
+  @ConditionalOnBean(ProxyBeanCreationRecorder.class)
+  @ConditionalOnMissingBean
+  public ProxyBeansEndpoint proxyBeansEndpoint(ProxyBeanCreationRecorder creationRecorder) {
+    return new ProxyBeansEndpoint(creationRecorder);
+  }
+}
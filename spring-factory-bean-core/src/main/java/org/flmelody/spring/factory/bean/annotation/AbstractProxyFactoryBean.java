@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.annotation;
+
+import org.springframework.beans.factory.FactoryBean;
+
+/**
+ * Base of the factories creating scanned proxies. Each {@link #getObject()} call is timed by the
+ * {@link ProxyBeanCreationRecorder}, when the factory was registered by a scanner, as an {@code
+ * ApplicationStartup} step and as the last creation time of the bean.
+ *
+ * @author esotericman
+ */
+public abstract class AbstractProxyFactoryBean<T> implements FactoryBean<T> {
+  private ProxyBeanCreationRecorder creationRecorder;
+  private String recordedBeanName;
+  private String recordedBeanInterface;
+
+  /** {@inheritDoc} */
+  @Override
+  public final T getObject() throws Exception {
+    if (creationRecorder == null) {
+      return createProxy();
+    }
+    return creationRecorder.recordCreation(
+        recordedBeanName, recordedBeanInterface, this::createProxy);
+  }
+
+  /**
+   * Create the proxy.
+   *
+   * @return proxy of the bean interface
+   * @throws Exception exception of creation
+   */
+  protected abstract T createProxy() throws Exception;
+
+  /**
+   * set the recorder timing the creations of the bean.
+   *
+   * @param creationRecorder creationRecorder
+   * @param beanName name of the bean
+   * @param beanInterface interface proxied by the bean
+   */
+  void setCreationRecorder(
+      ProxyBeanCreationRecorder creationRecorder, String beanName, String beanInterface) {
+    this.creationRecorder = creationRecorder;
+    this.recordedBeanName = beanName;
+    this.recordedBeanInterface = beanInterface;
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.annotation;
+
+import jakarta.annotation.Nonnull;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.aop.target.LazyInitTargetSource;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.FactoryBean;
+
+/**
+ * Exposes a scanned bean through a proxy that only asks the actual factory for its product when a
+ * method is first called. The actual factory is registered under {@link #getTargetBeanName}.
+ *
+ * @author esotericman
+ */
+public class LazyResolutionProxyFactoryBean<T> implements FactoryBean<T>, BeanFactoryAware {
+
+  /** Prefix of the bean name the actual factory is registered under. */
+  public static final String TARGET_NAME_PREFIX = "lazyTarget.";
+
+  private final Class<T> beanInterface;
+  private final String targetBeanName;
+  private BeanFactory beanFactory;
+
+  public LazyResolutionProxyFactoryBean(Class<T> beanInterface, String targetBeanName) {
+    this.beanInterface = beanInterface;
+    this.targetBeanName = targetBeanName;
+  }
+
+  /**
+   * Return the bean name the actual factory of the given bean is registered under.
+   *
+   * @param beanName name of the lazily resolved bean
+   * @return target bean name
+   */
+  public static String getTargetBeanName(String beanName) {
+    return TARGET_NAME_PREFIX + beanName;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void setBeanFactory(@Nonnull BeanFactory beanFactory) throws BeansException {
+    this.beanFactory = beanFactory;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public T getObject() {
+    LazyInitTargetSource targetSource = new LazyInitTargetSource();
+    targetSource.setTargetBeanName(targetBeanName);
+    targetSource.setTargetClass(beanInterface);
+    targetSource.setBeanFactory(beanFactory);
+    ProxyFactory proxyFactory = new ProxyFactory();
+    proxyFactory.addInterface(beanInterface);
+    proxyFactory.setTargetSource(targetSource);
+    return beanInterface.cast(proxyFactory.getProxy(beanInterface.getClassLoader()));
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Class<T> getObjectType() {
+    return beanInterface;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public boolean isSingleton() {
+    return true;
+  }
+}
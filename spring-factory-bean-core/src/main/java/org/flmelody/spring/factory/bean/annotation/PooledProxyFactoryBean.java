@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.annotation;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.FactoryBean;
+
+/**
+ * Exposes a product of a {@link ProxyBeanPool} for the lifetime of one scope instance, and returns
+ * it to the pool when the scope ends. The actual factory is registered under {@link
+ * #getTargetBeanName} as a prototype.
+ *
+ * @author esotericman
+ */
+public class PooledProxyFactoryBean<T> implements FactoryBean<T>, DisposableBean {
+
+  /** Prefix of the bean name the actual factory is registered under. */
+  public static final String TARGET_NAME_PREFIX = "pooledTarget.";
+
+  private final Class<T> beanInterface;
+  private final ProxyBeanPool pool;
+  private ProxyBeanPool.Pooled borrowed;
+
+  public PooledProxyFactoryBean(Class<T> beanInterface, ProxyBeanPool pool) {
+    this.beanInterface = beanInterface;
+    this.pool = pool;
+  }
+
+  /**
+   * Return the bean name the actual factory of the given bean is registered under.
+   *
+   * @param beanName name of the pooled bean
+   * @return target bean name
+   */
+  public static String getTargetBeanName(String beanName) {
+    return TARGET_NAME_PREFIX + beanName;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public synchronized T getObject() throws Exception {
+    if (borrowed == null) {
+      borrowed = pool.borrow();
+    }
+    return beanInterface.cast(borrowed.getProduct());
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Class<T> getObjectType() {
+    return beanInterface;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public boolean isSingleton() {
+    return true;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public synchronized void destroy() {
+    if (borrowed != null) {
+      pool.release(borrowed);
+      borrowed = null;
+    }
+  }
+}
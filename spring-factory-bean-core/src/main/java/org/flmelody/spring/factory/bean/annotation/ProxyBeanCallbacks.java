@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.annotation;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.core.ResolvableType;
+
+/**
+ * Resolves the callback beans applied to proxy beans, such as {@link ProxyBeanWarmer}s, together
+ * with the type of beans each of them accepts.
+ *
+ * @author esotericman
+ */
+final class ProxyBeanCallbacks {
+
+  private ProxyBeanCallbacks() {}
+
+  /**
+   * Collect the ordered callback beans of a type, each with the bean type it accepts. The bean type
+   * is the one the callback declares, else the type argument of its class, else the type argument
+   * of its bean definition, such as the return type of a {@code @Bean} method returning a lambda.
+   *
+   * @param beanFactory bean factory holding the callbacks
+   * @param callbackType generic callback interface
+   * @param declaredType bean type declared by a callback, or null
+   * @param <C> callback interface
+   * @return callbacks in order
+   * @throws IllegalStateException if the bean type of a callback cannot be resolved
+   */
+  static <C> List<Typed<C>> resolve(
+      BeanFactory beanFactory, Class<C> callbackType, Function<C, Class<?>> declaredType) {
+    Map<Object, String> beanNames = new IdentityHashMap<>();
+    if (beanFactory instanceof ListableBeanFactory listableBeanFactory) {
+      listableBeanFactory
+          .getBeansOfType(callbackType)
+          .forEach((beanName, callback) -> beanNames.put(callback, beanName));
+    }
+    List<Typed<C>> callbacks = new ArrayList<>();
+    beanFactory
+        .getBeanProvider(callbackType)
+        .orderedStream()
+        .forEach(
+            callback -> {
+              String beanName = beanNames.get(callback);
+              Class<?> beanType = declaredType.apply(callback);
+              if (beanType == null) {
+                beanType =
+                    ResolvableType.forClass(callbackType, callback.getClass()).resolveGeneric(0);
+              }
+              if (beanType == null
+                  && beanName != null
+                  && beanFactory instanceof ConfigurableListableBeanFactory listableBeanFactory) {
+                // lambdas carry no type argument, their bean definition may
+                beanType =
+                    listableBeanFactory
+                        .getMergedBeanDefinition(beanName)
+                        .getResolvableType()
+                        .as(callbackType)
+                        .resolveGeneric(0);
+              }
+              if (beanType == null) {
+                throw new IllegalStateException(
+                    "Cannot resolve the bean type of "
+                        + callbackType.getSimpleName()
+                        + " '"
+                        + beanName
+                        + "', declare it with a type argument or override getBeanType()");
+              }
+              callbacks.add(new Typed<>(callback, beanType));
+            });
+    return callbacks;
+  }
+
+  /**
+   * A callback with the type of beans it accepts.
+   *
+   * @param callback the callback
+   * @param beanType accepted bean type
+   * @param <C> callback interface
+   */
+  record Typed<C>(C callback, Class<?> beanType) {}
+}
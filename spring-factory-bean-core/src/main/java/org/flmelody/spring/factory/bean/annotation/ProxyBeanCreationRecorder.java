@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.annotation;
+
+import jakarta.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.FactoryBean;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.core.metrics.ApplicationStartup;
+import org.springframework.core.metrics.StartupStep;
+
+/**
+ * Records the beans registered by {@link ProxyClassPathBeanDefinitionScanner}: the proxies their
+ * factories return are counted, and the {@code getObject()} calls of factories extending {@link
+ * AbstractProxyFactoryBean} are timed, as {@link ApplicationStartup} steps and as {@link
+ * ProxyBeanDescriptor}s. Neither the factories nor their proxies are replaced, so {@code
+ * &beanName} lookups return the factory itself.
+ *
+ * @author esotericman
+ */
+public class ProxyBeanCreationRecorder implements BeanPostProcessor, BeanFactoryAware {
+
+  /** Bean name of the recorder registered by {@link SpringBeanScannerRegistrar}. */
+  public static final String BEAN_NAME =
+      "org.flmelody.spring.factory.bean.annotation.internalProxyBeanCreationRecorder";
+
+  private final Map<String, Creation> creations = new ConcurrentHashMap<>();
+  private ConfigurableListableBeanFactory beanFactory;
+
+  /** {@inheritDoc} */
+  @Override
+  public void setBeanFactory(@Nonnull BeanFactory beanFactory) throws BeansException {
+    this.beanFactory = (ConfigurableListableBeanFactory) beanFactory;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Object postProcessBeforeInitialization(@Nonnull Object bean, @Nonnull String beanName)
+      throws BeansException {
+    if (bean instanceof AbstractProxyFactoryBean<?> factoryBean) {
+      String proxyInterface = proxyInterface(beanName);
+      if (proxyInterface != null) {
+        factoryBean.setCreationRecorder(this, beanName, proxyInterface);
+      }
+    }
+    return bean;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Object postProcessAfterInitialization(@Nonnull Object bean, @Nonnull String beanName)
+      throws BeansException {
+    if (!(bean instanceof FactoryBean<?>) && proxyInterface(beanName) != null) {
+      // products of factory beans are post-processed under the name of their factory
+      creations.computeIfAbsent(beanName, name -> new Creation()).count.incrementAndGet();
+    }
+    return bean;
+  }
+
+  /**
+   * Time the creation of a proxy, the step ends whether the creation succeeds or not.
+   *
+   * @param beanName name of the bean
+   * @param beanInterface interface proxied by the bean
+   * @param creation creation of the proxy
+   * @param <T> proxy type
+   * @return proxy
+   * @throws Exception exception of the creation
+   */
+  <T> T recordCreation(String beanName, String beanInterface, Callable<T> creation)
+      throws Exception {
+    StartupStep step =
+        beanFactory
+            .getApplicationStartup()
+            .start("flmelody.proxy-bean.create")
+            .tag("beanName", beanName)
+            .tag("beanInterface", beanInterface);
+    try {
+      long start = System.nanoTime();
+      T proxy = creation.call();
+      creations.computeIfAbsent(beanName, name -> new Creation()).lastNanos =
+          System.nanoTime() - start;
+      return proxy;
+    } catch (Exception | Error e) {
+      step.tag("failure", e.getClass().getName());
+      throw e;
+    } finally {
+      step.end();
+    }
+  }
+
+  /**
+   * Describe every bean registered by the scanners.
+   *
+   * @return descriptors, in registration order
+   */
+  public List<ProxyBeanDescriptor> getProxyBeans() {
+    List<ProxyBeanDescriptor> proxyBeans = new ArrayList<>();
+    for (String beanName : beanFactory.getBeanDefinitionNames()) {
+      BeanDefinition definition = beanFactory.getMergedBeanDefinition(beanName);
+      Object proxyInterface =
+          definition.getAttribute(ProxyClassPathBeanDefinitionScanner.PROXY_INTERFACE_ATTRIBUTE);
+      if (!(proxyInterface instanceof String proxyInterfaceName)) {
+        continue;
+      }
+      Creation creation = creations.get(beanName);
+      proxyBeans.add(
+          new ProxyBeanDescriptor(
+              beanName,
+              proxyInterfaceName,
+              definition.getBeanClassName(),
+              definition.getScope(),
+              definition.isLazyInit(),
+              creation != null ? creation.count.get() : 0,
+              creation != null ? creation.lastNanos : -1));
+    }
+    return proxyBeans;
+  }
+
+  private String proxyInterface(String beanName) {
+    if (!beanFactory.containsBeanDefinition(beanName)) {
+      return null;
+    }
+    Object proxyInterface =
+        beanFactory
+            .getMergedBeanDefinition(beanName)
+            .getAttribute(ProxyClassPathBeanDefinitionScanner.PROXY_INTERFACE_ATTRIBUTE);
+    return proxyInterface instanceof String proxyInterfaceName ? proxyInterfaceName : null;
+  }
+
+  private static class Creation {
+    private final AtomicLong count = new AtomicLong();
+    private volatile long lastNanos = -1;
+  }
+}
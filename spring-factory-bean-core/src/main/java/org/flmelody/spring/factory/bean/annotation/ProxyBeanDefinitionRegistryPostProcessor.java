@@ -18,6 +18,12 @@ package org.flmelody.spring.factory.bean.annotation;
 
 import jakarta.annotation.Nonnull;
 import java.lang.annotation.Annotation;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import org.springframework.beans.factory.FactoryBean;
 import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
 import org.springframework.beans.factory.support.BeanDefinitionRegistry;
@@ -25,13 +31,25 @@ import org.springframework.beans.factory.support.BeanDefinitionRegistryPostProce
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
 import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.core.metrics.ApplicationStartup;
+import org.springframework.core.metrics.StartupStep;
+import org.springframework.core.type.classreading.CachingMetadataReaderFactory;
 import org.springframework.util.StringUtils;
 
 /**
+ * Registers the beans of all {@link SpringBeanScan} declarations in one shared scan pass.
+ *
  * @author esotericman
  */
 public class ProxyBeanDefinitionRegistryPostProcessor
     implements BeanDefinitionRegistryPostProcessor, ApplicationContextAware {
+
+  /** Bean name of the post processor registered by {@link SpringBeanScannerRegistrar}. */
+  public static final String BEAN_NAME =
+      "org.flmelody.spring.factory.bean.annotation.internalProxyBeanRegistryPostProcessor";
+
+  private final List<SpringBeanScanDefinition> scanDefinitions = new ArrayList<>();
   private Class<? extends FactoryBean<?>> factoryBean;
   private String basePackages;
   private Class<? extends Annotation> beanAnnotation;
@@ -84,6 +102,16 @@ public class ProxyBeanDefinitionRegistryPostProcessor
     this.lazyInitialization = lazyInitialization;
   }
 
+  /**
+   * set scanDefinitions.
+   *
+   * @param scanDefinitions scanDefinitions
+   */
+  public void setScanDefinitions(List<SpringBeanScanDefinition> scanDefinitions) {
+    this.scanDefinitions.clear();
+    this.scanDefinitions.addAll(scanDefinitions);
+  }
+
   /** {@inheritDoc} */
   @Override
   public void setApplicationContext(@Nonnull ApplicationContext applicationContext) {
@@ -97,15 +125,79 @@ public class ProxyBeanDefinitionRegistryPostProcessor
   /** {@inheritDoc} */
   @Override
   public void postProcessBeanDefinitionRegistry(@Nonnull BeanDefinitionRegistry registry) {
-    ProxyClassPathBeanDefinitionScanner scanner = new ProxyClassPathBeanDefinitionScanner(registry);
-    scanner.setBeanAnnotation(this.beanAnnotation);
-    scanner.setResourceLoader(this.applicationContext);
-    scanner.setFactoryBean(this.factoryBean);
-    scanner.setLazyInitialization(this.lazyInitialization);
-    scanner.setBeanScope(this.beanScope);
-    scanner.registerFilters();
-    scanner.scan(
+    List<SpringBeanScanDefinition> definitions = new ArrayList<>(this.scanDefinitions);
+    if (this.factoryBean != null) {
+      definitions.add(getScanDefinition());
+    }
+    if (definitions.isEmpty()) {
+      return;
+    }
+    ApplicationStartup applicationStartup =
+        this.applicationContext instanceof ConfigurableApplicationContext configurableContext
+            ? configurableContext.getApplicationStartup()
+            : ApplicationStartup.DEFAULT;
+    StartupStep step =
+        applicationStartup
+            .start("flmelody.proxy-bean.scan")
+            .tag("scans", String.valueOf(definitions.size()));
+    // one metadata cache for all scans, overlapping packages are only read once
+    CachingMetadataReaderFactory metadataReaderFactory =
+        new CachingMetadataReaderFactory(this.applicationContext);
+    Environment environment = this.applicationContext.getEnvironment();
+    Map<ProxyClassPathBeanDefinitionScanner, String[]> scans = new LinkedHashMap<>();
+    int parallelism = 1;
+    for (SpringBeanScanDefinition definition : definitions) {
+      parallelism = Math.max(parallelism, definition.getParallelism());
+      ProxyClassPathBeanDefinitionScanner scanner =
+          new ProxyClassPathBeanDefinitionScanner(registry);
+      scanner.setBeanAnnotation(definition.getBeanAnnotation());
+      scanner.setResourceLoader(this.applicationContext);
+      scanner.setMetadataReaderFactory(metadataReaderFactory);
+      scanner.setFactoryBean(definition.getFactoryBean());
+      scanner.setLazyInitialization(definition.isLazyInitialization());
+      scanner.setLazyResolve(definition.isLazyResolve());
+      scanner.setPreInstantiate(definition.isPreInstantiate());
+      scanner.setPoolSize(definition.getPoolSize());
+      scanner.setPoolIdleTimeout(definition.getPoolIdleTimeout());
+      Map<String, String> factoryReferences = new LinkedHashMap<>();
+      definition
+          .getFactoryReferences()
+          .forEach(
+              (property, beanName) ->
+                  factoryReferences.put(
+                      property, environment.resolveRequiredPlaceholders(beanName)));
+      scanner.setFactoryReferences(factoryReferences);
+      scanner.setBeanScope(definition.getBeanScope());
+      scanner.setApplicationStartup(applicationStartup);
+      scanner.registerFilters();
+      scans.put(
+          scanner,
+          Arrays.stream(definition.getBasePackages())
+              .map(environment::resolveRequiredPlaceholders)
+              .toArray(String[]::new));
+    }
+    String scanCacheLocation = environment.getProperty(ProxyBeanScanCache.CACHE_LOCATION);
+    new ProxyBeanScanCoordinator(
+            this.applicationContext,
+            metadataReaderFactory,
+            parallelism,
+            applicationStartup,
+            StringUtils.hasText(scanCacheLocation)
+                ? new ProxyBeanScanCache(Paths.get(scanCacheLocation))
+                : null)
+        .scan(scans);
+    step.end();
+  }
+
+  private SpringBeanScanDefinition getScanDefinition() {
+    SpringBeanScanDefinition definition = new SpringBeanScanDefinition();
+    definition.setFactoryBean(this.factoryBean);
+    definition.setBasePackages(
         StringUtils.tokenizeToStringArray(
             this.basePackages, ConfigurableApplicationContext.CONFIG_LOCATION_DELIMITERS));
+    definition.setBeanAnnotation(this.beanAnnotation);
+    definition.setBeanScope(this.beanScope);
+    definition.setLazyInitialization(this.lazyInitialization);
+    return definition;
   }
 }
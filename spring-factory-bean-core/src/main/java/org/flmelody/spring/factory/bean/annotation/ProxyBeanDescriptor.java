@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.annotation;
+
+/**
+ * Description of a bean registered by {@link ProxyClassPathBeanDefinitionScanner}.
+ *
+ * @param beanName name of the bean
+ * @param beanInterface interface proxied by the bean
+ * @param factoryBean factory creating the proxy
+ * @param scope scope of the bean
+ * @param lazyInit whether the bean is created on first use
+ * @param creations number of proxies created so far
+ * @param lastCreationNanos time the last timed {@code getObject()} call took, -1 if none yet
+ * @author esotericman
+ */
+public record ProxyBeanDescriptor(
+    String beanName,
+    String beanInterface,
+    String factoryBean,
+    String scope,
+    boolean lazyInit,
+    long creations,
+    long lastCreationNanos) {}
@@ -0,0 +1,248 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.annotation;
+
+import jakarta.annotation.Nonnull;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.FactoryBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+
+/**
+ * Keeps the products of a scoped bean for reuse by later scope instances. The pool holds a fixed
+ * number of slots taken and filled with atomic operations, so that borrowing never blocks.
+ * Products idle for longer than the idle timeout are discarded together with their factory, by
+ * the next borrow or by a sweep running once per idle timeout on a shared daemon thread.
+ *
+ * @author esotericman
+ */
+public class ProxyBeanPool implements BeanFactoryAware, InitializingBean, DisposableBean {
+
+  /** Prefix of the bean name the pool of a bean is registered under. */
+  public static final String POOL_NAME_PREFIX = "pool.";
+
+  private static final Logger logger = LoggerFactory.getLogger(ProxyBeanPool.class);
+  private final String beanName;
+  private final String targetBeanName;
+  private final AtomicReferenceArray<Pooled> slots;
+  private final long idleTimeoutNanos;
+  private BeanFactory beanFactory;
+  private List<ProxyBeanCallbacks.Typed<ProxyBeanResetter<?>>> resetters;
+  private volatile boolean closed;
+  private ScheduledFuture<?> sweep;
+
+  public ProxyBeanPool(String beanName, String targetBeanName, int poolSize, long idleTimeout) {
+    this.beanName = beanName;
+    this.targetBeanName = targetBeanName;
+    this.slots = new AtomicReferenceArray<>(poolSize);
+    this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeout);
+  }
+
+  /**
+   * Return the bean name the pool of the given bean is registered under.
+   *
+   * @param beanName name of the pooled bean
+   * @return pool bean name
+   */
+  public static String getPoolBeanName(String beanName) {
+    return POOL_NAME_PREFIX + beanName;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void setBeanFactory(@Nonnull BeanFactory beanFactory) throws BeansException {
+    this.beanFactory = beanFactory;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void afterPropertiesSet() {
+    long period = TimeUnit.NANOSECONDS.toMillis(idleTimeoutNanos);
+    if (slots.length() > 0 && period > 0) {
+      sweep =
+          Sweeper.EXECUTOR.scheduleWithFixedDelay(
+              this::sweep, period, period, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Take an idle product, or create one if none is left.
+   *
+   * @return product with its factory
+   * @throws Exception failure of the factory
+   */
+  Pooled borrow() throws Exception {
+    long now = System.nanoTime();
+    for (int i = 0; i < slots.length(); i++) {
+      Pooled pooled = slots.getAndSet(i, null);
+      if (pooled == null) {
+        continue;
+      }
+      if (now - pooled.releasedAt > idleTimeoutNanos) {
+        discard(pooled);
+        continue;
+      }
+      return pooled;
+    }
+    // a new factory each time, as the target is a prototype
+    FactoryBean<?> factory =
+        (FactoryBean<?>) beanFactory.getBean(BeanFactory.FACTORY_BEAN_PREFIX + targetBeanName);
+    return new Pooled(factory, factory.getObject());
+  }
+
+  /**
+   * Return a product once its scope ended.
+   *
+   * @param pooled product with its factory
+   */
+  void release(Pooled pooled) {
+    if (closed || !reset(pooled.product)) {
+      discard(pooled);
+      return;
+    }
+    pooled.releasedAt = System.nanoTime();
+    for (int i = 0; i < slots.length(); i++) {
+      if (slots.compareAndSet(i, null, pooled)) {
+        return;
+      }
+    }
+    // the pool is full
+    discard(pooled);
+  }
+
+  /** Discard the products idle for longer than the idle timeout. */
+  void sweep() {
+    long now = System.nanoTime();
+    for (int i = 0; i < slots.length(); i++) {
+      Pooled pooled = slots.get(i);
+      if (pooled != null
+          && now - pooled.releasedAt > idleTimeoutNanos
+          && slots.compareAndSet(i, pooled, null)) {
+        try {
+          discard(pooled);
+        } catch (RuntimeException e) {
+          // a failing discard must not cancel later sweeps
+          logger.warn("Unable to discard idle pooled bean '" + beanName + "': " + e.getMessage());
+        }
+      }
+    }
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private boolean reset(Object product) {
+    if (resetters == null) {
+      resetters =
+          ProxyBeanCallbacks.<ProxyBeanResetter<?>>resolve(
+              beanFactory, (Class) ProxyBeanResetter.class, ProxyBeanResetter::getBeanType);
+    }
+    try {
+      for (ProxyBeanCallbacks.Typed<ProxyBeanResetter<?>> resetter : resetters) {
+        if (resetter.beanType().isInstance(product)) {
+          ((ProxyBeanResetter) resetter.callback()).reset(beanName, product);
+        }
+      }
+      return true;
+    } catch (Exception e) {
+      logger.warn("Discarding pooled bean '" + beanName + "' failing to reset: " + e.getMessage());
+      return false;
+    }
+  }
+
+  private void discard(Pooled pooled) {
+    if (beanFactory instanceof AutowireCapableBeanFactory autowireCapableBeanFactory) {
+      autowireCapableBeanFactory.destroyBean(pooled.factory);
+    }
+  }
+
+  public String getBeanName() {
+    return beanName;
+  }
+
+  /**
+   * Count the idle products.
+   *
+   * @return idle products
+   */
+  public int getIdleCount() {
+    int idle = 0;
+    for (int i = 0; i < slots.length(); i++) {
+      if (slots.get(i) != null) {
+        idle++;
+      }
+    }
+    return idle;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void destroy() {
+    closed = true;
+    if (sweep != null) {
+      sweep.cancel(false);
+    }
+    for (int i = 0; i < slots.length(); i++) {
+      Pooled pooled = slots.getAndSet(i, null);
+      if (pooled != null) {
+        discard(pooled);
+      }
+    }
+  }
+
+  /** Daemon thread sweeping all pools, started with the first pool. */
+  private static final class Sweeper {
+    private static final ScheduledThreadPoolExecutor EXECUTOR = createExecutor();
+
+    private static ScheduledThreadPoolExecutor createExecutor() {
+      ScheduledThreadPoolExecutor executor =
+          new ScheduledThreadPoolExecutor(
+              1,
+              runnable -> {
+                Thread thread = new Thread(runnable, "proxy-bean-pool-sweeper");
+                thread.setDaemon(true);
+                return thread;
+              });
+      executor.setRemoveOnCancelPolicy(true);
+      return executor;
+    }
+  }
+
+  /** A product with the factory that created it. */
+  static final class Pooled {
+    private final FactoryBean<?> factory;
+    private final Object product;
+    private volatile long releasedAt;
+
+    Pooled(FactoryBean<?> factory, Object product) {
+      this.factory = factory;
+      this.product = product;
+    }
+
+    Object getProduct() {
+      return product;
+    }
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.annotation;
+
+import jakarta.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanCreationException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * Creates the products of the scanned factories marked with {@link #PRE_INSTANTIATE_ATTRIBUTE} on
+ * a bounded pool once all singletons exist, and passes each of them to the matching {@link
+ * ProxyBeanWarmer}s. The refresh, and therefore readiness, waits for it to finish.
+ *
+ * @author esotericman
+ */
+public class ProxyBeanPreInstantiator implements SmartInitializingSingleton, BeanFactoryAware {
+
+  /** Bean name of the pre-instantiator registered by {@link SpringBeanScannerRegistrar}. */
+  public static final String BEAN_NAME =
+      "org.flmelody.spring.factory.bean.annotation.internalProxyBeanPreInstantiator";
+
+  /** Attribute marking definitions to pre-instantiate. */
+  public static final String PRE_INSTANTIATE_ATTRIBUTE =
+      ProxyBeanPreInstantiator.class.getName() + ".preInstantiate";
+
+  private static final Logger logger = LoggerFactory.getLogger(ProxyBeanPreInstantiator.class);
+  private ConfigurableListableBeanFactory beanFactory;
+
+  /** {@inheritDoc} */
+  @Override
+  public void setBeanFactory(@Nonnull BeanFactory beanFactory) throws BeansException {
+    this.beanFactory = (ConfigurableListableBeanFactory) beanFactory;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void afterSingletonsInstantiated() {
+    List<String> beanNames = new ArrayList<>();
+    for (String beanName : beanFactory.getBeanDefinitionNames()) {
+      BeanDefinition definition = beanFactory.getMergedBeanDefinition(beanName);
+      if (definition.isSingleton()
+          && Boolean.TRUE.equals(definition.getAttribute(PRE_INSTANTIATE_ATTRIBUTE))) {
+        beanNames.add(beanName);
+      }
+    }
+    if (beanNames.isEmpty()) {
+      return;
+    }
+    List<ProxyBeanCallbacks.Typed<ProxyBeanWarmer<?>>> warmers = resolveWarmers();
+    long start = System.nanoTime();
+    CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("proxy-bean-warmup-");
+    threadFactory.setDaemon(true);
+    ExecutorService executorService =
+        Executors.newFixedThreadPool(
+            Math.min(beanNames.size(), Runtime.getRuntime().availableProcessors()),
+            threadFactory);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (String beanName : beanNames) {
+        futures.add(executorService.submit(() -> preInstantiate(beanName, warmers)));
+      }
+      for (int i = 0; i < futures.size(); i++) {
+        await(beanNames.get(i), futures.get(i));
+      }
+    } finally {
+      executorService.shutdownNow();
+    }
+    if (logger.isInfoEnabled()) {
+      logger.info(
+          "Pre-instantiated "
+              + beanNames.size()
+              + " proxy bean(s) in "
+              + (System.nanoTime() - start) / 1_000_000
+              + " ms");
+    }
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private List<ProxyBeanCallbacks.Typed<ProxyBeanWarmer<?>>> resolveWarmers() {
+    return ProxyBeanCallbacks.<ProxyBeanWarmer<?>>resolve(
+        beanFactory, (Class) ProxyBeanWarmer.class, ProxyBeanWarmer::getBeanType);
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private Void preInstantiate(
+      String beanName, List<ProxyBeanCallbacks.Typed<ProxyBeanWarmer<?>>> warmers)
+      throws Exception {
+    Object bean = beanFactory.getBean(beanName);
+    for (ProxyBeanCallbacks.Typed<ProxyBeanWarmer<?>> warmer : warmers) {
+      if (warmer.beanType().isInstance(bean)) {
+        ((ProxyBeanWarmer) warmer.callback()).warmUp(beanName, bean);
+      }
+    }
+    return null;
+  }
+
+  private static void await(String beanName, Future<?> future) {
+    try {
+      future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new BeanCreationException(beanName, "Interrupted during pre-instantiation", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof BeansException beansException) {
+        throw beansException;
+      }
+      throw new BeanCreationException(beanName, "Warm-up failed", e.getCause());
+    }
+  }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.annotation;
+
+import jakarta.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.annotation.Annotation;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.util.ResourceUtils;
+import org.springframework.util.StringUtils;
+
+/**
+ * Candidates accepted by previous scans, stored in a file per classpath entry and scan. An entry
+ * is reused as long as the fingerprint of its jar or directory is unchanged, so that a restart
+ * only reads the classes of modified entries.
+ *
+ * @author esotericman
+ */
+public final class ProxyBeanScanCache {
+
+  /** Property naming the cache file, no cache is used if it is not set. */
+  public static final String CACHE_LOCATION = "spring.factory.bean.scan.cache";
+
+  private static final Logger logger = LoggerFactory.getLogger(ProxyBeanScanCache.class);
+  private final Path file;
+  private final Properties entries = new Properties();
+  private final Set<String> seenKeys = new HashSet<>();
+  private boolean modified;
+
+  ProxyBeanScanCache(Path file) {
+    this.file = file;
+    if (Files.isRegularFile(file)) {
+      try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+        this.entries.load(reader);
+      } catch (IOException | IllegalArgumentException e) {
+        logger.warn("Ignoring unreadable scan cache " + file + ": " + e.getMessage());
+        this.entries.clear();
+      }
+    }
+  }
+
+  /**
+   * Build the key of a classpath entry scanned for the given annotation and packages.
+   *
+   * @param location URL of the package root in the classpath entry
+   * @param beanAnnotation annotation of the scan, null for all interfaces
+   * @param basePackages base packages of the scan
+   * @return key
+   */
+  static String key(
+      String location,
+      @Nullable Class<? extends Annotation> beanAnnotation,
+      String[] basePackages) {
+    return (beanAnnotation != null ? beanAnnotation.getName() : "*")
+        + "|"
+        + String.join(",", basePackages)
+        + "|"
+        + location;
+  }
+
+  private static String scanOf(String key) {
+    // annotation and packages, the location follows the second separator
+    return key.substring(0, key.indexOf('|', key.indexOf('|') + 1) + 1);
+  }
+
+  /**
+   * Return the candidate types of an entry.
+   *
+   * @param key key of the entry
+   * @param fingerprint current fingerprint of the entry
+   * @return candidate type names, or null if the entry is unknown or changed
+   */
+  @Nullable
+  List<String> get(String key, String fingerprint) {
+    this.seenKeys.add(key);
+    String value = this.entries.getProperty(key);
+    if (value == null) {
+      return null;
+    }
+    int separator = value.indexOf(';');
+    if (separator < 0 || !fingerprint.equals(value.substring(0, separator))) {
+      return null;
+    }
+    return List.of(StringUtils.commaDelimitedListToStringArray(value.substring(separator + 1)));
+  }
+
+  /**
+   * Record the candidate types of an entry.
+   *
+   * @param key key of the entry
+   * @param fingerprint current fingerprint of the entry
+   * @param types candidate type names
+   */
+  void put(String key, String fingerprint, Collection<String> types) {
+    this.entries.setProperty(key, fingerprint + ";" + String.join(",", types));
+    this.seenKeys.add(key);
+    this.modified = true;
+  }
+
+  /**
+   * Write the cache file if any entry changed. Entries of the scans of this pass whose classpath
+   * entry was not seen again are dropped, entries of other scans are kept.
+   */
+  void store() {
+    Set<String> scans = new HashSet<>();
+    for (String key : this.seenKeys) {
+      scans.add(scanOf(key));
+    }
+    if (this.entries
+        .keySet()
+        .removeIf(key -> !this.seenKeys.contains(key) && scans.contains(scanOf((String) key)))) {
+      this.modified = true;
+    }
+    if (!this.modified) {
+      return;
+    }
+    try {
+      Path directory = this.file.toAbsolutePath().getParent();
+      Files.createDirectories(directory);
+      // replaced in one step, so that concurrent test JVMs never read a partial file
+      Path temporary = Files.createTempFile(directory, this.file.getFileName().toString(), ".tmp");
+      try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+        this.entries.store(writer, "spring-factory-bean scan cache");
+      }
+      try {
+        Files.move(
+            temporary,
+            this.file,
+            StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temporary, this.file, StandardCopyOption.REPLACE_EXISTING);
+      }
+      this.modified = false;
+    } catch (IOException e) {
+      logger.warn("Unable to write scan cache " + this.file + ": " + e.getMessage());
+    }
+  }
+
+  /**
+   * Compute the fingerprint of the classpath entry holding the given package root: size and
+   * modification time of a jar, or of every file below a directory.
+   *
+   * @param root package root
+   * @return fingerprint, or null if the entry cannot be fingerprinted
+   */
+  @Nullable
+  static String fingerprint(Resource root) {
+    try {
+      URL url = root.getURL();
+      if (ResourceUtils.isJarURL(url)) {
+        URL archive = ResourceUtils.extractArchiveURL(url);
+        if (!ResourceUtils.isFileURL(archive)) {
+          return null;
+        }
+        File jar = ResourceUtils.getFile(archive);
+        return "jar:" + jar.length() + ":" + jar.lastModified();
+      }
+      if (ResourceUtils.isFileURL(url)) {
+        return directoryFingerprint(root.getFile().toPath());
+      }
+    } catch (IOException e) {
+      if (logger.isDebugEnabled()) {
+        logger.debug("Unable to fingerprint " + root + ": " + e.getMessage());
+      }
+    }
+    return null;
+  }
+
+  private static String directoryFingerprint(Path directory) throws IOException {
+    long files = 0;
+    long hash = 0;
+    try (Stream<Path> paths = Files.walk(directory)) {
+      for (Iterator<Path> iterator = paths.iterator(); iterator.hasNext(); ) {
+        Path path = iterator.next();
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        if (!attributes.isRegularFile()) {
+          continue;
+        }
+        files++;
+        // summed, as the order of the walk is not specified
+        long fileHash =
+            Objects.hash(
+                    directory.relativize(path).toString(),
+                    attributes.size(),
+                    attributes.lastModifiedTime().toMillis())
+                * 0x9E3779B97F4A7C15L;
+        hash += fileHash ^ (fileHash >>> 32);
+      }
+    }
+    return "dir:" + files + ":" + Long.toHexString(hash);
+  }
+}
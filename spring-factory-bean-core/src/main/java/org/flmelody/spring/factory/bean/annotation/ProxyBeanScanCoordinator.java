@@ -0,0 +1,455 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.annotation;
+
+import jakarta.annotation.Nullable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import org.flmelody.spring.factory.bean.index.SpringBeanCandidateIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.BeanDefinitionStoreException;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.core.metrics.ApplicationStartup;
+import org.springframework.core.metrics.StartupStep;
+import org.springframework.core.type.classreading.MetadataReader;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Runs all scans in a single pass: every class resource below the union of the base packages is
+ * read once and offered to each scanner whose base packages contain it. With a parallelism above
+ * one, resources are resolved per classpath entry and parsed on a fork-join pool, while candidates
+ * are still registered on the calling thread in classpath order.
+ *
+ * @author esotericman
+ */
+class ProxyBeanScanCoordinator {
+  private static final Logger logger = LoggerFactory.getLogger(ProxyBeanScanCoordinator.class);
+  private final ResourcePatternResolver resourcePatternResolver;
+  private final MetadataReaderFactory metadataReaderFactory;
+  private final int parallelism;
+  private final ApplicationStartup applicationStartup;
+  private final ProxyBeanScanCache scanCache;
+
+  ProxyBeanScanCoordinator(
+      ResourcePatternResolver resourcePatternResolver,
+      MetadataReaderFactory metadataReaderFactory,
+      int parallelism,
+      ApplicationStartup applicationStartup,
+      @Nullable ProxyBeanScanCache scanCache) {
+    this.resourcePatternResolver = resourcePatternResolver;
+    this.metadataReaderFactory = metadataReaderFactory;
+    this.parallelism = parallelism;
+    this.applicationStartup = applicationStartup;
+    this.scanCache = scanCache;
+  }
+
+  /**
+   * Scan and register the candidates of all scanners.
+   *
+   * @param scans scanners with their resolved base packages
+   */
+  void scan(Map<ProxyClassPathBeanDefinitionScanner, String[]> scans) {
+    Map<ProxyClassPathBeanDefinitionScanner, String[]> classPathScans = new LinkedHashMap<>();
+    scans.forEach(
+        (scanner, basePackages) -> {
+          // scanners backed by the candidate index do not need the classpath walk
+          if (!scanner.isIndexed()) {
+            classPathScans.put(scanner, basePackages);
+          }
+        });
+    if (!classPathScans.isEmpty()) {
+      prepareCandidates(classPathScans);
+    }
+    scans.forEach(
+        (scanner, basePackages) -> {
+          StartupStep step =
+              this.applicationStartup
+                  .start("flmelody.proxy-bean.scan.definition")
+                  .tag("basePackages", String.join(",", basePackages));
+          step.tag("registered", String.valueOf(scanner.scan(basePackages))).end();
+        });
+  }
+
+  private void prepareCandidates(Map<ProxyClassPathBeanDefinitionScanner, String[]> scans) {
+    Map<ProxyClassPathBeanDefinitionScanner, Map<String, Set<BeanDefinition>>> candidates =
+        new HashMap<>();
+    List<String> basePackages = new ArrayList<>();
+    scans.forEach(
+        (scanner, packages) -> {
+          Map<String, Set<BeanDefinition>> scannerCandidates = new HashMap<>();
+          for (String basePackage : packages) {
+            scannerCandidates.put(basePackage, new LinkedHashSet<>());
+            basePackages.add(basePackage);
+          }
+          candidates.put(scanner, scannerCandidates);
+        });
+
+    Set<String> rootPackages = rootPackages(basePackages);
+    StartupStep step =
+        this.applicationStartup
+            .start("flmelody.proxy-bean.scan.read")
+            .tag("rootPackages", String.join(",", rootPackages))
+            .tag("parallelism", String.valueOf(this.parallelism));
+    ScanStatistics statistics = new ScanStatistics();
+    if (this.scanCache != null) {
+      readWithCache(rootPackages, scans, candidates, statistics);
+      this.scanCache.store();
+      step.tag("cachedEntries", String.valueOf(statistics.cachedEntries));
+    } else {
+      List<MetadataReader> metadataReaders =
+          this.parallelism > 1 ? readMetadataInParallel(rootPackages) : readMetadata(rootPackages);
+      for (MetadataReader metadataReader : metadataReaders) {
+        dispatchAll(metadataReader, scans, candidates, statistics);
+      }
+    }
+    candidates.forEach(ProxyClassPathBeanDefinitionScanner::setPreparedCandidates);
+    step.tag("resources", String.valueOf(statistics.resources))
+        .tag("accepted", String.valueOf(statistics.accepted))
+        .tag("rejected", String.valueOf(statistics.rejected))
+        .end();
+    if (logger.isDebugEnabled()) {
+      logger.debug(
+          "Read "
+              + statistics.resources
+              + " class resource(s) for "
+              + scans.size()
+              + " scan(s) with parallelism "
+              + this.parallelism
+              + (this.scanCache != null
+                  ? ", " + statistics.cachedEntries + " classpath entries from cache"
+                  : ""));
+    }
+  }
+
+  /**
+   * Offer a class to every scanner.
+   *
+   * @return scanners accepting the class
+   */
+  private List<ProxyClassPathBeanDefinitionScanner> dispatchAll(
+      MetadataReader metadataReader,
+      Map<ProxyClassPathBeanDefinitionScanner, String[]> scans,
+      Map<ProxyClassPathBeanDefinitionScanner, Map<String, Set<BeanDefinition>>> candidates,
+      ScanStatistics statistics) {
+    statistics.resources++;
+    String className = metadataReader.getClassMetadata().getClassName();
+    List<ProxyClassPathBeanDefinitionScanner> accepting = new ArrayList<>(1);
+    for (Map.Entry<ProxyClassPathBeanDefinitionScanner, String[]> scan : scans.entrySet()) {
+      ProxyClassPathBeanDefinitionScanner scanner = scan.getKey();
+      Boolean candidate =
+          dispatch(scanner, scan.getValue(), metadataReader, className, candidates.get(scanner));
+      if (candidate != null) {
+        if (candidate) {
+          statistics.accepted++;
+          accepting.add(scanner);
+        } else {
+          statistics.rejected++;
+        }
+      }
+    }
+    return accepting;
+  }
+
+  private void readWithCache(
+      Set<String> rootPackages,
+      Map<ProxyClassPathBeanDefinitionScanner, String[]> scans,
+      Map<ProxyClassPathBeanDefinitionScanner, Map<String, Set<BeanDefinition>>> candidates,
+      ScanStatistics statistics) {
+    for (String rootPackage : rootPackages) {
+      if (isPattern(rootPackage)) {
+        // patterns span classpath entries, they are scanned every time
+        for (MetadataReader metadataReader : readMetadata(Set.of(rootPackage))) {
+          dispatchAll(metadataReader, scans, candidates, statistics);
+        }
+        continue;
+      }
+      for (Resource root : getResources(packageRootPattern(rootPackage))) {
+        readEntryWithCache(rootPackage, root, scans, candidates, statistics);
+      }
+    }
+  }
+
+  private void readEntryWithCache(
+      String rootPackage,
+      Resource root,
+      Map<ProxyClassPathBeanDefinitionScanner, String[]> scans,
+      Map<ProxyClassPathBeanDefinitionScanner, Map<String, Set<BeanDefinition>>> candidates,
+      ScanStatistics statistics) {
+    String location;
+    try {
+      location = root.getURL().toString();
+    } catch (IOException e) {
+      throw new BeanDefinitionStoreException("I/O failure during classpath scanning", e);
+    }
+    String fingerprint = ProxyBeanScanCache.fingerprint(root);
+    Map<ProxyClassPathBeanDefinitionScanner, String> keys = new LinkedHashMap<>();
+    Map<ProxyClassPathBeanDefinitionScanner, List<String>> cachedTypes = new LinkedHashMap<>();
+    scans.forEach(
+        (scanner, packages) -> {
+          String key = ProxyBeanScanCache.key(location, scanner.getBeanAnnotation(), packages);
+          keys.put(scanner, key);
+          List<String> types = fingerprint != null ? this.scanCache.get(key, fingerprint) : null;
+          if (types != null) {
+            cachedTypes.put(scanner, types);
+          }
+        });
+    if (cachedTypes.size() == scans.size()) {
+      statistics.cachedEntries++;
+      cachedTypes.forEach(
+          (scanner, types) -> {
+            for (String type : types) {
+              // read from this entry, the class loader may resolve the name to another one
+              MetadataReader metadataReader = getMetadataReader(root, rootPackage, type);
+              if (metadataReader == null) {
+                continue;
+              }
+              statistics.resources++;
+              Boolean candidate =
+                  dispatch(
+                      scanner, scans.get(scanner), metadataReader, type, candidates.get(scanner));
+              if (Boolean.TRUE.equals(candidate)) {
+                statistics.accepted++;
+              }
+            }
+          });
+      return;
+    }
+    Map<ProxyClassPathBeanDefinitionScanner, List<String>> acceptedTypes = new LinkedHashMap<>();
+    scans.keySet().forEach(scanner -> acceptedTypes.put(scanner, new ArrayList<>()));
+    for (Resource resource : getResources(location + "**/*.class")) {
+      MetadataReader metadataReader = getMetadataReader(resource);
+      if (metadataReader != null) {
+        String className = metadataReader.getClassMetadata().getClassName();
+        for (ProxyClassPathBeanDefinitionScanner scanner :
+            dispatchAll(metadataReader, scans, candidates, statistics)) {
+          acceptedTypes.get(scanner).add(className);
+        }
+      }
+    }
+    if (fingerprint != null) {
+      acceptedTypes.forEach(
+          (scanner, types) -> this.scanCache.put(keys.get(scanner), fingerprint, types));
+    }
+  }
+
+  private List<MetadataReader> readMetadata(Set<String> rootPackages) {
+    List<MetadataReader> metadataReaders = new ArrayList<>();
+    for (String rootPackage : rootPackages) {
+      for (Resource resource : getResources(searchPath(rootPackage))) {
+        MetadataReader metadataReader = getMetadataReader(resource);
+        if (metadataReader != null) {
+          metadataReaders.add(metadataReader);
+        }
+      }
+    }
+    return metadataReaders;
+  }
+
+  private List<MetadataReader> readMetadataInParallel(Set<String> rootPackages) {
+    ForkJoinPool forkJoinPool = new ForkJoinPool(this.parallelism);
+    try {
+      // one search path per classpath entry, so that directories and jars are walked concurrently
+      List<String> searchPaths = new ArrayList<>();
+      for (String rootPackage : rootPackages) {
+        searchPaths.addAll(entrySearchPaths(rootPackage));
+      }
+      List<Resource> resources =
+          invoke(
+              forkJoinPool,
+              () ->
+                  searchPaths.parallelStream()
+                      .map(this::getResources)
+                      .flatMap(Arrays::stream)
+                      .toList());
+      return invoke(
+          forkJoinPool,
+          () ->
+              resources.parallelStream()
+                  .map(this::getMetadataReader)
+                  .filter(Objects::nonNull)
+                  .toList());
+    } finally {
+      forkJoinPool.shutdown();
+    }
+  }
+
+  private List<String> entrySearchPaths(String rootPackage) {
+    if (isPattern(rootPackage)) {
+      return List.of(searchPath(rootPackage));
+    }
+    List<String> searchPaths = new ArrayList<>();
+    for (Resource root : getResources(packageRootPattern(rootPackage))) {
+      try {
+        searchPaths.add(root.getURL() + "**/*.class");
+      } catch (IOException e) {
+        throw new BeanDefinitionStoreException("I/O failure during classpath scanning", e);
+      }
+    }
+    return searchPaths;
+  }
+
+  private static <T> T invoke(ForkJoinPool forkJoinPool, Callable<T> task) {
+    try {
+      return forkJoinPool.submit(task).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted during classpath scanning", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException runtimeException) {
+        throw runtimeException;
+      }
+      throw new IllegalStateException("Failure during classpath scanning", e.getCause());
+    }
+  }
+
+  /**
+   * Offer a class to a scanner.
+   *
+   * @return whether the class was accepted, null if it is outside the packages of the scanner
+   */
+  @Nullable
+  private Boolean dispatch(
+      ProxyClassPathBeanDefinitionScanner scanner,
+      String[] packages,
+      MetadataReader metadataReader,
+      String className,
+      Map<String, Set<BeanDefinition>> scannerCandidates) {
+    BeanDefinition candidate = null;
+    for (String basePackage : packages) {
+      if (!SpringBeanCandidateIndex.matchPackage(basePackage, className)) {
+        continue;
+      }
+      if (candidate == null) {
+        try {
+          candidate = scanner.resolveCandidate(metadataReader);
+        } catch (IOException e) {
+          throw new BeanDefinitionStoreException(
+              "Failed to read candidate component class: " + metadataReader.getResource(), e);
+        }
+        if (candidate == null) {
+          return false;
+        }
+      }
+      scannerCandidates.get(basePackage).add(candidate);
+    }
+    return candidate != null ? Boolean.TRUE : null;
+  }
+
+  private static String packageRootPattern(String basePackage) {
+    // one root per classpath entry containing the package
+    return ResourcePatternResolver.CLASSPATH_ALL_URL_PREFIX
+        + ClassUtils.convertClassNameToResourcePath(basePackage)
+        + "/";
+  }
+
+  private static String searchPath(String basePackage) {
+    return ResourcePatternResolver.CLASSPATH_ALL_URL_PREFIX
+        + ClassUtils.convertClassNameToResourcePath(basePackage)
+        + "/**/*.class";
+  }
+
+  private Resource[] getResources(String locationPattern) {
+    try {
+      return this.resourcePatternResolver.getResources(locationPattern);
+    } catch (IOException e) {
+      throw new BeanDefinitionStoreException("I/O failure during classpath scanning", e);
+    }
+  }
+
+  @Nullable
+  private MetadataReader getMetadataReader(Resource root, String rootPackage, String className) {
+    Resource resource;
+    try {
+      resource =
+          root.createRelative(
+              ClassUtils.convertClassNameToResourcePath(
+                      className.substring(rootPackage.length() + 1))
+                  + ClassUtils.CLASS_FILE_SUFFIX);
+    } catch (IOException e) {
+      throw new BeanDefinitionStoreException(
+          "Failed to read candidate component class: " + className, e);
+    }
+    // classes removed from the entry are skipped, as during a classpath scan
+    return resource.exists() ? getMetadataReader(resource) : null;
+  }
+
+  private MetadataReader getMetadataReader(Resource resource) {
+    try {
+      return this.metadataReaderFactory.getMetadataReader(resource);
+    } catch (FileNotFoundException e) {
+      if (logger.isTraceEnabled()) {
+        logger.trace("Ignored non-readable " + resource + ": " + e.getMessage());
+      }
+      return null;
+    } catch (Throwable e) {
+      throw new BeanDefinitionStoreException(
+          "Failed to read candidate component class: " + resource, e);
+    }
+  }
+
+  /**
+   * Reduce the base packages to the packages to walk, dropping every package nested in another.
+   *
+   * @param basePackages basePackages of all scans
+   * @return packages to walk
+   */
+  private static Set<String> rootPackages(List<String> basePackages) {
+    Set<String> rootPackages = new LinkedHashSet<>();
+    for (String basePackage : basePackages) {
+      boolean nested = false;
+      for (String other : basePackages) {
+        if (!other.equals(basePackage)
+            && !isPattern(other)
+            && basePackage.startsWith(other + ".")) {
+          nested = true;
+          break;
+        }
+      }
+      if (!nested) {
+        rootPackages.add(basePackage);
+      }
+    }
+    return rootPackages;
+  }
+
+  private static boolean isPattern(String basePackage) {
+    return basePackage.indexOf('*') != -1 || basePackage.indexOf('?') != -1;
+  }
+
+  private static class ScanStatistics {
+    private int resources;
+    private int accepted;
+    private int rejected;
+    private int cachedEntries;
+  }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.annotation;
+
+import jakarta.annotation.Nullable;
+
+/**
+ * Warms up pre-instantiated beans, see {@link SpringBeanScan#preInstantiate()}. Called for every
+ * bean assignable to the type argument, on the pre-instantiation pool, before the application
+ * context finishes its refresh.
+ *
+ * @param <T> type of beans to warm up
+ * @author esotericman
+ */
+@FunctionalInterface
+public interface ProxyBeanWarmer<T> {
+
+  /**
+   * Warm up a bean, for example by calling a cheap method of it.
+   *
+   * @param beanName name of the bean
+   * @param bean the bean
+   * @throws Exception failure, aborting the refresh
+   */
+  void warmUp(String beanName, T bean) throws Exception;
+
+  /**
+   * Type of beans to warm up. By default resolved from the type argument of the implementing class,
+   * or of the bean definition, for example the return type of the {@code @Bean} method declaring a
+   * lambda. Warmers with neither must override it.
+   *
+   * @return type of beans to warm up, or null to resolve it from the declaration
+   */
+  @Nullable
+  default Class<T> getBeanType() {
+    return null;
+  }
+}
@@ -17,25 +17,43 @@
 package org.flmelody.spring.factory.bean.annotation;
 
 import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import java.io.IOException;
 import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import org.flmelody.spring.factory.bean.index.SpringBeanCandidateIndex;
+import org.flmelody.spring.factory.bean.index.SpringBeanCandidateIndexLoader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.aop.scope.ScopedProxyFactoryBean;
 import org.springframework.aop.scope.ScopedProxyUtils;
+import org.springframework.beans.factory.BeanDefinitionStoreException;
 import org.springframework.beans.factory.FactoryBean;
 import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
 import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.beans.factory.config.BeanDefinitionHolder;
+import org.springframework.beans.factory.config.RuntimeBeanReference;
 import org.springframework.beans.factory.support.AbstractBeanDefinition;
 import org.springframework.beans.factory.support.BeanDefinitionRegistry;
 import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.context.annotation.AnnotationBeanNameGenerator;
 import org.springframework.context.annotation.ClassPathBeanDefinitionScanner;
+import org.springframework.context.annotation.ScannedGenericBeanDefinition;
+import org.springframework.core.annotation.AliasFor;
 import org.springframework.core.annotation.MergedAnnotation;
 import org.springframework.core.annotation.MergedAnnotations;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.core.metrics.ApplicationStartup;
+import org.springframework.core.metrics.StartupStep;
 import org.springframework.core.type.AnnotationMetadata;
+import org.springframework.core.type.classreading.MetadataReader;
 import org.springframework.core.type.filter.AnnotationTypeFilter;
+import org.springframework.util.ReflectionUtils;
 import org.springframework.util.StringUtils;
 
 /**
@@ -43,25 +61,66 @@ import org.springframework.util.StringUtils;
  */
 public class ProxyClassPathBeanDefinitionScanner extends ClassPathBeanDefinitionScanner {
 
+  /** Attribute holding the interface name of beans registered by this scanner. */
+  public static final String PROXY_INTERFACE_ATTRIBUTE =
+      ProxyClassPathBeanDefinitionScanner.class.getName() + ".proxyInterface";
+
   private static final Logger logger =
       LoggerFactory.getLogger(ProxyClassPathBeanDefinitionScanner.class);
   private Class<? extends Annotation> beanAnnotation;
   private Class<? extends FactoryBean<?>> factoryBean;
   private String beanScope;
   private boolean lazyInitialization;
+  private boolean lazyResolve;
+  private boolean preInstantiate;
+  private int poolSize;
+  private long poolIdleTimeout;
+  private Map<String, String> factoryReferences = Map.of();
+  private SpringBeanCandidateIndex candidateIndex;
+  private Map<String, Set<BeanDefinition>> preparedCandidates;
+  private ApplicationStartup applicationStartup = ApplicationStartup.DEFAULT;
+  // registered in place of the scanned definitions, which keep their metadata until processed
+  private final Map<BeanDefinition, AbstractBeanDefinition> compactDefinitions =
+      new IdentityHashMap<>();
 
   public ProxyClassPathBeanDefinitionScanner(BeanDefinitionRegistry registry) {
     super(registry, false);
+    setBeanNameGenerator(new ProxyBeanNameGenerator());
   }
 
   public void setBeanAnnotation(Class<? extends Annotation> beanAnnotation) {
     this.beanAnnotation = beanAnnotation;
   }
 
+  @Nullable
+  Class<? extends Annotation> getBeanAnnotation() {
+    return beanAnnotation;
+  }
+
   public void setLazyInitialization(boolean lazyInitialization) {
     this.lazyInitialization = lazyInitialization;
   }
 
+  public void setLazyResolve(boolean lazyResolve) {
+    this.lazyResolve = lazyResolve;
+  }
+
+  public void setPreInstantiate(boolean preInstantiate) {
+    this.preInstantiate = preInstantiate;
+  }
+
+  public void setPoolSize(int poolSize) {
+    this.poolSize = poolSize;
+  }
+
+  public void setPoolIdleTimeout(long poolIdleTimeout) {
+    this.poolIdleTimeout = poolIdleTimeout;
+  }
+
+  public void setFactoryReferences(Map<String, String> factoryReferences) {
+    this.factoryReferences = factoryReferences;
+  }
+
   public void setFactoryBean(Class<? extends FactoryBean<?>> factoryBean) {
     this.factoryBean = factoryBean;
   }
@@ -70,6 +129,10 @@ public class ProxyClassPathBeanDefinitionScanner extends ClassPathBeanDefinition
     this.beanScope = beanScope;
   }
 
+  public void setApplicationStartup(ApplicationStartup applicationStartup) {
+    this.applicationStartup = applicationStartup;
+  }
+
   public void registerFilters() {
     boolean acceptAllInterfaces = true;
 
@@ -89,13 +152,116 @@ public class ProxyClassPathBeanDefinitionScanner extends ClassPathBeanDefinition
         });
   }
 
+  /** {@inheritDoc} */
+  @Override
+  public void setResourceLoader(@Nullable ResourceLoader resourceLoader) {
+    super.setResourceLoader(resourceLoader);
+    this.candidateIndex =
+        SpringBeanCandidateIndexLoader.loadIndex(
+            resourceLoader != null ? resourceLoader.getClassLoader() : null);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  @Nonnull
+  public Set<BeanDefinition> findCandidateComponents(@Nonnull String basePackage) {
+    StartupStep step =
+        this.applicationStartup
+            .start("flmelody.proxy-bean.scan.package")
+            .tag("basePackage", basePackage);
+    Set<BeanDefinition> candidates;
+    if (this.preparedCandidates != null && this.preparedCandidates.containsKey(basePackage)) {
+      step.tag("source", "shared-scan");
+      candidates = this.preparedCandidates.get(basePackage);
+    } else if (isIndexed()) {
+      step.tag("source", "index");
+      candidates = findCandidateComponentsFromIndex(basePackage);
+    } else {
+      step.tag("source", "classpath");
+      candidates = super.findCandidateComponents(basePackage);
+    }
+    step.tag("candidates", String.valueOf(candidates.size())).end();
+    return candidates;
+  }
+
+  private Set<BeanDefinition> findCandidateComponentsFromIndex(String basePackage) {
+    Set<BeanDefinition> candidates = new LinkedHashSet<>();
+    for (String type :
+        this.candidateIndex.getCandidateTypes(basePackage, this.beanAnnotation.getName())) {
+      try {
+        MetadataReader metadataReader = getMetadataReaderFactory().getMetadataReader(type);
+        BeanDefinition candidate = resolveCandidate(metadataReader);
+        if (candidate != null) {
+          candidates.add(candidate);
+        }
+      } catch (IOException e) {
+        throw new BeanDefinitionStoreException(
+            "Failed to read candidate component class: " + type, e);
+      }
+    }
+    if (logger.isDebugEnabled()) {
+      logger.debug(
+          "Resolved "
+              + candidates.size()
+              + " candidate(s) of package '"
+              + basePackage
+              + "' from index");
+    }
+    return candidates;
+  }
+
+  /**
+   * Whether candidates are resolved from the build-time index rather than the classpath.
+   *
+   * @return indexed or not
+   */
+  boolean isIndexed() {
+    return this.candidateIndex != null && this.beanAnnotation != null;
+  }
+
+  /**
+   * Use candidates resolved by a shared scan pass instead of scanning the given packages again.
+   *
+   * @param preparedCandidates candidates by base package
+   */
+  void setPreparedCandidates(Map<String, Set<BeanDefinition>> preparedCandidates) {
+    this.preparedCandidates = preparedCandidates;
+  }
+
+  @Nullable
+  BeanDefinition resolveCandidate(MetadataReader metadataReader) throws IOException {
+    if (!isCandidateComponent(metadataReader)) {
+      return null;
+    }
+    ScannedGenericBeanDefinition beanDefinition = new ScannedGenericBeanDefinition(metadataReader);
+    beanDefinition.setSource(metadataReader.getResource());
+    return isCandidateComponent(beanDefinition) ? beanDefinition : null;
+  }
+
   /** {@inheritDoc} */
   @Override
   @Nonnull
   public Set<BeanDefinitionHolder> doScan(@Nonnull String... basePackages) {
     Set<BeanDefinitionHolder> beanDefinitions = super.doScan(basePackages);
     if (!beanDefinitions.isEmpty()) {
-      processBeanDefinitions(beanDefinitions);
+      StartupStep step =
+          this.applicationStartup
+              .start("flmelody.proxy-bean.scan.process-definitions")
+              .tag("definitions", String.valueOf(beanDefinitions.size()))
+              .tag("compact", String.valueOf(compactDefinitions.size()));
+      if (logger.isDebugEnabled()) {
+        logger.debug(
+            "Registered "
+                + compactDefinitions.size()
+                + " compact definition(s) in place of scanned ones, releasing their metadata");
+      }
+      try {
+        processBeanDefinitions(beanDefinitions);
+      } finally {
+        // the scanned definitions, and their metadata, must not outlive the pass
+        compactDefinitions.clear();
+      }
+      step.end();
     }
     return beanDefinitions;
   }
@@ -123,35 +289,72 @@ public class ProxyClassPathBeanDefinitionScanner extends ClassPathBeanDefinition
                                     + " not found."));
         scopedProxy = true;
       }
+      AnnotationMetadata metadata =
+          definition instanceof AnnotatedBeanDefinition annotatedBeanDefinition
+              ? annotatedBeanDefinition.getMetadata()
+              : null;
+      AbstractBeanDefinition compactDefinition = compactDefinitions.get(definition);
+      if (compactDefinition != null) {
+        definition = compactDefinition;
+      }
       String beanClassName = definition.getBeanClassName();
       definition.getConstructorArgumentValues().addGenericArgumentValue(beanClassName);
       definition.setBeanClass(this.factoryBean);
       definition.setAttribute(FactoryBean.OBJECT_TYPE_ATTRIBUTE, beanClassName);
-      definition.setAutowireMode(AbstractBeanDefinition.AUTOWIRE_BY_TYPE);
+      definition.setAttribute(PROXY_INTERFACE_ATTRIBUTE, beanClassName);
+      if (factoryReferences.isEmpty()) {
+        definition.setAutowireMode(AbstractBeanDefinition.AUTOWIRE_BY_TYPE);
+      } else {
+        // declared references replace the by-type lookup of every writable property
+        definition.setAutowireMode(AbstractBeanDefinition.AUTOWIRE_NO);
+        for (Map.Entry<String, String> reference : factoryReferences.entrySet()) {
+          definition
+              .getPropertyValues()
+              .add(reference.getKey(), new RuntimeBeanReference(reference.getValue()));
+        }
+      }
       definition.setLazyInit(lazyInitialization);
 
       if (scopedProxy) {
         continue;
       }
 
-      if (definition instanceof AnnotatedBeanDefinition annotatedBeanDefinition) {
-        AnnotationMetadata metadata = annotatedBeanDefinition.getMetadata();
+      boolean beanLazyResolve = lazyResolve;
+      if (metadata != null) {
         MergedAnnotations annotations = metadata.getAnnotations();
         MergedAnnotation<Annotation> annotationMergedAnnotation =
             annotations.get(beanAnnotation.getName());
-        String scope = annotationMergedAnnotation.getString("beanScope");
+        // custom bean annotations may not declare the attributes of SpringBean
+        String scope = annotationMergedAnnotation.getValue("beanScope", String.class).orElse(null);
         if (StringUtils.hasText(scope)) {
           definition.setScope(scope);
         } else {
           definition.setScope(beanScope);
         }
+        beanLazyResolve |=
+            annotationMergedAnnotation.getValue("lazyResolve", Boolean.class).orElse(Boolean.FALSE);
       } else {
         definition.setScope(beanScope);
       }
 
+      if (beanLazyResolve && definition.isSingleton()) {
+        registerLazyResolutionProxy(holder.getBeanName(), beanClassName, definition, registry);
+        continue;
+      }
+      if (preInstantiate) {
+        definition.setAttribute(ProxyBeanPreInstantiator.PRE_INSTANTIATE_ATTRIBUTE, Boolean.TRUE);
+      }
+
       if (!definition.isSingleton()) {
+        // the configured definition, the holder still refers to the scanned one
+        BeanDefinitionHolder scopedHolder =
+            new BeanDefinitionHolder(definition, holder.getBeanName(), holder.getAliases());
+        if (poolSize > 0 && !definition.isPrototype()) {
+          scopedHolder =
+              registerPooledProxy(holder.getBeanName(), beanClassName, definition, registry);
+        }
         BeanDefinitionHolder proxyHolder =
-            ScopedProxyUtils.createScopedProxy(holder, registry, true);
+            ScopedProxyUtils.createScopedProxy(scopedHolder, registry, true);
         if (registry.containsBeanDefinition(proxyHolder.getBeanName())) {
           registry.removeBeanDefinition(proxyHolder.getBeanName());
         }
@@ -160,6 +363,111 @@ public class ProxyClassPathBeanDefinitionScanner extends ClassPathBeanDefinition
     }
   }
 
+  private void registerLazyResolutionProxy(
+      String beanName,
+      String beanInterface,
+      AbstractBeanDefinition definition,
+      BeanDefinitionRegistry registry) {
+    // the actual factory moves aside, only reachable through the proxy
+    String targetBeanName = LazyResolutionProxyFactoryBean.getTargetBeanName(beanName);
+    definition.setLazyInit(true);
+    definition.setAutowireCandidate(false);
+    registry.removeBeanDefinition(beanName);
+    registry.registerBeanDefinition(targetBeanName, definition);
+
+    RootBeanDefinition proxyDefinition =
+        new RootBeanDefinition(LazyResolutionProxyFactoryBean.class);
+    proxyDefinition.getConstructorArgumentValues().addIndexedArgumentValue(0, beanInterface);
+    proxyDefinition.getConstructorArgumentValues().addIndexedArgumentValue(1, targetBeanName);
+    proxyDefinition.setAttribute(FactoryBean.OBJECT_TYPE_ATTRIBUTE, beanInterface);
+    proxyDefinition.setLazyInit(lazyInitialization);
+    proxyDefinition.setPrimary(definition.isPrimary());
+    proxyDefinition.setResourceDescription(definition.getResourceDescription());
+    registry.registerBeanDefinition(beanName, proxyDefinition);
+  }
+
+  private BeanDefinitionHolder registerPooledProxy(
+      String beanName,
+      String beanInterface,
+      AbstractBeanDefinition definition,
+      BeanDefinitionRegistry registry) {
+    // every pooled product has a factory of its own, created on demand by the pool
+    String targetBeanName = PooledProxyFactoryBean.getTargetBeanName(beanName);
+    String poolBeanName = ProxyBeanPool.getPoolBeanName(beanName);
+    String scope = definition.getScope();
+    definition.setScope(BeanDefinition.SCOPE_PROTOTYPE);
+    definition.setLazyInit(true);
+    definition.setAutowireCandidate(false);
+    registry.removeBeanDefinition(beanName);
+    registry.registerBeanDefinition(targetBeanName, definition);
+
+    RootBeanDefinition poolDefinition = new RootBeanDefinition(ProxyBeanPool.class);
+    poolDefinition.getConstructorArgumentValues().addIndexedArgumentValue(0, beanName);
+    poolDefinition.getConstructorArgumentValues().addIndexedArgumentValue(1, targetBeanName);
+    poolDefinition.getConstructorArgumentValues().addIndexedArgumentValue(2, poolSize);
+    poolDefinition.getConstructorArgumentValues().addIndexedArgumentValue(3, poolIdleTimeout);
+    poolDefinition.setAutowireCandidate(false);
+    poolDefinition.setRole(BeanDefinition.ROLE_INFRASTRUCTURE);
+    registry.registerBeanDefinition(poolBeanName, poolDefinition);
+
+    RootBeanDefinition proxyDefinition = new RootBeanDefinition(PooledProxyFactoryBean.class);
+    proxyDefinition.getConstructorArgumentValues().addIndexedArgumentValue(0, beanInterface);
+    proxyDefinition
+        .getConstructorArgumentValues()
+        .addIndexedArgumentValue(1, new RuntimeBeanReference(poolBeanName));
+    proxyDefinition.setAttribute(FactoryBean.OBJECT_TYPE_ATTRIBUTE, beanInterface);
+    proxyDefinition.setScope(scope);
+    proxyDefinition.setLazyInit(lazyInitialization);
+    proxyDefinition.setPrimary(definition.isPrimary());
+    proxyDefinition.setResourceDescription(definition.getResourceDescription());
+    return new BeanDefinitionHolder(proxyDefinition, beanName);
+  }
+
+  /**
+   * Register a {@link RootBeanDefinition} carrying only the settings of the scanned definition,
+   * so that its annotation metadata and resource are not retained by the registry.
+   *
+   * @param definitionHolder definitionHolder
+   * @param registry registry
+   */
+  @Override
+  protected void registerBeanDefinition(
+      @Nonnull BeanDefinitionHolder definitionHolder, @Nonnull BeanDefinitionRegistry registry) {
+    if (!(definitionHolder.getBeanDefinition()
+        instanceof ScannedGenericBeanDefinition scannedDefinition)) {
+      super.registerBeanDefinition(definitionHolder, registry);
+      return;
+    }
+    RootBeanDefinition definition = new RootBeanDefinition();
+    definition.setBeanClassName(scannedDefinition.getBeanClassName());
+    definition.setScope(scannedDefinition.getScope());
+    definition.setLazyInit(scannedDefinition.isLazyInit());
+    definition.setPrimary(scannedDefinition.isPrimary());
+    definition.setDependsOn(scannedDefinition.getDependsOn());
+    definition.setRole(scannedDefinition.getRole());
+    definition.setDescription(scannedDefinition.getDescription());
+    definition.setAutowireCandidate(scannedDefinition.isAutowireCandidate());
+    definition.setResourceDescription(scannedDefinition.getResourceDescription());
+    definition.setAttribute(PROXY_INTERFACE_ATTRIBUTE, scannedDefinition.getBeanClassName());
+    compactDefinitions.put(scannedDefinition, definition);
+    super.registerBeanDefinition(
+        new BeanDefinitionHolder(
+            definition, definitionHolder.getBeanName(), definitionHolder.getAliases()),
+        registry);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  protected boolean isCompatible(
+      @Nonnull BeanDefinition newDefinition, @Nonnull BeanDefinition existingDefinition) {
+    // a compact definition stands for the scanned one of the same interface only
+    if (existingDefinition.getAttribute(PROXY_INTERFACE_ATTRIBUTE)
+        instanceof String beanInterface) {
+      return beanInterface.equals(newDefinition.getBeanClassName());
+    }
+    return super.isCompatible(newDefinition, existingDefinition);
+  }
+
   /** {@inheritDoc} */
   @Override
   protected boolean isCandidateComponent(AnnotatedBeanDefinition beanDefinition) {
@@ -181,4 +489,44 @@ public class ProxyClassPathBeanDefinitionScanner extends ClassPathBeanDefinition
       return false;
     }
   }
+
+  /**
+   * The value of a bean annotation aliasing another attribute of it, such as the scope of {@link
+   * SpringBean}, is no bean name. Any other value names the bean as for {@code @Component}.
+   */
+  private class ProxyBeanNameGenerator extends AnnotationBeanNameGenerator {
+    private Class<? extends Annotation> checkedAnnotation;
+    private boolean valueAliasesOtherAttribute;
+
+    /** {@inheritDoc} */
+    @Override
+    protected boolean isStereotypeWithNameValue(
+        @Nonnull String annotationType,
+        @Nonnull Set<String> metaAnnotationTypes,
+        @Nullable Map<String, Object> attributes) {
+      if (beanAnnotation != null
+          && beanAnnotation.getName().equals(annotationType)
+          && valueAliasesOtherAttribute(beanAnnotation)) {
+        return false;
+      }
+      return super.isStereotypeWithNameValue(annotationType, metaAnnotationTypes, attributes);
+    }
+
+    private boolean valueAliasesOtherAttribute(Class<? extends Annotation> annotation) {
+      if (annotation != checkedAnnotation) {
+        Method value = ReflectionUtils.findMethod(annotation, "value");
+        AliasFor aliasFor = value != null ? value.getAnnotation(AliasFor.class) : null;
+        String attribute = null;
+        // aliases of meta-annotation attributes, such as Component#value, still name the bean
+        if (aliasFor != null
+            && (aliasFor.annotation() == Annotation.class || aliasFor.annotation() == annotation)) {
+          attribute =
+              StringUtils.hasText(aliasFor.attribute()) ? aliasFor.attribute() : aliasFor.value();
+        }
+        valueAliasesOtherAttribute = attribute != null && !"name".equals(attribute);
+        checkedAnnotation = annotation;
+      }
+      return valueAliasesOtherAttribute;
+    }
+  }
 }
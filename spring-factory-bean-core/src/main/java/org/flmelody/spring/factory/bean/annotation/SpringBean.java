@@ -50,4 +50,11 @@ public @interface SpringBean {
    * @return beans scope
    */
   String beanScope() default "";
+
+  /**
+   * Resolve this bean lazily even if {@link SpringBeanScan#lazyResolve()} is disabled.
+   *
+   * @return lazily resolved or not
+   */
+  boolean lazyResolve() default false;
 }
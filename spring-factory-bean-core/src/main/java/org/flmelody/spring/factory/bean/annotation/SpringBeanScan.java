@@ -79,4 +79,53 @@ public @interface SpringBeanScan {
    * @return lazy bean or not
    */
   boolean lazyInitialization() default false;
+
+  /**
+   * Whether beans are injected as proxies that only call the factory on their first method call.
+   * Applies to singleton beans only, other scopes are resolved on use already.
+   *
+   * @return lazily resolved or not
+   */
+  boolean lazyResolve() default false;
+
+  /**
+   * Whether singleton beans are created on a background pool before the refresh completes, and
+   * passed to the {@link ProxyBeanWarmer}s. Has no effect on lazily resolved beans.
+   *
+   * @return pre-instantiated or not
+   */
+  boolean preInstantiate() default false;
+
+  /**
+   * Number of products of scoped beans kept for reuse by later scope instances, default is a new
+   * product per scope instance. Applies to scopes with destruction callbacks such as request and
+   * session, prototypes are never returned to a pool.
+   *
+   * @return pool size per bean
+   */
+  int poolSize() default 0;
+
+  /**
+   * Time in milliseconds after which an unused pooled product is discarded.
+   *
+   * @return idle timeout
+   */
+  long poolIdleTimeout() default 60000;
+
+  /**
+   * Properties of the factory set to named beans, each in the form {@code property=beanName}. When
+   * any is declared, factories are no longer autowired by type and only get these properties,
+   * which saves a lookup per writable property and bean.
+   *
+   * @return factory references
+   */
+  String[] factoryReferences() default {};
+
+  /**
+   * Number of threads reading the classpath, default is a single-threaded scan. Values below 1 use
+   * all available processors. Declarations are scanned together with the highest parallelism.
+   *
+   * @return parallelism of the scan
+   */
+  int parallelism() default 1;
 }
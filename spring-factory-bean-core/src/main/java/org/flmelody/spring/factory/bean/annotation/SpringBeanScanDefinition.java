@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.annotation;
+
+import java.lang.annotation.Annotation;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.springframework.beans.factory.FactoryBean;
+import org.springframework.beans.factory.config.BeanDefinition;
+
+/**
+ * Settings of a single {@link SpringBeanScan} declaration.
+ *
+ * @author esotericman
+ */
+public class SpringBeanScanDefinition {
+  private Class<? extends FactoryBean<?>> factoryBean;
+  private String[] basePackages = new String[0];
+  private Class<? extends Annotation> beanAnnotation;
+  private String beanScope = BeanDefinition.SCOPE_SINGLETON;
+  private boolean lazyInitialization;
+  private int parallelism = 1;
+  private boolean lazyResolve;
+  private boolean preInstantiate;
+  private int poolSize;
+  private long poolIdleTimeout = 60000;
+  private Map<String, String> factoryReferences = new LinkedHashMap<>();
+
+  public Class<? extends FactoryBean<?>> getFactoryBean() {
+    return factoryBean;
+  }
+
+  /**
+   * set factoryBean.
+   *
+   * @param factoryBean factoryBean
+   */
+  public void setFactoryBean(Class<? extends FactoryBean<?>> factoryBean) {
+    this.factoryBean = factoryBean;
+  }
+
+  public String[] getBasePackages() {
+    return basePackages;
+  }
+
+  /**
+   * set basePackages.
+   *
+   * @param basePackages basePackages
+   */
+  public void setBasePackages(String... basePackages) {
+    this.basePackages = basePackages;
+  }
+
+  public Class<? extends Annotation> getBeanAnnotation() {
+    return beanAnnotation;
+  }
+
+  /**
+   * set beanAnnotation.
+   *
+   * @param beanAnnotation beanAnnotation
+   */
+  public void setBeanAnnotation(Class<? extends Annotation> beanAnnotation) {
+    this.beanAnnotation = beanAnnotation;
+  }
+
+  public String getBeanScope() {
+    return beanScope;
+  }
+
+  /**
+   * set beanScope.
+   *
+   * @param beanScope beanScope
+   */
+  public void setBeanScope(String beanScope) {
+    this.beanScope = beanScope;
+  }
+
+  public boolean isLazyInitialization() {
+    return lazyInitialization;
+  }
+
+  /**
+   * set lazyInitialization.
+   *
+   * @param lazyInitialization lazyInitialization
+   */
+  public void setLazyInitialization(boolean lazyInitialization) {
+    this.lazyInitialization = lazyInitialization;
+  }
+
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * set parallelism.
+   *
+   * @param parallelism parallelism
+   */
+  public void setParallelism(int parallelism) {
+    this.parallelism = parallelism;
+  }
+
+  public boolean isLazyResolve() {
+    return lazyResolve;
+  }
+
+  /**
+   * set lazyResolve.
+   *
+   * @param lazyResolve lazyResolve
+   */
+  public void setLazyResolve(boolean lazyResolve) {
+    this.lazyResolve = lazyResolve;
+  }
+
+  public boolean isPreInstantiate() {
+    return preInstantiate;
+  }
+
+  /**
+   * set preInstantiate.
+   *
+   * @param preInstantiate preInstantiate
+   */
+  public void setPreInstantiate(boolean preInstantiate) {
+    this.preInstantiate = preInstantiate;
+  }
+
+  public int getPoolSize() {
+    return poolSize;
+  }
+
+  /**
+   * set poolSize.
+   *
+   * @param poolSize poolSize
+   */
+  public void setPoolSize(int poolSize) {
+    this.poolSize = poolSize;
+  }
+
+  public long getPoolIdleTimeout() {
+    return poolIdleTimeout;
+  }
+
+  /**
+   * set poolIdleTimeout.
+   *
+   * @param poolIdleTimeout poolIdleTimeout
+   */
+  public void setPoolIdleTimeout(long poolIdleTimeout) {
+    this.poolIdleTimeout = poolIdleTimeout;
+  }
+
+  public Map<String, String> getFactoryReferences() {
+    return factoryReferences;
+  }
+
+  /**
+   * set factoryReferences.
+   *
+   * @param factoryReferences bean names by factory property
+   */
+  public void setFactoryReferences(Map<String, String> factoryReferences) {
+    this.factoryReferences = factoryReferences;
+  }
+}
@@ -20,7 +20,9 @@ import jakarta.annotation.Nonnull;
 import java.lang.annotation.Annotation;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.FactoryBean;
@@ -47,39 +49,31 @@ public class SpringBeanScannerRegistrar implements ImportBeanDefinitionRegistrar
         AnnotationAttributes.fromMap(
             importingClassMetadata.getAnnotationAttributes(SpringBeanScan.class.getName()));
     if (annotationAttributes != null) {
-      registerBeanDefinitions(
-          importingClassMetadata,
-          annotationAttributes,
-          registry,
-          importingClassMetadata.getClassName()
-              + "#"
-              + SpringBeanScannerRegistrar.class.getSimpleName());
+      registerBeanDefinitions(importingClassMetadata, annotationAttributes, registry);
     }
   }
 
   private void registerBeanDefinitions(
       AnnotationMetadata annoMeta,
       AnnotationAttributes annoAttrs,
-      BeanDefinitionRegistry registry,
-      String beanName) {
-    BeanDefinitionBuilder builder =
-        BeanDefinitionBuilder.genericBeanDefinition(ProxyBeanDefinitionRegistryPostProcessor.class);
+      BeanDefinitionRegistry registry) {
+    SpringBeanScanDefinition scanDefinition = new SpringBeanScanDefinition();
 
     Class<? extends FactoryBean<?>> factoryBean = annoAttrs.getClass("factoryBean");
     if (FactoryBean.class.equals(factoryBean)) {
       logger.warn("No factoryBean provided, Gave up to registered beans");
       return;
     }
-    builder.addPropertyValue("factoryBean", factoryBean);
+    scanDefinition.setFactoryBean(factoryBean);
 
     Class<? extends Annotation> beanAnnotation = annoAttrs.getClass("beanAnnotation");
-    builder.addPropertyValue("beanAnnotation", beanAnnotation);
+    scanDefinition.setBeanAnnotation(beanAnnotation);
 
     String beanScope = annoAttrs.getString("beanScope");
     if (StringUtils.hasText(beanScope)) {
-      builder.addPropertyValue("beanScope", beanScope);
+      scanDefinition.setBeanScope(beanScope);
     } else {
-      builder.addPropertyValue("beanScope", BeanDefinition.SCOPE_SINGLETON);
+      scanDefinition.setBeanScope(BeanDefinition.SCOPE_SINGLETON);
     }
 
     List<String> basePackages =
@@ -91,12 +85,76 @@ public class SpringBeanScannerRegistrar implements ImportBeanDefinitionRegistrar
     if (basePackages.isEmpty()) {
       basePackages.add(getDefaultBasePackage(annoMeta));
     }
-    builder.addPropertyValue(
-        "basePackages", StringUtils.collectionToCommaDelimitedString(basePackages));
+    scanDefinition.setBasePackages(basePackages.toArray(String[]::new));
 
     boolean lazyInitialization = annoAttrs.getBoolean("lazyInitialization");
-    builder.addPropertyValue("lazyInitialization", lazyInitialization);
-    registry.registerBeanDefinition(beanName, builder.getBeanDefinition());
+    scanDefinition.setLazyInitialization(lazyInitialization);
+    scanDefinition.setLazyResolve(annoAttrs.getBoolean("lazyResolve"));
+    scanDefinition.setPreInstantiate(annoAttrs.getBoolean("preInstantiate"));
+    if (scanDefinition.isPreInstantiate()) {
+      registerInfrastructureBean(
+          registry, ProxyBeanPreInstantiator.BEAN_NAME, ProxyBeanPreInstantiator.class);
+    }
+
+    scanDefinition.setPoolSize(annoAttrs.getNumber("poolSize"));
+    scanDefinition.setPoolIdleTimeout(annoAttrs.getNumber("poolIdleTimeout"));
+    scanDefinition.setFactoryReferences(
+        parseFactoryReferences(annoAttrs.getStringArray("factoryReferences")));
+
+    int parallelism = annoAttrs.getNumber("parallelism");
+    if (parallelism < 1) {
+      parallelism = Runtime.getRuntime().availableProcessors();
+    }
+    scanDefinition.setParallelism(parallelism);
+    getScanDefinitions(registry).add(scanDefinition);
+  }
+
+  private static Map<String, String> parseFactoryReferences(String[] factoryReferences) {
+    Map<String, String> references = new LinkedHashMap<>();
+    for (String factoryReference : factoryReferences) {
+      String[] reference = StringUtils.split(factoryReference, "=");
+      if (reference == null
+          || !StringUtils.hasText(reference[0])
+          || !StringUtils.hasText(reference[1])) {
+        throw new IllegalArgumentException(
+            "Factory reference '" + factoryReference + "' is not of the form property=beanName");
+      }
+      references.put(reference[0].trim(), reference[1].trim());
+    }
+    return references;
+  }
+
+  /**
+   * All declarations share one post processor, so that they are scanned in a single pass.
+   *
+   * @param registry registry
+   * @return scan definitions of the shared post processor
+   */
+  @SuppressWarnings("unchecked")
+  private static List<SpringBeanScanDefinition> getScanDefinitions(
+      BeanDefinitionRegistry registry) {
+    String beanName = ProxyBeanDefinitionRegistryPostProcessor.BEAN_NAME;
+    if (!registry.containsBeanDefinition(beanName)) {
+      BeanDefinitionBuilder builder =
+          BeanDefinitionBuilder.genericBeanDefinition(
+              ProxyBeanDefinitionRegistryPostProcessor.class);
+      builder.addPropertyValue("scanDefinitions", new ArrayList<SpringBeanScanDefinition>());
+      builder.setRole(BeanDefinition.ROLE_INFRASTRUCTURE);
+      registry.registerBeanDefinition(beanName, builder.getBeanDefinition());
+      registerInfrastructureBean(
+          registry, ProxyBeanCreationRecorder.BEAN_NAME, ProxyBeanCreationRecorder.class);
+    }
+    return (List<SpringBeanScanDefinition>)
+        registry.getBeanDefinition(beanName).getPropertyValues().get("scanDefinitions");
+  }
+
+  private static void registerInfrastructureBean(
+      BeanDefinitionRegistry registry, String beanName, Class<?> beanClass) {
+    if (!registry.containsBeanDefinition(beanName)) {
+      BeanDefinitionBuilder builder = BeanDefinitionBuilder.genericBeanDefinition(beanClass);
+      builder.setRole(BeanDefinition.ROLE_INFRASTRUCTURE);
+      registry.registerBeanDefinition(beanName, builder.getBeanDefinition());
+    }
   }
 
   private static String getDefaultBasePackage(AnnotationMetadata importingClassMetadata) {
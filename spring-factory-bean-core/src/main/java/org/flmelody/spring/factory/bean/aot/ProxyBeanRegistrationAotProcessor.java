@@ -0,0 +1,255 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.aot;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import java.lang.reflect.Modifier;
+import java.util.function.Predicate;
+import org.flmelody.spring.factory.bean.annotation.LazyResolutionProxyFactoryBean;
+import org.flmelody.spring.factory.bean.annotation.PooledProxyFactoryBean;
+import org.flmelody.spring.factory.bean.annotation.ProxyBeanDefinitionRegistryPostProcessor;
+import org.flmelody.spring.factory.bean.annotation.ProxyBeanPreInstantiator;
+import org.flmelody.spring.factory.bean.annotation.ProxyClassPathBeanDefinitionScanner;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.aot.generate.GenerationContext;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.beans.factory.FactoryBean;
+import org.springframework.beans.factory.aot.BeanRegistrationAotContribution;
+import org.springframework.beans.factory.aot.BeanRegistrationAotProcessor;
+import org.springframework.beans.factory.aot.BeanRegistrationCode;
+import org.springframework.beans.factory.aot.BeanRegistrationCodeFragments;
+import org.springframework.beans.factory.aot.BeanRegistrationCodeFragmentsDecorator;
+import org.springframework.beans.factory.aot.BeanRegistrationExcludeFilter;
+import org.springframework.beans.factory.config.ConstructorArgumentValues.ValueHolder;
+import org.springframework.beans.factory.support.RegisteredBean;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.javapoet.CodeBlock;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Captures the definitions produced by {@link ProxyClassPathBeanDefinitionScanner} as generated
+ * code, so an AOT-processed application neither scans nor rewrites them at startup. The scanning
+ * {@link ProxyBeanDefinitionRegistryPostProcessor} is excluded for the same reason. Scoped proxies
+ * of these definitions are handled by the scoped proxy support of Spring itself, the lazily
+ * resolving and pooling factories in front of them only keep their object type and hints.
+ *
+ * @author esotericman
+ */
+public class ProxyBeanRegistrationAotProcessor
+    implements BeanRegistrationAotProcessor, BeanRegistrationExcludeFilter {
+
+  /** {@inheritDoc} */
+  @Override
+  @Nullable
+  public BeanRegistrationAotContribution processAheadOfTime(
+      @Nonnull RegisteredBean registeredBean) {
+    Class<?> beanClass = registeredBean.getBeanClass();
+    boolean lazyResolution = LazyResolutionProxyFactoryBean.class.isAssignableFrom(beanClass);
+    if (lazyResolution || PooledProxyFactoryBean.class.isAssignableFrom(beanClass)) {
+      ValueHolder beanInterface =
+          registeredBean
+              .getMergedBeanDefinition()
+              .getConstructorArgumentValues()
+              .getIndexedArgumentValue(0, null);
+      if (beanInterface == null || !(beanInterface.getValue() instanceof String interfaceName)) {
+        return null;
+      }
+      Class<?> proxyInterface =
+          ClassUtils.resolveClassName(
+              interfaceName, registeredBean.getBeanFactory().getBeanClassLoader());
+      return new DelegatingProxyBeanAotContribution(proxyInterface, lazyResolution);
+    }
+    Object proxyInterface =
+        registeredBean
+            .getMergedBeanDefinition()
+            .getAttribute(ProxyClassPathBeanDefinitionScanner.PROXY_INTERFACE_ATTRIBUTE);
+    if (!(proxyInterface instanceof String proxyInterfaceName)) {
+      return null;
+    }
+    Class<?> beanInterface =
+        ClassUtils.resolveClassName(
+            proxyInterfaceName, registeredBean.getBeanFactory().getBeanClassLoader());
+    return new ProxyBeanRegistrationAotContribution(registeredBean.getBeanClass(), beanInterface);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public boolean isExcludedFromAotProcessing(@Nonnull RegisteredBean registeredBean) {
+    return ProxyBeanDefinitionRegistryPostProcessor.class.isAssignableFrom(
+        registeredBean.getBeanClass());
+  }
+
+  private static boolean isPublic(Class<?> type) {
+    for (Class<?> current = type; current != null; current = current.getEnclosingClass()) {
+      if (!Modifier.isPublic(current.getModifiers())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static class ProxyBeanRegistrationAotContribution
+      implements BeanRegistrationAotContribution {
+    private final Class<?> factoryBean;
+    private final Class<?> beanInterface;
+
+    ProxyBeanRegistrationAotContribution(Class<?> factoryBean, Class<?> beanInterface) {
+      this.factoryBean = factoryBean;
+      this.beanInterface = beanInterface;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @Nonnull
+    public BeanRegistrationCodeFragments customizeBeanRegistrationCodeFragments(
+        @Nonnull GenerationContext generationContext,
+        @Nonnull BeanRegistrationCodeFragments codeFragments) {
+      return new BeanRegistrationCodeFragmentsDecorator(codeFragments) {
+        @Override
+        @Nonnull
+        public CodeBlock generateSetBeanDefinitionPropertiesCode(
+            @Nonnull GenerationContext generationContext,
+            @Nonnull BeanRegistrationCode beanRegistrationCode,
+            @Nonnull RootBeanDefinition beanDefinition,
+            @Nonnull Predicate<String> attributeFilter) {
+          CodeBlock.Builder code = CodeBlock.builder();
+          code.add(
+              super.generateSetBeanDefinitionPropertiesCode(
+                  generationContext, beanRegistrationCode, beanDefinition, attributeFilter));
+          // the scanner passes the interface as a generic argument, which is not generated
+          code.addStatement(
+              "$L.getConstructorArgumentValues().clear()", BEAN_DEFINITION_VARIABLE);
+          code.addStatement(
+              "$L.getConstructorArgumentValues().addIndexedArgumentValue(0, $S)",
+              BEAN_DEFINITION_VARIABLE,
+              beanInterface.getName());
+          code.addStatement(
+              "$L.setAutowireMode($L)",
+              BEAN_DEFINITION_VARIABLE,
+              beanDefinition.getAutowireMode());
+          code.addStatement(
+              "$L.setAttribute($T.PROXY_INTERFACE_ATTRIBUTE, $S)",
+              BEAN_DEFINITION_VARIABLE,
+              ProxyClassPathBeanDefinitionScanner.class,
+              beanInterface.getName());
+          if (Boolean.TRUE.equals(
+              beanDefinition.getAttribute(ProxyBeanPreInstantiator.PRE_INSTANTIATE_ATTRIBUTE))) {
+            code.addStatement(
+                "$L.setAttribute($T.PRE_INSTANTIATE_ATTRIBUTE, true)",
+                BEAN_DEFINITION_VARIABLE,
+                ProxyBeanPreInstantiator.class);
+          }
+          if (isPublic(beanInterface)) {
+            code.addStatement(
+                "$L.setAttribute($T.OBJECT_TYPE_ATTRIBUTE, $T.class)",
+                BEAN_DEFINITION_VARIABLE,
+                FactoryBean.class,
+                beanInterface);
+          }
+          return code.build();
+        }
+      };
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void applyTo(
+        @Nonnull GenerationContext generationContext,
+        @Nonnull BeanRegistrationCode beanRegistrationCode) {
+      RuntimeHints runtimeHints = generationContext.getRuntimeHints();
+      runtimeHints.proxies().registerJdkProxy(beanInterface);
+      runtimeHints
+          .reflection()
+          .registerType(
+              beanInterface,
+              MemberCategory.INTROSPECT_PUBLIC_METHODS,
+              MemberCategory.INVOKE_PUBLIC_METHODS);
+      // properties of the factory are autowired through bean introspection
+      runtimeHints
+          .reflection()
+          .registerType(
+              factoryBean,
+              MemberCategory.INTROSPECT_PUBLIC_METHODS,
+              MemberCategory.INVOKE_PUBLIC_METHODS);
+    }
+  }
+
+  private static class DelegatingProxyBeanAotContribution
+      implements BeanRegistrationAotContribution {
+    private final Class<?> beanInterface;
+    private final boolean aopProxy;
+
+    DelegatingProxyBeanAotContribution(Class<?> beanInterface, boolean aopProxy) {
+      this.beanInterface = beanInterface;
+      this.aopProxy = aopProxy;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @Nonnull
+    public BeanRegistrationCodeFragments customizeBeanRegistrationCodeFragments(
+        @Nonnull GenerationContext generationContext,
+        @Nonnull BeanRegistrationCodeFragments codeFragments) {
+      return new BeanRegistrationCodeFragmentsDecorator(codeFragments) {
+        @Override
+        @Nonnull
+        public CodeBlock generateSetBeanDefinitionPropertiesCode(
+            @Nonnull GenerationContext generationContext,
+            @Nonnull BeanRegistrationCode beanRegistrationCode,
+            @Nonnull RootBeanDefinition beanDefinition,
+            @Nonnull Predicate<String> attributeFilter) {
+          CodeBlock.Builder code = CodeBlock.builder();
+          code.add(
+              super.generateSetBeanDefinitionPropertiesCode(
+                  generationContext, beanRegistrationCode, beanDefinition, attributeFilter));
+          // without it the factory is created early to find out its object type
+          if (isPublic(beanInterface)) {
+            code.addStatement(
+                "$L.setAttribute($T.OBJECT_TYPE_ATTRIBUTE, $T.class)",
+                BEAN_DEFINITION_VARIABLE,
+                FactoryBean.class,
+                beanInterface);
+          }
+          return code.build();
+        }
+      };
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void applyTo(
+        @Nonnull GenerationContext generationContext,
+        @Nonnull BeanRegistrationCode beanRegistrationCode) {
+      RuntimeHints runtimeHints = generationContext.getRuntimeHints();
+      if (aopProxy) {
+        // the lazily resolving proxy is an AOP proxy of the interface
+        runtimeHints
+            .proxies()
+            .registerJdkProxy(AopProxyUtils.completeJdkProxyInterfaces(beanInterface));
+      }
+      // AOP and scoped proxies invoke the methods of the interface reflectively
+      runtimeHints
+          .reflection()
+          .registerType(
+              beanInterface,
+              MemberCategory.INTROSPECT_PUBLIC_METHODS,
+              MemberCategory.INVOKE_PUBLIC_METHODS);
+    }
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.index;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.StringUtils;
+
+/**
+ * Candidate interfaces indexed by annotation, built from the {@link
+ * SpringBeanCandidateIndexLoader#INDEX_LOCATION} files found on the classpath.
+ *
+ * @author esotericman
+ */
+public class SpringBeanCandidateIndex {
+  private static final AntPathMatcher pathMatcher = new AntPathMatcher(".");
+  private final MultiValueMap<String, String> index = new LinkedMultiValueMap<>();
+
+  SpringBeanCandidateIndex(List<Properties> content) {
+    for (Properties properties : content) {
+      properties.forEach(
+          (type, annotations) -> {
+            for (String annotation :
+                StringUtils.commaDelimitedListToStringArray((String) annotations)) {
+              this.index.add(annotation, (String) type);
+            }
+          });
+    }
+  }
+
+  /**
+   * Return the candidate types under the given package carrying the given annotation.
+   *
+   * @param basePackage package to check, may be an ant-style pattern
+   * @param annotation fully qualified name of the annotation
+   * @return candidate type names
+   */
+  public Set<String> getCandidateTypes(String basePackage, String annotation) {
+    List<String> types = this.index.get(annotation);
+    if (types == null) {
+      return Collections.emptySet();
+    }
+    Set<String> candidates = new LinkedHashSet<>();
+    for (String type : types) {
+      if (matchPackage(basePackage, type)) {
+        candidates.add(type);
+      }
+    }
+    return candidates;
+  }
+
+  boolean isEmpty() {
+    return this.index.isEmpty();
+  }
+
+  /**
+   * Whether the given type is located in the given package or one of its sub-packages.
+   *
+   * @param basePackage package, may be an ant-style pattern
+   * @param type fully qualified type name
+   * @return match or not
+   */
+  public static boolean matchPackage(String basePackage, String type) {
+    return pathMatcher.match(basePackage + ".**", type);
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.index;
+
+import jakarta.annotation.Nullable;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.SpringProperties;
+import org.springframework.core.io.UrlResource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+import org.springframework.util.ConcurrentReferenceHashMap;
+
+/**
+ * Loads the {@link SpringBeanCandidateIndex} written by {@link SpringBeanIndexProcessor}.
+ *
+ * @author esotericman
+ */
+public final class SpringBeanCandidateIndexLoader {
+
+  /** Location of the candidate index, may be present in multiple jar files. */
+  public static final String INDEX_LOCATION = "META-INF/spring-factory-bean.index";
+
+  /**
+   * System property instructing the scanner to ignore the index and always scan the classpath,
+   * useful when only some of the scanned jars were compiled with the processor.
+   */
+  public static final String IGNORE_INDEX = "spring.factory.bean.index.ignore";
+
+  private static final Logger logger =
+      LoggerFactory.getLogger(SpringBeanCandidateIndexLoader.class);
+  private static final boolean shouldIgnoreIndex = SpringProperties.getFlag(IGNORE_INDEX);
+  private static final ConcurrentMap<ClassLoader, SpringBeanCandidateIndex> cache =
+      new ConcurrentReferenceHashMap<>();
+
+  private SpringBeanCandidateIndexLoader() {}
+
+  /**
+   * Load the candidate index of the given class loader.
+   *
+   * @param classLoader classLoader to use, or null for the default one
+   * @return index, or null if no index was found or the index is ignored
+   */
+  @Nullable
+  public static SpringBeanCandidateIndex loadIndex(@Nullable ClassLoader classLoader) {
+    if (shouldIgnoreIndex) {
+      return null;
+    }
+    ClassLoader classLoaderToUse = classLoader;
+    if (classLoaderToUse == null) {
+      classLoaderToUse = SpringBeanCandidateIndexLoader.class.getClassLoader();
+    }
+    SpringBeanCandidateIndex index =
+        cache.computeIfAbsent(classLoaderToUse, SpringBeanCandidateIndexLoader::doLoadIndex);
+    return index.isEmpty() ? null : index;
+  }
+
+  private static SpringBeanCandidateIndex doLoadIndex(ClassLoader classLoader) {
+    try {
+      Enumeration<URL> urls = classLoader.getResources(INDEX_LOCATION);
+      List<Properties> result = new ArrayList<>();
+      while (urls.hasMoreElements()) {
+        result.add(PropertiesLoaderUtils.loadProperties(new UrlResource(urls.nextElement())));
+      }
+      if (logger.isDebugEnabled()) {
+        logger.debug("Loaded " + result.size() + " candidate index file(s)");
+      }
+      return new SpringBeanCandidateIndex(result);
+    } catch (IOException e) {
+      throw new IllegalStateException(
+          "Unable to load indexes from location [" + INDEX_LOCATION + "]", e);
+    }
+  }
+}
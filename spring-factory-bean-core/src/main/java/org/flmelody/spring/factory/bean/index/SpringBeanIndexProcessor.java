@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.index;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Annotation processor writing {@value SpringBeanCandidateIndexLoader#INDEX_LOCATION}, which maps
+ * every annotated interface to the annotations (including meta-annotations) it carries. The index
+ * lets the scanner resolve candidates without walking the classpath.
+ *
+ * @author esotericman
+ */
+public class SpringBeanIndexProcessor extends AbstractProcessor {
+  private final Map<String, Set<String>> candidates = new TreeMap<>();
+  private final Set<String> processedTypes = new HashSet<>();
+
+  /** {@inheritDoc} */
+  @Override
+  public Set<String> getSupportedAnnotationTypes() {
+    return Set.of("*");
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    for (Element element : roundEnv.getRootElements()) {
+      collectCandidates(element);
+    }
+    if (roundEnv.processingOver()) {
+      writeIndex();
+    }
+    return false;
+  }
+
+  private void collectCandidates(Element element) {
+    if (element.getKind() == ElementKind.INTERFACE) {
+      TypeElement typeElement = (TypeElement) element;
+      String typeName = processingEnv.getElementUtils().getBinaryName(typeElement).toString();
+      processedTypes.add(typeName);
+      Set<String> annotationTypes = new TreeSet<>();
+      collectAnnotationTypes(typeElement, annotationTypes);
+      if (!annotationTypes.isEmpty()) {
+        candidates.put(typeName, annotationTypes);
+      }
+    }
+    for (Element enclosed : element.getEnclosedElements()) {
+      if (enclosed.getKind().isClass() || enclosed.getKind() == ElementKind.INTERFACE) {
+        collectCandidates(enclosed);
+      }
+    }
+  }
+
+  private void collectAnnotationTypes(Element element, Set<String> annotationTypes) {
+    for (AnnotationMirror annotationMirror : element.getAnnotationMirrors()) {
+      TypeElement annotationType = (TypeElement) annotationMirror.getAnnotationType().asElement();
+      String annotationName = annotationType.getQualifiedName().toString();
+      if (!annotationName.startsWith("java.") && annotationTypes.add(annotationName)) {
+        collectAnnotationTypes(annotationType, annotationTypes);
+      }
+    }
+  }
+
+  private void writeIndex() {
+    Properties previous = readPreviousIndex();
+    for (String typeName : previous.stringPropertyNames()) {
+      // keep entries of types that were not part of this (incremental) compilation
+      if (!processedTypes.contains(typeName)
+          && processingEnv.getElementUtils().getTypeElement(typeName.replace('$', '.')) != null) {
+        candidates.putIfAbsent(
+            typeName, new TreeSet<>(Arrays.asList(previous.getProperty(typeName).split(","))));
+      }
+    }
+    if (candidates.isEmpty() && previous.isEmpty()) {
+      return;
+    }
+    try {
+      FileObject file =
+          processingEnv
+              .getFiler()
+              .createResource(
+                  StandardLocation.CLASS_OUTPUT, "", SpringBeanCandidateIndexLoader.INDEX_LOCATION);
+      try (Writer writer =
+          new OutputStreamWriter(file.openOutputStream(), StandardCharsets.UTF_8)) {
+        for (Map.Entry<String, Set<String>> entry : candidates.entrySet()) {
+          writer.write(entry.getKey() + "=" + String.join(",", entry.getValue()) + "\n");
+        }
+      }
+    } catch (IOException e) {
+      processingEnv
+          .getMessager()
+          .printMessage(
+              Diagnostic.Kind.WARNING,
+              "Unable to write "
+                  + SpringBeanCandidateIndexLoader.INDEX_LOCATION
+                  + ", the classpath will be scanned at runtime: "
+                  + e.getMessage());
+    }
+  }
+
+  private Properties readPreviousIndex() {
+    Properties previous = new Properties();
+    try {
+      FileObject file =
+          processingEnv
+              .getFiler()
+              .getResource(
+                  StandardLocation.CLASS_OUTPUT, "", SpringBeanCandidateIndexLoader.INDEX_LOCATION);
+      try (InputStream inputStream = file.openInputStream()) {
+        previous.load(inputStream);
+      }
+    } catch (IOException | IllegalArgumentException ignored) {
+      // no index from a previous compilation
+    }
+    return previous;
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.annotation;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Factory bean creating proxies that answer every call with the interface name and the number of
+ * the product.
+ *
+ * @author esotericman
+ */
+public class GreetingFactoryBean<T> extends AbstractProxyFactoryBean<T> {
+  static final AtomicInteger PRODUCTS = new AtomicInteger();
+
+  private final Class<T> beanInterface;
+
+  public GreetingFactoryBean(Class<T> beanInterface) {
+    this.beanInterface = beanInterface;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  protected T createProxy() {
+    String greeting = beanInterface.getSimpleName() + "#" + PRODUCTS.incrementAndGet();
+    return beanInterface.cast(
+        Proxy.newProxyInstance(
+            beanInterface.getClassLoader(),
+            new Class<?>[] {beanInterface},
+            (proxy, method, args) ->
+                "toString".equals(method.getName()) || method.getReturnType() == String.class
+                    ? greeting
+                    : null));
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Class<T> getObjectType() {
+    return beanInterface;
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.annotation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.flmelody.spring.factory.bean.annotation.warmup.WarmedGreeting;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.BeanCreationException;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * @author esotericman
+ */
+class LazyResolutionProxyFactoryBeanTest {
+  private static final String TARGET_NAME =
+      LazyResolutionProxyFactoryBean.getTargetBeanName("warmedGreeting");
+
+  @Test
+  void factoryIsOnlyCreatedOnFirstCall() {
+    try (AnnotationConfigApplicationContext context =
+        new AnnotationConfigApplicationContext(LazyConfiguration.class)) {
+      WarmedGreeting greeting = context.getBean(WarmedGreeting.class);
+      assertThat(AopUtils.isAopProxy(greeting)).isTrue();
+      assertThat(context.getBeanFactory().containsSingleton(TARGET_NAME)).isFalse();
+      assertThat(context.getBeanFactory().getBeanDefinition(TARGET_NAME).isAutowireCandidate())
+          .isFalse();
+
+      assertThat(greeting.greet()).startsWith("WarmedGreeting#");
+      assertThat(context.getBeanFactory().containsSingleton(TARGET_NAME)).isTrue();
+      assertThat(greeting.greet()).isEqualTo(greeting.greet());
+    }
+  }
+
+  @Test
+  void failingFactoryFailsTheCallInsteadOfTheRefresh() {
+    try (AnnotationConfigApplicationContext context =
+        new AnnotationConfigApplicationContext(FailingConfiguration.class)) {
+      WarmedGreeting greeting = context.getBean(WarmedGreeting.class);
+
+      assertThatThrownBy(greeting::greet)
+          .isInstanceOf(BeanCreationException.class)
+          .hasRootCauseMessage("Database unavailable");
+    }
+  }
+
+  /** Factory bean whose product cannot be created. */
+  public static class FailingGreetingFactoryBean<T> extends GreetingFactoryBean<T> {
+
+    public FailingGreetingFactoryBean(Class<T> beanInterface) {
+      super(beanInterface);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected T createProxy() {
+      throw new IllegalStateException("Database unavailable");
+    }
+  }
+
+  @Configuration
+  @SpringBeanScan(
+      basePackages = "org.flmelody.spring.factory.bean.annotation.warmup",
+      factoryBean = GreetingFactoryBean.class,
+      lazyResolve = true)
+  static class LazyConfiguration {}
+
+  @Configuration
+  @SpringBeanScan(
+      basePackages = "org.flmelody.spring.factory.bean.annotation.warmup",
+      factoryBean = FailingGreetingFactoryBean.class,
+      lazyResolve = true)
+  static class FailingConfiguration {}
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.annotation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.flmelody.spring.factory.bean.annotation.cached.CachedGreeting;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.context.metrics.buffering.StartupTimeline;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.metrics.StartupStep;
+
+/**
+ * @author esotericman
+ */
+class ProxyBeanCreationRecorderTest {
+
+  @Test
+  void factoryLookupReturnsTheFactoryItself() {
+    try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+      BufferingApplicationStartup applicationStartup = new BufferingApplicationStartup(64);
+      context.setApplicationStartup(applicationStartup);
+      context.register(RecorderConfiguration.class);
+      context.refresh();
+      String beanName = context.getBeanNamesForType(CachedGreeting.class)[0];
+
+      assertThat(context.getBean("&" + beanName)).isInstanceOf(GreetingFactoryBean.class);
+      assertThat(context.getBean("&" + beanName, GreetingFactoryBean.class).getObjectType())
+          .isEqualTo(CachedGreeting.class);
+      assertThat(context.isSingleton(beanName)).isTrue();
+      assertThat(context.getType(beanName)).isEqualTo(CachedGreeting.class);
+      assertThat(context.getBean(CachedGreeting.class).greet()).startsWith("CachedGreeting#");
+      assertThat(context.getBean(CachedGreeting.class))
+          .isSameAs(context.getBean(CachedGreeting.class));
+
+      List<ProxyBeanDescriptor> proxyBeans =
+          context.getBean(ProxyBeanCreationRecorder.class).getProxyBeans();
+      assertThat(proxyBeans)
+          .singleElement()
+          .satisfies(
+              descriptor -> {
+                assertThat(descriptor.beanName()).isEqualTo(beanName);
+                assertThat(descriptor.creations()).isEqualTo(1);
+                assertThat(descriptor.lastCreationNanos()).isNotNegative();
+              });
+      assertThat(creationSteps(applicationStartup))
+          .singleElement()
+          .satisfies(tags -> assertThat(tags).containsEntry("beanName", beanName));
+    }
+  }
+
+  @Test
+  void failedCreationsEndTheirStep() {
+    BufferingApplicationStartup applicationStartup = new BufferingApplicationStartup(64);
+    try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+      context.setApplicationStartup(applicationStartup);
+      context.register(FailingConfiguration.class);
+      context.refresh();
+
+      assertThatThrownBy(() -> context.getBean(CachedGreeting.class))
+          .hasRootCauseMessage("no greeting");
+      assertThat(context.getBean(ProxyBeanCreationRecorder.class).getProxyBeans())
+          .singleElement()
+          .satisfies(
+              descriptor -> {
+                assertThat(descriptor.creations()).isZero();
+                assertThat(descriptor.lastCreationNanos()).isEqualTo(-1);
+              });
+    }
+    assertThat(creationSteps(applicationStartup))
+        .singleElement()
+        .satisfies(
+            tags ->
+                assertThat(tags)
+                    .containsEntry("failure", IllegalStateException.class.getName()));
+  }
+
+  private static List<Map<String, String>> creationSteps(
+      BufferingApplicationStartup applicationStartup) {
+    List<Map<String, String>> steps = new ArrayList<>();
+    for (StartupTimeline.TimelineEvent event :
+        applicationStartup.getBufferedTimeline().getEvents()) {
+      StartupStep step = event.getStartupStep();
+      if ("flmelody.proxy-bean.create".equals(step.getName())) {
+        Map<String, String> tags = new HashMap<>();
+        for (StartupStep.Tag tag : step.getTags()) {
+          tags.put(tag.getKey(), tag.getValue());
+        }
+        steps.add(tags);
+      }
+    }
+    return steps;
+  }
+
+  static class FailingFactoryBean<T> extends AbstractProxyFactoryBean<T> {
+    private final Class<T> beanInterface;
+
+    FailingFactoryBean(Class<T> beanInterface) {
+      this.beanInterface = beanInterface;
+    }
+
+    @Override
+    protected T createProxy() {
+      throw new IllegalStateException("no greeting");
+    }
+
+    @Override
+    public Class<T> getObjectType() {
+      return beanInterface;
+    }
+  }
+
+  @Configuration
+  @SpringBeanScan(
+      basePackages = "org.flmelody.spring.factory.bean.annotation.cached",
+      factoryBean = GreetingFactoryBean.class)
+  static class RecorderConfiguration {}
+
+  @Configuration
+  @SpringBeanScan(
+      basePackages = "org.flmelody.spring.factory.bean.annotation.cached",
+      factoryBean = FailingFactoryBean.class)
+  static class FailingConfiguration {}
+}
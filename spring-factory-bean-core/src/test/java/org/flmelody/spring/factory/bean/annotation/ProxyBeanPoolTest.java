@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.annotation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import org.flmelody.spring.factory.bean.annotation.pool.PooledGreeting;
+import org.flmelody.spring.factory.bean.annotation.pool.RecycledGreeting;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.RequestScope;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+/**
+ * @author esotericman
+ */
+class ProxyBeanPoolTest {
+
+  @AfterEach
+  void resetRequest() {
+    RequestContextHolder.resetRequestAttributes();
+  }
+
+  @Test
+  void lambdaResetterLetsProductsBeReused() {
+    try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+      context
+          .getBeanFactory()
+          .registerScope(WebApplicationContext.SCOPE_REQUEST, new RequestScope());
+      context.register(PoolConfiguration.class);
+      context.refresh();
+      PooledGreeting pooled = context.getBean(PooledGreeting.class);
+      RecycledGreeting recycled = context.getBean(RecycledGreeting.class);
+
+      String[] first = inRequest(pooled, recycled);
+      assertThat(idleCount(context, "pooledGreeting")).isEqualTo(1);
+      assertThat(idleCount(context, "recycledGreeting")).isEqualTo(1);
+      // the resetter only accepts the type its @Bean method declares
+      assertThat(context.getBean(PoolConfiguration.class).reset).containsExactly("pooledGreeting");
+
+      assertThat(inRequest(pooled, recycled)).containsExactly(first);
+    }
+  }
+
+  @Test
+  void idleProductsAreSweptWithoutBorrowing() throws InterruptedException {
+    try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+      context
+          .getBeanFactory()
+          .registerScope(WebApplicationContext.SCOPE_REQUEST, new RequestScope());
+      context.register(SweptPoolConfiguration.class);
+      context.refresh();
+
+      inRequest(context.getBean(PooledGreeting.class), context.getBean(RecycledGreeting.class));
+      assertThat(idleCount(context, "pooledGreeting")).isEqualTo(1);
+
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+      while (idleCount(context, "pooledGreeting") + idleCount(context, "recycledGreeting") > 0
+          && System.nanoTime() < deadline) {
+        Thread.sleep(10);
+      }
+      assertThat(idleCount(context, "pooledGreeting")).isZero();
+      assertThat(idleCount(context, "recycledGreeting")).isZero();
+    }
+  }
+
+  private static int idleCount(AnnotationConfigApplicationContext context, String beanName) {
+    return context.getBean(ProxyBeanPool.getPoolBeanName(beanName), ProxyBeanPool.class)
+        .getIdleCount();
+  }
+
+  private static String[] inRequest(PooledGreeting pooled, RecycledGreeting recycled) {
+    ServletRequestAttributes requestAttributes =
+        new ServletRequestAttributes(new MockHttpServletRequest());
+    RequestContextHolder.setRequestAttributes(requestAttributes);
+    try {
+      return new String[] {pooled.greet(), recycled.greet()};
+    } finally {
+      requestAttributes.requestCompleted();
+      RequestContextHolder.resetRequestAttributes();
+    }
+  }
+
+  @Configuration
+  @SpringBeanScan(
+      basePackages = "org.flmelody.spring.factory.bean.annotation.pool",
+      factoryBean = GreetingFactoryBean.class,
+      poolSize = 2,
+      poolIdleTimeout = 50)
+  static class SweptPoolConfiguration {}
+
+  @Configuration
+  @SpringBeanScan(
+      basePackages = "org.flmelody.spring.factory.bean.annotation.pool",
+      factoryBean = GreetingFactoryBean.class,
+      poolSize = 2)
+  static class PoolConfiguration {
+    final List<String> reset = new CopyOnWriteArrayList<>();
+
+    @Bean
+    ProxyBeanResetter<PooledGreeting> greetingResetter() {
+      return (beanName, bean) -> reset.add(beanName);
+    }
+  }
+}
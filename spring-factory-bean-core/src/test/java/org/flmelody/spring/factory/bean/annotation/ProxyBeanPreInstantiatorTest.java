@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.annotation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.flmelody.spring.factory.bean.annotation.warmup.WarmedGreeting;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * @author esotericman
+ */
+class ProxyBeanPreInstantiatorTest {
+
+  @Test
+  void lambdaWarmerOnlyWarmsBeansOfItsDeclaredType() {
+    try (AnnotationConfigApplicationContext context =
+        new AnnotationConfigApplicationContext(WarmupConfiguration.class)) {
+      assertThat(context.getBean(WarmupConfiguration.class).warmed)
+          .containsExactly("warmedGreeting");
+    }
+  }
+
+  @Test
+  void warmerWithoutResolvableTypeFailsTheRefresh() {
+    try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+      context.register(WarmupConfiguration.class);
+      context.registerBean("untypedWarmer", ProxyBeanWarmer.class, () -> (beanName, bean) -> {});
+      assertThatThrownBy(context::refresh)
+          .isInstanceOf(IllegalStateException.class)
+          .hasMessageContaining("untypedWarmer");
+    }
+  }
+
+  @Configuration
+  @SpringBeanScan(
+      basePackages = "org.flmelody.spring.factory.bean.annotation.warmup",
+      factoryBean = GreetingFactoryBean.class,
+      preInstantiate = true)
+  static class WarmupConfiguration {
+    final List<String> warmed = new CopyOnWriteArrayList<>();
+
+    @Bean
+    ProxyBeanWarmer<WarmedGreeting> greetingWarmer() {
+      return (beanName, bean) -> {
+        bean.greet();
+        warmed.add(beanName);
+      };
+    }
+  }
+}
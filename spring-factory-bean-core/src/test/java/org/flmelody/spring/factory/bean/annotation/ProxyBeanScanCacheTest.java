@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.annotation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import org.flmelody.spring.factory.bean.annotation.cached.CachedGreeting;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.context.metrics.buffering.StartupTimeline;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.metrics.StartupStep;
+import org.springframework.mock.env.MockEnvironment;
+
+/**
+ * @author esotericman
+ */
+class ProxyBeanScanCacheTest {
+
+  @Test
+  void cachedEntriesAreReusedUntilTheirFingerprintChanges(@TempDir Path directory)
+      throws IOException {
+    Path cacheFile = directory.resolve("scan.cache");
+
+    assertThat(refresh(cacheFile)).isEqualTo("0");
+    assertThat(cacheFile).exists();
+    String cached = Files.readString(cacheFile, StandardCharsets.UTF_8);
+    assertThat(cached).contains(CachedGreeting.class.getName());
+
+    assertThat(refresh(cacheFile)).isEqualTo("1");
+
+    Files.writeString(
+        cacheFile, cached.replaceAll("=dir\\\\:[^;]*;", "=dir\\\\:stale;"), StandardCharsets.UTF_8);
+    assertThat(refresh(cacheFile)).isEqualTo("0");
+    assertThat(Files.readString(cacheFile, StandardCharsets.UTF_8)).doesNotContain("stale");
+  }
+
+  @Test
+  void vanishedEntriesOfTheScanArePruned(@TempDir Path directory) throws IOException {
+    Path cacheFile = directory.resolve("scan.cache");
+    refresh(cacheFile);
+    Properties entries = load(cacheFile);
+    String key = entries.stringPropertyNames().iterator().next();
+    String scan = key.substring(0, key.lastIndexOf("|file:") + 1);
+    entries.setProperty(scan + "file:/vanished/", "dir:1:0;vanished.Greeting");
+    entries.setProperty("*|other.scan|file:/kept/", "dir:1:0;kept.Greeting");
+    try (Writer writer = Files.newBufferedWriter(cacheFile, StandardCharsets.UTF_8)) {
+      entries.store(writer, null);
+    }
+
+    assertThat(refresh(cacheFile)).isEqualTo("1");
+
+    assertThat(load(cacheFile).stringPropertyNames())
+        .contains(key, "*|other.scan|file:/kept/")
+        .doesNotContain(scan + "file:/vanished/");
+  }
+
+  private static Properties load(Path cacheFile) throws IOException {
+    Properties entries = new Properties();
+    try (Reader reader = Files.newBufferedReader(cacheFile, StandardCharsets.UTF_8)) {
+      entries.load(reader);
+    }
+    return entries;
+  }
+
+  /**
+   * Refresh a context scanning with the given cache.
+   *
+   * @return classpath entries read from the cache
+   */
+  private static String refresh(Path cacheFile) {
+    BufferingApplicationStartup applicationStartup = new BufferingApplicationStartup(64);
+    try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+      context.setEnvironment(
+          new MockEnvironment()
+              .withProperty(ProxyBeanScanCache.CACHE_LOCATION, cacheFile.toString()));
+      context.setApplicationStartup(applicationStartup);
+      context.register(CacheConfiguration.class);
+      context.refresh();
+      assertThat(context.getBean(CachedGreeting.class).greet()).startsWith("CachedGreeting#");
+    }
+    for (StartupTimeline.TimelineEvent event :
+        applicationStartup.getBufferedTimeline().getEvents()) {
+      StartupStep step = event.getStartupStep();
+      if ("flmelody.proxy-bean.scan.read".equals(step.getName())) {
+        for (StartupStep.Tag tag : step.getTags()) {
+          if ("cachedEntries".equals(tag.getKey())) {
+            return tag.getValue();
+          }
+        }
+      }
+    }
+    throw new AssertionError("No scan read step recorded");
+  }
+
+  @Configuration
+  @SpringBeanScan(
+      basePackages = "org.flmelody.spring.factory.bean.annotation.cached",
+      factoryBean = GreetingFactoryBean.class)
+  static class CacheConfiguration {}
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.annotation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.flmelody.spring.factory.bean.annotation.cached.CachedGreeting;
+import org.flmelody.spring.factory.bean.annotation.warmup.ColdGreeting;
+import org.flmelody.spring.factory.bean.annotation.warmup.WarmedGreeting;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.BeanDefinitionStoreException;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.context.metrics.buffering.StartupTimeline;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.metrics.StartupStep;
+
+/**
+ * @author esotericman
+ */
+class ProxyBeanScanCoordinatorTest {
+
+  @Test
+  void scansShareOneReadOfTheirPackages() {
+    BufferingApplicationStartup applicationStartup = new BufferingApplicationStartup(64);
+    try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+      context.setApplicationStartup(applicationStartup);
+      context.register(WarmupConfiguration.class, CachedConfiguration.class);
+      context.refresh();
+      assertThat(context.getBean(WarmedGreeting.class).greet()).startsWith("WarmedGreeting#");
+      assertThat(context.getBean(ColdGreeting.class).greet()).startsWith("ColdGreeting#");
+      assertThat(context.getBean(CachedGreeting.class).greet()).startsWith("CachedGreeting#");
+    }
+
+    List<Map<String, String>> reads = steps(applicationStartup, "flmelody.proxy-bean.scan.read");
+    assertThat(reads).hasSize(1);
+    assertThat(reads.get(0))
+        .containsEntry(
+            "rootPackages",
+            "org.flmelody.spring.factory.bean.annotation.warmup,"
+                + "org.flmelody.spring.factory.bean.annotation.cached")
+        .containsEntry("accepted", "3");
+    assertThat(steps(applicationStartup, "flmelody.proxy-bean.scan.definition"))
+        .extracting(tags -> tags.get("registered"))
+        .containsExactly("2", "1");
+  }
+
+  @Test
+  void unresolvableBasePackageFailsTheRefresh() {
+    try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+      context.register(WarmupConfiguration.class, PlaceholderConfiguration.class);
+      assertThatThrownBy(context::refresh)
+          .isInstanceOf(IllegalArgumentException.class)
+          .hasMessageContaining("greeting.package");
+      assertThat(context.getBeanFactory().containsBeanDefinition("warmedGreeting")).isFalse();
+    }
+  }
+
+  @Test
+  void parallelScanRegistersTheBeansOfTheSequentialScan() {
+    BufferingApplicationStartup applicationStartup = new BufferingApplicationStartup(64);
+    List<String> sequential;
+    try (AnnotationConfigApplicationContext context =
+        new AnnotationConfigApplicationContext(SequentialConfiguration.class)) {
+      sequential = greetingNames(context);
+    }
+    try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+      context.setApplicationStartup(applicationStartup);
+      context.register(ParallelConfiguration.class);
+      context.refresh();
+      assertThat(greetingNames(context))
+          .containsExactly("coldGreeting", "warmedGreeting", "cachedGreeting")
+          .isEqualTo(sequential);
+      assertThat(context.getBean(CachedGreeting.class).greet()).startsWith("CachedGreeting#");
+    }
+    assertThat(steps(applicationStartup, "flmelody.proxy-bean.scan.read"))
+        .singleElement()
+        .satisfies(tags -> assertThat(tags).containsEntry("parallelism", "4"));
+  }
+
+  @Test
+  void unreadableClassFailsTheParallelScan(@TempDir Path directory) throws IOException {
+    Path brokenClass =
+        directory.resolve("org/flmelody/spring/factory/bean/annotation/cached/Broken.class");
+    Files.createDirectories(brokenClass.getParent());
+    Files.write(brokenClass, new byte[] {0, 1, 2, 3});
+    try (URLClassLoader classLoader =
+            new URLClassLoader(
+                new URL[] {directory.toUri().toURL()}, getClass().getClassLoader());
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+      context.setClassLoader(classLoader);
+      context.register(ParallelConfiguration.class);
+      assertThatThrownBy(context::refresh)
+          .isInstanceOf(BeanDefinitionStoreException.class)
+          .hasMessageContaining("Broken.class");
+    }
+  }
+
+  private static List<String> greetingNames(AnnotationConfigApplicationContext context) {
+    return Arrays.stream(context.getBeanDefinitionNames())
+        .filter(name -> name.endsWith("Greeting"))
+        .toList();
+  }
+
+  private static List<Map<String, String>> steps(
+      BufferingApplicationStartup applicationStartup, String name) {
+    List<Map<String, String>> steps = new ArrayList<>();
+    for (StartupTimeline.TimelineEvent event :
+        applicationStartup.getBufferedTimeline().getEvents()) {
+      StartupStep step = event.getStartupStep();
+      if (name.equals(step.getName())) {
+        Map<String, String> tags = new LinkedHashMap<>();
+        step.getTags().forEach(tag -> tags.put(tag.getKey(), tag.getValue()));
+        steps.add(tags);
+      }
+    }
+    return steps;
+  }
+
+  @Configuration
+  @SpringBeanScan(
+      basePackages = "org.flmelody.spring.factory.bean.annotation.warmup",
+      factoryBean = GreetingFactoryBean.class)
+  static class WarmupConfiguration {}
+
+  @Configuration
+  @SpringBeanScan(
+      basePackages = "org.flmelody.spring.factory.bean.annotation.cached",
+      factoryBean = GreetingFactoryBean.class)
+  static class CachedConfiguration {}
+
+  @Configuration
+  @SpringBeanScan(
+      basePackages = {
+        "org.flmelody.spring.factory.bean.annotation.warmup",
+        "org.flmelody.spring.factory.bean.annotation.cached"
+      },
+      factoryBean = GreetingFactoryBean.class,
+      lazyInitialization = true)
+  static class SequentialConfiguration {}
+
+  @Configuration
+  @SpringBeanScan(
+      basePackages = {
+        "org.flmelody.spring.factory.bean.annotation.warmup",
+        "org.flmelody.spring.factory.bean.annotation.cached"
+      },
+      factoryBean = GreetingFactoryBean.class,
+      lazyInitialization = true,
+      parallelism = 4)
+  static class ParallelConfiguration {}
+
+  @Configuration
+  @SpringBeanScan(basePackages = "${greeting.package}", factoryBean = GreetingFactoryBean.class)
+  static class PlaceholderConfiguration {}
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.annotation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.flmelody.spring.factory.bean.annotation.named.NamedBean;
+import org.flmelody.spring.factory.bean.annotation.named.NamedGreeting;
+import org.flmelody.spring.factory.bean.annotation.named.UnnamedGreeting;
+import org.flmelody.spring.factory.bean.annotation.scoped.RequestGreeting;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.scope.ScopedProxyUtils;
+import org.springframework.beans.factory.BeanCreationException;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.RequestScope;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+/**
+ * @author esotericman
+ */
+class ProxyClassPathBeanDefinitionScannerTest {
+
+  @AfterEach
+  void resetRequest() {
+    RequestContextHolder.resetRequestAttributes();
+  }
+
+  @Test
+  void requestScopedBeanResolvesThroughScopedProxy() {
+    try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+      context
+          .getBeanFactory()
+          .registerScope(WebApplicationContext.SCOPE_REQUEST, new RequestScope());
+      context.register(ScopedConfiguration.class);
+      context.refresh();
+
+      String targetBeanName = ScopedProxyUtils.getTargetBeanName("requestGreeting");
+      BeanDefinition target = context.getBeanFactory().getBeanDefinition(targetBeanName);
+      assertThat(target.getBeanClassName()).isEqualTo(GreetingFactoryBean.class.getName());
+      assertThat(target.getScope()).isEqualTo(WebApplicationContext.SCOPE_REQUEST);
+
+      RequestGreeting greeting = context.getBean(RequestGreeting.class);
+      assertThatThrownBy(greeting::greet).isInstanceOf(BeanCreationException.class);
+
+      RequestContextHolder.setRequestAttributes(
+          new ServletRequestAttributes(new MockHttpServletRequest()));
+      assertThat(greeting.greet()).startsWith("RequestGreeting#");
+      Object factory = context.getBean("&" + targetBeanName);
+      assertThat(context.getBean("&" + targetBeanName)).isSameAs(factory);
+
+      RequestContextHolder.setRequestAttributes(
+          new ServletRequestAttributes(new MockHttpServletRequest()));
+      assertThat(greeting.greet()).startsWith("RequestGreeting#");
+      assertThat(context.getBean("&" + targetBeanName)).isNotSameAs(factory);
+    }
+  }
+
+  @Test
+  void valueOfComponentStereotypeNamesTheBean() {
+    try (AnnotationConfigApplicationContext context =
+        new AnnotationConfigApplicationContext(NamedConfiguration.class)) {
+      assertThat(context.getBean("customGreeting", NamedGreeting.class).greet())
+          .startsWith("NamedGreeting#");
+      assertThat(context.getBean("unnamedGreeting", UnnamedGreeting.class).greet())
+          .startsWith("UnnamedGreeting#");
+      assertThat(context.containsBean("namedGreeting")).isFalse();
+    }
+  }
+
+  @Test
+  void scopeOfSpringBeanNamesNoBean() {
+    try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+      context
+          .getBeanFactory()
+          .registerScope(WebApplicationContext.SCOPE_REQUEST, new RequestScope());
+      context.register(ScopedConfiguration.class);
+      context.refresh();
+
+      assertThat(context.containsBean(WebApplicationContext.SCOPE_REQUEST)).isFalse();
+      assertThat(context.getBeanNamesForType(RequestGreeting.class)).contains("requestGreeting");
+    }
+  }
+
+  @Configuration
+  @SpringBeanScan(
+      basePackages = "org.flmelody.spring.factory.bean.annotation.named",
+      beanAnnotation = NamedBean.class,
+      factoryBean = GreetingFactoryBean.class)
+  static class NamedConfiguration {}
+
+  @Configuration
+  @SpringBeanScan(
+      basePackages = "org.flmelody.spring.factory.bean.annotation.scoped",
+      factoryBean = GreetingFactoryBean.class)
+  static class ScopedConfiguration {}
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.aot;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.reflect.Proxy;
+import org.flmelody.spring.factory.bean.annotation.GreetingFactoryBean;
+import org.flmelody.spring.factory.bean.annotation.LazyResolutionProxyFactoryBean;
+import org.flmelody.spring.factory.bean.annotation.PooledProxyFactoryBean;
+import org.flmelody.spring.factory.bean.annotation.ProxyBeanPool;
+import org.flmelody.spring.factory.bean.annotation.SpringBeanScan;
+import org.flmelody.spring.factory.bean.aot.greeting.LazyGreeting;
+import org.flmelody.spring.factory.bean.aot.greeting.PooledGreeting;
+import org.flmelody.spring.factory.bean.aot.greeting.ScannedGreeting;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+import org.springframework.aot.test.generate.TestGenerationContext;
+import org.springframework.beans.factory.FactoryBean;
+import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.context.annotation.AnnotationConfigUtils;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.aot.ApplicationContextAotGenerator;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.test.tools.CompileWithForkedClassLoader;
+import org.springframework.core.test.tools.Compiled;
+import org.springframework.core.test.tools.TestCompiler;
+import org.springframework.javapoet.ClassName;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.RequestScope;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+/**
+ * @author esotericman
+ */
+@CompileWithForkedClassLoader
+class ProxyBeanRegistrationAotProcessorTest {
+
+  @AfterEach
+  void resetRequest() {
+    RequestContextHolder.resetRequestAttributes();
+  }
+
+  @Test
+  void generatedContextServesScannedLazyAndPooledBeans() {
+    GenericApplicationContext context = newContext();
+    AnnotationConfigUtils.registerAnnotationConfigProcessors(context);
+    context.registerBean(AotConfiguration.class);
+    TestGenerationContext generationContext = new TestGenerationContext();
+    ClassName initializer =
+        new ApplicationContextAotGenerator().processAheadOfTime(context, generationContext);
+    generationContext.writeGeneratedContent();
+    RuntimeHints runtimeHints = generationContext.getRuntimeHints();
+
+    TestCompiler.forSystem()
+        .with(generationContext)
+        .compile(
+            compiled -> {
+              assertThat(compiled.getSourceFiles().stream().map(Object::toString))
+                  .noneMatch(source -> source.contains("ProxyBeanDefinitionRegistryPostProcessor"));
+              GenericApplicationContext aotContext = newContext();
+              initializer(compiled, initializer).initialize(aotContext);
+              aotContext.refresh();
+              try {
+                assertBeans(aotContext, runtimeHints);
+              } finally {
+                aotContext.close();
+              }
+            });
+  }
+
+  @SuppressWarnings("unchecked")
+  private static ApplicationContextInitializer<GenericApplicationContext> initializer(
+      Compiled compiled, ClassName initializer) {
+    return compiled.getInstance(ApplicationContextInitializer.class, initializer.toString());
+  }
+
+  private static void assertBeans(GenericApplicationContext context, RuntimeHints runtimeHints) {
+    assertThat(context.getBeanDefinition("scannedGreeting").getBeanClassName())
+        .isEqualTo(GreetingFactoryBean.class.getName());
+    assertThat(context.getBeanDefinition("lazyGreeting").getBeanClassName())
+        .isEqualTo(LazyResolutionProxyFactoryBean.class.getName());
+    assertThat(context.getBeanDefinition("scopedTarget.pooledGreeting").getBeanClassName())
+        .isEqualTo(PooledProxyFactoryBean.class.getName());
+    assertThat(context.containsBeanDefinition(ProxyBeanPool.getPoolBeanName("pooledGreeting")))
+        .isTrue();
+    // generated as classes, so that no factory is created to find out its object type
+    assertThat(objectType(context, "scannedGreeting")).isEqualTo(ScannedGreeting.class);
+    assertThat(objectType(context, "lazyGreeting")).isEqualTo(LazyGreeting.class);
+    assertThat(objectType(context, "lazyTarget.lazyGreeting")).isEqualTo(LazyGreeting.class);
+    assertThat(objectType(context, "scopedTarget.pooledGreeting")).isEqualTo(PooledGreeting.class);
+    assertThat(objectType(context, "pooledTarget.pooledGreeting")).isEqualTo(PooledGreeting.class);
+
+    ScannedGreeting scanned = context.getBean(ScannedGreeting.class);
+    LazyGreeting lazy = context.getBean(LazyGreeting.class);
+    PooledGreeting pooled = context.getBean(PooledGreeting.class);
+    assertThat(scanned.greet()).startsWith("ScannedGreeting#");
+    assertThat(lazy.greet()).startsWith("LazyGreeting#");
+    ServletRequestAttributes requestAttributes =
+        new ServletRequestAttributes(new MockHttpServletRequest());
+    RequestContextHolder.setRequestAttributes(requestAttributes);
+    try {
+      assertThat(pooled.greet()).startsWith("PooledGreeting#");
+    } finally {
+      requestAttributes.requestCompleted();
+    }
+
+    // every JDK proxy created at runtime needs a hint in a native image
+    for (Object bean : new Object[] {scanned, lazy, pooled}) {
+      assertThat(Proxy.isProxyClass(bean.getClass())).isTrue();
+      assertThat(RuntimeHintsPredicates.proxies().forInterfaces(bean.getClass().getInterfaces()))
+          .accepts(runtimeHints);
+    }
+    // AOP and scoped proxies invoke the interface reflectively
+    for (Class<?> beanInterface :
+        new Class<?>[] {ScannedGreeting.class, LazyGreeting.class, PooledGreeting.class}) {
+      assertThat(RuntimeHintsPredicates.reflection().onMethod(beanInterface, "greet"))
+          .accepts(runtimeHints);
+    }
+  }
+
+  private static Object objectType(GenericApplicationContext context, String beanName) {
+    return context.getBeanDefinition(beanName).getAttribute(FactoryBean.OBJECT_TYPE_ATTRIBUTE);
+  }
+
+  private static GenericApplicationContext newContext() {
+    GenericApplicationContext context = new GenericApplicationContext();
+    context.getBeanFactory().registerScope(WebApplicationContext.SCOPE_REQUEST, new RequestScope());
+    return context;
+  }
+
+  @Configuration
+  @SpringBeanScan(
+      basePackages = "org.flmelody.spring.factory.bean.aot.greeting",
+      factoryBean = GreetingFactoryBean.class,
+      poolSize = 2)
+  static class AotConfiguration {}
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.index;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Enumeration;
+import org.flmelody.spring.factory.bean.annotation.GreetingFactoryBean;
+import org.flmelody.spring.factory.bean.annotation.SpringBean;
+import org.flmelody.spring.factory.bean.annotation.SpringBeanScan;
+import org.flmelody.spring.factory.bean.annotation.warmup.ColdGreeting;
+import org.flmelody.spring.factory.bean.annotation.warmup.WarmedGreeting;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.test.tools.SourceFile;
+import org.springframework.core.test.tools.TestCompiler;
+
+/**
+ * @author esotericman
+ */
+class SpringBeanIndexProcessorTest {
+
+  @Test
+  void processorIndexesAnnotatedInterfacesWithTheirMetaAnnotations() {
+    SourceFile stereotype =
+        SourceFile.of(
+            """
+            package com.example;
+
+            @org.flmelody.spring.factory.bean.annotation.SpringBean
+            @java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME)
+            public @interface Repository {}
+            """);
+    SourceFile direct =
+        SourceFile.of(
+            """
+            package com.example.direct;
+
+            @org.flmelody.spring.factory.bean.annotation.SpringBean
+            public interface DirectGreeting {}
+            """);
+    SourceFile meta =
+        SourceFile.of(
+            """
+            package com.example.meta;
+
+            @com.example.Repository
+            public interface MetaGreeting {
+              @org.flmelody.spring.factory.bean.annotation.SpringBean
+              interface NestedGreeting {}
+            }
+            """);
+    SourceFile notAnInterface =
+        SourceFile.of(
+            """
+            package com.example.direct;
+
+            @org.flmelody.spring.factory.bean.annotation.SpringBean
+            public class GreetingService {}
+            """);
+
+    TestCompiler.forSystem()
+        .withProcessors(new SpringBeanIndexProcessor())
+        .withSources(stereotype, direct, meta, notAnInterface)
+        .compile(
+            compiled -> {
+              SpringBeanCandidateIndex index =
+                  SpringBeanCandidateIndexLoader.loadIndex(compiled.getClassLoader());
+              assertThat(index).isNotNull();
+              assertThat(index.getCandidateTypes("com.example", SpringBean.class.getName()))
+                  .containsExactlyInAnyOrder(
+                      "com.example.direct.DirectGreeting",
+                      "com.example.meta.MetaGreeting",
+                      "com.example.meta.MetaGreeting$NestedGreeting");
+              assertThat(index.getCandidateTypes("com.example.direct", "com.example.Repository"))
+                  .isEmpty();
+              assertThat(index.getCandidateTypes("com.*.meta", "com.example.Repository"))
+                  .containsExactly("com.example.meta.MetaGreeting");
+            });
+  }
+
+  @Test
+  void scannerOnlyRegistersIndexedCandidates(@TempDir Path directory) throws IOException {
+    Path indexFile = directory.resolve(SpringBeanCandidateIndexLoader.INDEX_LOCATION);
+    Files.createDirectories(indexFile.getParent());
+    Files.writeString(
+        indexFile,
+        WarmedGreeting.class.getName() + "=" + SpringBean.class.getName() + "\n",
+        StandardCharsets.UTF_8);
+
+    try (URLClassLoader classLoader =
+            new URLClassLoader(
+                new URL[] {directory.toUri().toURL()}, getClass().getClassLoader());
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+      context.setClassLoader(classLoader);
+      context.register(IndexedConfiguration.class);
+      context.refresh();
+
+      assertThat(context.getBeanNamesForType(WarmedGreeting.class)).hasSize(1);
+      assertThat(context.getBeanNamesForType(ColdGreeting.class)).isEmpty();
+    }
+  }
+
+  @Test
+  void classLoaderWithoutIndexHasNone() {
+    assertThat(SpringBeanCandidateIndexLoader.loadIndex(new URLClassLoader(new URL[0], null)))
+        .isNull();
+  }
+
+  @Test
+  void unreadableIndexFailsTheLoad() {
+    ClassLoader classLoader =
+        new ClassLoader(null) {
+          @Override
+          public Enumeration<URL> getResources(String name) throws IOException {
+            throw new IOException("unreadable");
+          }
+        };
+
+    assertThatIllegalStateException()
+        .isThrownBy(() -> SpringBeanCandidateIndexLoader.loadIndex(classLoader))
+        .withMessageContaining(SpringBeanCandidateIndexLoader.INDEX_LOCATION);
+  }
+
+  @Configuration
+  @SpringBeanScan(
+      basePackages = "org.flmelody.spring.factory.bean.annotation.warmup",
+      factoryBean = GreetingFactoryBean.class)
+  static class IndexedConfiguration {}
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Caches the results of a repository query by its arguments. The cache belongs to the {@link
+ * CacheRegion} of the repository and is cleared by every update of that region. Cached results are
+ * shared between callers and must not be modified.
+ *
+ * @author esotericman
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface CachedQuery {
+
+  /**
+   * Maximum number of cached argument tuples, roughly the least recently used one is evicted first.
+   *
+   * @return maximum size
+   */
+  long maximumSize() default 1000;
+
+  /**
+   * Time in milliseconds a result stays cached, zero or less to keep it until evicted.
+   *
+   * @return time to live
+   */
+  long ttl() default 60000;
+}
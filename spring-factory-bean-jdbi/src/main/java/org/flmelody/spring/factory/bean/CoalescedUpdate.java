@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Queue the calls of a {@code @SqlUpdate} method and execute them as JDBC batches. A batch is
+ * flushed once it reaches {@link #batchSize()} calls or {@link #maxDelay()} milliseconds after its
+ * first call, whichever comes first. Each caller receives its own row count or exception.
+ *
+ * <p>The method may return {@code int}, {@code long}, {@code boolean} or their wrappers, or {@code
+ * void}, and then blocks until its batch is flushed, or {@code CompletableFuture<Integer>} or
+ * {@code CompletionStage<Integer>}, completed once it is; other return types are rejected. A call
+ * whose row count the driver does not report ({@link java.sql.Statement#SUCCESS_NO_INFO}) counts
+ * one row. Coalesced calls run on their own handle and do not join the caller's transaction. The
+ * SQL locator, argument factories and customizers of the method apply as they do to its
+ * uncoalesced calls.
+ *
+ * @author esotericman
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface CoalescedUpdate {
+
+  /**
+   * Maximum number of calls of a batch.
+   *
+   * @return batch size
+   */
+  int batchSize() default 100;
+
+  /**
+   * Maximum time in milliseconds a call waits for its batch to fill up.
+   *
+   * @return max delay
+   */
+  long maxDelay() default 10;
+}
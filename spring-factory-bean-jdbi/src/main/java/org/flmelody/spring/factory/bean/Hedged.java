@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Hedge the {@code @SqlQuery} methods of a repository against slow replicas. A call not answered
+ * within the {@link #percentile()} of recent latencies is issued again to another replica of the
+ * {@link JdbiReplicaRouter}, or to the primary with a single replica. The first result wins and
+ * the statement of the other call is cancelled.
+ *
+ * <p>Only idempotent queries should be hedged. Calls inside a transaction or a {@link
+ * JdbiUnitOfWork}, and queries returning streams, iterators or asynchronous results, are not
+ * hedged.
+ *
+ * @author esotericman
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+public @interface Hedged {
+
+  /**
+   * Percentile of recent latencies after which the call is hedged.
+   *
+   * @return percentile between 0 and 1
+   */
+  double percentile() default 0.95;
+
+  /**
+   * Delay in milliseconds used until enough latencies are recorded.
+   *
+   * @return initial delay
+   */
+  long initialDelay() default 50;
+
+  /**
+   * Lower bound of the delay in milliseconds, so that fast queries are not hedged needlessly.
+   *
+   * @return min delay
+   */
+  long minDelay() default 1;
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean;
+
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Runs the asynchronous and reactive repository methods. Tasks run on virtual threads when the
+ * runtime provides them, on a fixed pool otherwise, and at most {@code maxConcurrency} of them hold
+ * a connection at the same time. Permits are awaited without holding a thread, so the threads of
+ * the pool only run tasks that can proceed.
+ *
+ * @author esotericman
+ */
+public class JdbiAsyncExecutor implements Executor, DisposableBean {
+  private static final Logger logger = LoggerFactory.getLogger(JdbiAsyncExecutor.class);
+  private final int maxConcurrency;
+  private final Deque<CompletableFuture<Permit>> waiters = new ArrayDeque<>();
+  private int availablePermits;
+  private final ExecutorService executorService;
+  private final boolean virtualThreads;
+
+  public JdbiAsyncExecutor(int maxConcurrency) {
+    this.maxConcurrency = Math.max(1, maxConcurrency);
+    this.availablePermits = this.maxConcurrency;
+    ExecutorService virtualThreadExecutor = newVirtualThreadExecutor();
+    this.virtualThreads = virtualThreadExecutor != null;
+    if (virtualThreads) {
+      this.executorService = virtualThreadExecutor;
+    } else {
+      CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("jdbi-async-");
+      threadFactory.setDaemon(true);
+      this.executorService = Executors.newFixedThreadPool(this.maxConcurrency, threadFactory);
+    }
+    if (logger.isDebugEnabled()) {
+      logger.debug(
+          "Running asynchronous repository calls on "
+              + (virtualThreads ? "virtual threads" : "platform threads")
+              + " with max concurrency "
+              + this.maxConcurrency);
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void execute(Runnable command) {
+    executorService.execute(command);
+  }
+
+  /**
+   * Run the task once a connection permit is available.
+   *
+   * @param task task using a connection
+   * @param <T> result type
+   * @return future of the result
+   */
+  public <T> CompletableFuture<T> submit(Callable<T> task) {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    acquire()
+        .thenAccept(
+            permit -> {
+              try {
+                executorService.execute(
+                    () -> {
+                      try (permit) {
+                        future.complete(task.call());
+                      } catch (Throwable e) {
+                        future.completeExceptionally(e);
+                      }
+                    });
+              } catch (RejectedExecutionException e) {
+                permit.close();
+                future.completeExceptionally(e);
+              }
+            });
+    return future;
+  }
+
+  /**
+   * Acquire a connection permit, in the order of the requests.
+   *
+   * @return future completed with the permit, to be closed once the connection is released
+   */
+  public CompletableFuture<Permit> acquire() {
+    CompletableFuture<Permit> permit = new CompletableFuture<>();
+    synchronized (waiters) {
+      if (availablePermits == 0 || !waiters.isEmpty()) {
+        waiters.add(permit);
+        return permit;
+      }
+      availablePermits--;
+    }
+    permit.complete(new Permit());
+    return permit;
+  }
+
+  private void release() {
+    while (true) {
+      CompletableFuture<Permit> waiter;
+      synchronized (waiters) {
+        waiter = waiters.poll();
+        if (waiter == null) {
+          availablePermits++;
+          return;
+        }
+      }
+      // completed outside the lock, as the waiter continues on this thread, unless it was cancelled
+      if (waiter.complete(new Permit())) {
+        return;
+      }
+    }
+  }
+
+  public int getMaxConcurrency() {
+    return maxConcurrency;
+  }
+
+  public int getAvailablePermits() {
+    synchronized (waiters) {
+      return availablePermits;
+    }
+  }
+
+  public boolean isVirtualThreads() {
+    return virtualThreads;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void destroy() {
+    executorService.shutdown();
+  }
+
+  private static ExecutorService newVirtualThreadExecutor() {
+    // compiled for Java 17, so virtual threads are looked up at runtime
+    Method factory = ReflectionUtils.findMethod(Executors.class, "newVirtualThreadPerTaskExecutor");
+    if (factory == null) {
+      return null;
+    }
+    try {
+      return (ExecutorService) factory.invoke(null);
+    } catch (ReflectiveOperationException e) {
+      // preview feature disabled on Java 19 and 20
+      return null;
+    }
+  }
+
+  /** A connection permit, returned when closed. */
+  public final class Permit implements AutoCloseable {
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    private Permit() {}
+
+    /** Return the permit, once. */
+    @Override
+    public void close() {
+      if (released.compareAndSet(false, true)) {
+        release();
+      }
+    }
+  }
+}
@@ -16,28 +16,217 @@
 
 package org.flmelody.spring.factory.bean;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
 import javax.sql.DataSource;
+import org.flmelody.spring.factory.bean.jdbi.JdbiMapperPlugin;
+import org.flmelody.spring.factory.bean.jdbi.JdbiStatementValidator;
+import org.flmelody.spring.factory.bean.jdbi.JdbiTuningPlugin;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.mapper.ColumnMapper;
+import org.jdbi.v3.core.mapper.RowMapper;
+import org.jdbi.v3.core.spi.JdbiPlugin;
 import org.jdbi.v3.spring5.JdbiFactoryBean;
-import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.PropertyAccessorFactory;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionOutcome;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.SpringBootCondition;
 import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.context.annotation.Conditional;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.type.AnnotatedTypeMetadata;
 
 /**
  * @author esotericman
  */
-@Configuration
+@AutoConfiguration(
+    after = DataSourceAutoConfiguration.class,
+    afterName =
+        "org.springframework.boot.actuate.autoconfigure.metrics."
+            + "CompositeMeterRegistryAutoConfiguration")
 @ConditionalOnClass(JdbiFactoryBean.class)
-@AutoConfigureAfter(DataSourceAutoConfiguration.class)
+@EnableConfigurationProperties(JdbiProperties.class)
 public class JdbiAutoConfiguration {
 
   @Bean
   @ConditionalOnBean(DataSource.class)
   @ConditionalOnMissingBean
-  public JdbiFactoryBean jdbiFactoryBean(DataSource dataSource) {
-    return new JdbiFactoryBean(dataSource).setAutoInstallPlugins(true);
+  public JdbiFactoryBean jdbiFactoryBean(
+      DataSource dataSource, ObjectProvider<JdbiPlugin> plugins) {
+    return new JdbiFactoryBean(dataSource)
+        .setAutoInstallPlugins(true)
+        .setPlugins(plugins.orderedStream().toList());
+  }
+
+  @Bean
+  @ConditionalOnMissingBean
+  public JdbiTuningPlugin jdbiTuningPlugin(JdbiProperties properties) {
+    return new JdbiTuningPlugin(properties);
+  }
+
+  @Bean
+  @ConditionalOnMissingBean
+  public JdbiMapperPlugin jdbiMapperPlugin(
+      ObjectProvider<RowMapper<?>> rowMappers, ObjectProvider<ColumnMapper<?>> columnMappers) {
+    return new JdbiMapperPlugin(rowMappers, columnMappers);
+  }
+
+  @Bean
+  @Conditional(OnReplicasCondition.class)
+  @ConditionalOnMissingBean
+  public JdbiReplicaRouter jdbiReplicaRouter(
+      BeanFactory beanFactory, JdbiProperties properties, ObjectProvider<JdbiPlugin> plugins)
+      throws Exception {
+    List<Jdbi> replicas = new ArrayList<>();
+    for (String dataSource : properties.getReplicas().getDataSources()) {
+      replicas.add(
+          new JdbiFactoryBean(beanFactory.getBean(dataSource, DataSource.class))
+              .setAutoInstallPlugins(true)
+              .setPlugins(plugins.orderedStream().toList())
+              .getObject());
+    }
+    return new JdbiReplicaRouter(replicas, properties.getReplicas().getSelection());
+  }
+
+  @Bean
+  @ConditionalOnMissingBean
+  public JdbiHedgeStatistics jdbiHedgeStatistics() {
+    return new JdbiHedgeStatistics();
+  }
+
+  @Bean
+  @ConditionalOnMissingBean
+  public JdbiRepositoryContext jdbiRepositoryContext(
+      ObjectProvider<Jdbi> jdbi,
+      QueryCacheManager queryCacheManager,
+      ObjectProvider<JdbiAsyncExecutor> asyncExecutor,
+      JdbiProperties properties,
+      ObjectProvider<JdbiReplicaRouter> replicaRouter,
+      JdbiHedgeStatistics hedgeStatistics) {
+    JdbiRepositoryContext repositoryContext = new JdbiRepositoryContext();
+    repositoryContext.setJdbi(jdbi.getIfUnique());
+    repositoryContext.setQueryCacheManager(queryCacheManager);
+    repositoryContext.setAsyncExecutor(asyncExecutor.getIfUnique());
+    repositoryContext.setJdbiProperties(properties);
+    repositoryContext.setReplicaRouter(replicaRouter.getIfUnique());
+    repositoryContext.setHedgeStatistics(hedgeStatistics);
+    return repositoryContext;
+  }
+
+  @Bean
+  @ConditionalOnMissingBean
+  public QueryCacheManager queryCacheManager() {
+    return new QueryCacheManager();
+  }
+
+  @Bean
+  @ConditionalOnBean(DataSource.class)
+  @ConditionalOnMissingBean
+  public JdbiAsyncExecutor jdbiAsyncExecutor(DataSource dataSource, JdbiProperties properties) {
+    int maxConcurrency = properties.getAsync().getMaxConcurrency();
+    return new JdbiAsyncExecutor(maxConcurrency > 0 ? maxConcurrency : poolSize(dataSource));
+  }
+
+  @Bean
+  @ConditionalOnBean(DataSource.class)
+  @ConditionalOnProperty(
+      prefix = "flmelody.jdbi.validation",
+      name = "enabled",
+      havingValue = "true")
+  @ConditionalOnMissingBean
+  public JdbiStatementValidator jdbiStatementValidator(Jdbi jdbi, JdbiProperties properties) {
+    JdbiProperties.Validation validation = properties.getValidation();
+    int parallelism = validation.getParallelism();
+    return new JdbiStatementValidator(
+        jdbi,
+        validation.isPrepare(),
+        validation.isFailFast(),
+        parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+  }
+
+  private static int poolSize(DataSource dataSource) {
+    // Hikari, DBCP2 and Tomcat pools, without depending on any of them
+    BeanWrapper pool = PropertyAccessorFactory.forBeanPropertyAccess(dataSource);
+    for (String property : new String[] {"maximumPoolSize", "maxTotal", "maxActive"}) {
+      if (pool.isReadableProperty(property)
+          && pool.getPropertyValue(property) instanceof Integer size
+          && size > 0) {
+        return size;
+      }
+    }
+    return 10;
+  }
+
+  static class OnReplicasCondition extends SpringBootCondition {
+
+    /** {@inheritDoc} */
+    @Override
+    public ConditionOutcome getMatchOutcome(
+        ConditionContext context, AnnotatedTypeMetadata metadata) {
+      // bound rather than looked up, so that both list notations of the property match
+      List<String> dataSources =
+          Binder.get(context.getEnvironment())
+              .bind("flmelody.jdbi.replicas.data-sources", Bindable.listOf(String.class))
+              .orElse(List.of());
+      return dataSources.isEmpty()
+          ? ConditionOutcome.noMatch("no flmelody.jdbi.replicas.data-sources")
+          : ConditionOutcome.match("replicas " + dataSources);
+    }
+  }
+
+  @Configuration(proxyBeanMethods = false)
+  @ConditionalOnClass(MeterRegistry.class)
+  static class JdbiMetricsConfiguration {
+
+    @Bean
+    @ConditionalOnBean(MeterRegistry.class)
+    @ConditionalOnProperty(
+        prefix = "flmelody.jdbi.metrics",
+        name = "enabled",
+        havingValue = "true",
+        matchIfMissing = true)
+    @ConditionalOnMissingBean
+    public JdbiMetricsPlugin jdbiMetricsPlugin(
+        MeterRegistry meterRegistry, JdbiProperties properties) {
+      return new JdbiMetricsPlugin(
+          meterRegistry, properties.getMetrics().isPercentileHistogram());
+    }
+
+    @Bean
+    @ConditionalOnBean(MeterRegistry.class)
+    @ConditionalOnProperty(
+        prefix = "flmelody.jdbi.metrics",
+        name = "enabled",
+        havingValue = "true",
+        matchIfMissing = true)
+    @ConditionalOnMissingBean
+    public JdbiHedgeMetrics jdbiHedgeMetrics(JdbiHedgeStatistics hedgeStatistics) {
+      return new JdbiHedgeMetrics(hedgeStatistics);
+    }
+
+    @Bean
+    @ConditionalOnBean(MeterRegistry.class)
+    @ConditionalOnProperty(
+        prefix = "flmelody.jdbi.metrics",
+        name = "enabled",
+        havingValue = "true",
+        matchIfMissing = true)
+    @ConditionalOnMissingBean
+    public JdbiQueryCacheMetrics jdbiQueryCacheMetrics(QueryCacheManager queryCacheManager) {
+      return new JdbiQueryCacheMetrics(queryCacheManager);
+    }
   }
 }
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.util.function.ToDoubleFunction;
+import org.flmelody.spring.factory.bean.JdbiHedgeStatistics.MethodStatistics;
+
+/**
+ * Publishes {@link JdbiHedgeStatistics} as the {@code jdbi.repository.hedged.calls}, {@code
+ * jdbi.repository.hedges} and {@code jdbi.repository.hedge.wins} counters, tagged by repository
+ * interface and method.
+ *
+ * @author esotericman
+ */
+public class JdbiHedgeMetrics implements MeterBinder {
+  private final JdbiHedgeStatistics hedgeStatistics;
+
+  public JdbiHedgeMetrics(JdbiHedgeStatistics hedgeStatistics) {
+    this.hedgeStatistics = hedgeStatistics;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    hedgeStatistics.addListener(
+        statistics -> {
+          counter(
+              registry,
+              "jdbi.repository.hedged.calls",
+              "Calls of hedged repository methods",
+              statistics,
+              MethodStatistics::getCalls);
+          counter(
+              registry,
+              "jdbi.repository.hedges",
+              "Calls issued again to another replica",
+              statistics,
+              MethodStatistics::getHedges);
+          counter(
+              registry,
+              "jdbi.repository.hedge.wins",
+              "Hedges answering before the original call",
+              statistics,
+              MethodStatistics::getHedgeWins);
+        });
+  }
+
+  private static void counter(
+      MeterRegistry registry,
+      String name,
+      String description,
+      MethodStatistics statistics,
+      ToDoubleFunction<MethodStatistics> count) {
+    FunctionCounter.builder(name, statistics, count)
+        .description(description)
+        .tag("repository", statistics.getRepository())
+        .tag("method", statistics.getMethod())
+        .register(registry);
+  }
+}
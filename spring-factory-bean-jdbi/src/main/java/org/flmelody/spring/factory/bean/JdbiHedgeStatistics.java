@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Counts the calls, hedges and hedge wins of {@link Hedged} methods.
+ *
+ * @author esotericman
+ */
+public class JdbiHedgeStatistics {
+  private final Map<String, MethodStatistics> methods = new ConcurrentHashMap<>();
+  private final List<Consumer<MethodStatistics>> listeners = new ArrayList<>();
+
+  /**
+   * Return the statistics of a method, created on first use.
+   *
+   * @param repository repository interface name
+   * @param method method name
+   * @return statistics
+   */
+  public MethodStatistics getStatistics(String repository, String method) {
+    MethodStatistics existing = methods.get(repository + "." + method);
+    if (existing != null) {
+      return existing;
+    }
+    synchronized (listeners) {
+      MethodStatistics statistics =
+          methods.computeIfAbsent(
+              repository + "." + method, key -> new MethodStatistics(repository, method));
+      listeners.forEach(listener -> listener.accept(statistics));
+      return statistics;
+    }
+  }
+
+  /**
+   * Register a listener called with the statistics of every method, current and future.
+   *
+   * @param listener listener
+   */
+  public void addListener(Consumer<MethodStatistics> listener) {
+    synchronized (listeners) {
+      listeners.add(listener);
+      methods.values().forEach(listener);
+    }
+  }
+
+  public Collection<MethodStatistics> getMethods() {
+    return methods.values();
+  }
+
+  /** Counters of a single method. */
+  public static class MethodStatistics {
+    private final String repository;
+    private final String method;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+
+    MethodStatistics(String repository, String method) {
+      this.repository = repository;
+      this.method = method;
+    }
+
+    /**
+     * Record a call.
+     *
+     * @param hedged whether a hedge was issued
+     * @param hedgeWon whether the hedge answered first
+     */
+    public void record(boolean hedged, boolean hedgeWon) {
+      calls.increment();
+      if (hedged) {
+        hedges.increment();
+      }
+      if (hedgeWon) {
+        hedgeWins.increment();
+      }
+    }
+
+    public String getRepository() {
+      return repository;
+    }
+
+    public String getMethod() {
+      return method;
+    }
+
+    public long getCalls() {
+      return calls.sum();
+    }
+
+    public long getHedges() {
+      return hedges.sum();
+    }
+
+    public long getHedgeWins() {
+      return hedgeWins.sum();
+    }
+  }
+}
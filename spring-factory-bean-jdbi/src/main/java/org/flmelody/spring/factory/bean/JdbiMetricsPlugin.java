@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.lang.reflect.Method;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.extension.ExtensionMethod;
+import org.jdbi.v3.core.spi.JdbiPlugin;
+import org.jdbi.v3.core.statement.SqlLogger;
+import org.jdbi.v3.core.statement.SqlStatements;
+import org.jdbi.v3.core.statement.StatementContext;
+import org.jdbi.v3.core.statement.StatementCustomizer;
+
+/**
+ * Records the latency of every statement as a {@code jdbi.repository.calls} timer, and the rows
+ * affected by updates as a {@code jdbi.repository.rows} summary, tagged by repository interface and
+ * method. The {@link SqlLogger} already configured on the {@link Jdbi} keeps being called.
+ *
+ * @author esotericman
+ */
+public class JdbiMetricsPlugin extends JdbiPlugin.Singleton {
+  private static final String NONE = "none";
+  private final MeterRegistry meterRegistry;
+  private final boolean percentileHistogram;
+  private final ConcurrentMap<MeterKey, Timer> timers = new ConcurrentHashMap<>();
+  private final ConcurrentMap<MeterKey, DistributionSummary> rowSummaries =
+      new ConcurrentHashMap<>();
+
+  public JdbiMetricsPlugin(MeterRegistry meterRegistry, boolean percentileHistogram) {
+    this.meterRegistry = meterRegistry;
+    this.percentileHistogram = percentileHistogram;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void customizeJdbi(Jdbi jdbi) {
+    SqlStatements sqlStatements = jdbi.getConfig(SqlStatements.class);
+    sqlStatements.setSqlLogger(new MetricsSqlLogger(sqlStatements.getSqlLogger()));
+    jdbi.addCustomizer(new RowCountCustomizer());
+  }
+
+  private Timer timer(StatementContext ctx, String outcome) {
+    return timers.computeIfAbsent(
+        MeterKey.of(ctx, outcome),
+        key ->
+            Timer.builder("jdbi.repository.calls")
+                .description("Statements executed by JDBI repositories")
+                .tag("repository", key.repository())
+                .tag("method", key.method())
+                .tag("outcome", key.outcome())
+                .publishPercentileHistogram(percentileHistogram)
+                .register(meterRegistry));
+  }
+
+  private DistributionSummary rowSummary(StatementContext ctx) {
+    return rowSummaries.computeIfAbsent(
+        MeterKey.of(ctx, NONE),
+        key ->
+            DistributionSummary.builder("jdbi.repository.rows")
+                .description("Rows affected by statements of JDBI repositories")
+                .baseUnit("rows")
+                .tag("repository", key.repository())
+                .tag("method", key.method())
+                .publishPercentileHistogram(percentileHistogram)
+                .register(meterRegistry));
+  }
+
+  private record MeterKey(String repository, String method, String outcome) {
+
+    static MeterKey of(StatementContext ctx, String outcome) {
+      ExtensionMethod extensionMethod = ctx.getExtensionMethod();
+      if (extensionMethod == null) {
+        return new MeterKey(NONE, NONE, outcome);
+      }
+      Method method = extensionMethod.getMethod();
+      return new MeterKey(extensionMethod.getType().getName(), method.getName(), outcome);
+    }
+  }
+
+  private class MetricsSqlLogger implements SqlLogger {
+    private final SqlLogger delegate;
+
+    MetricsSqlLogger(SqlLogger delegate) {
+      this.delegate = delegate;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void logBeforeExecution(StatementContext context) {
+      delegate.logBeforeExecution(context);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void logAfterExecution(StatementContext context) {
+      timer(context, "success")
+          .record(context.getElapsedTime(ChronoUnit.NANOS), TimeUnit.NANOSECONDS);
+      delegate.logAfterExecution(context);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void logException(StatementContext context, SQLException ex) {
+      timer(context, "error")
+          .record(context.getElapsedTime(ChronoUnit.NANOS), TimeUnit.NANOSECONDS);
+      delegate.logException(context, ex);
+    }
+  }
+
+  private class RowCountCustomizer implements StatementCustomizer {
+
+    /** {@inheritDoc} */
+    @Override
+    public void afterExecution(PreparedStatement stmt, StatementContext ctx) throws SQLException {
+      int updateCount = stmt.getUpdateCount();
+      // queries report -1
+      if (updateCount >= 0) {
+        rowSummary(ctx).record(updateCount);
+      }
+    }
+  }
+}
@@ -0,0 +1,358 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Tuning of the auto-configured {@code Jdbi} and of the repositories built on it.
+ *
+ * @author esotericman
+ */
+@ConfigurationProperties(prefix = "flmelody.jdbi")
+public class JdbiProperties {
+
+  /** Maximum number of parsed statements cached, 0 to keep the parser's own caching. */
+  private int sqlParserCacheSize;
+
+  /** Maximum number of rendered templates cached, 0 to render every execution. */
+  private int templateCacheSize;
+
+  /** Rows fetched per round-trip, 0 to use the driver default. */
+  private int fetchSize;
+
+  /** Maximum number of rows a query returns, 0 for no limit. */
+  private int maxRows;
+
+  /** Timeout of statements, rounded to seconds, none by default. */
+  private Duration queryTimeout;
+
+  /** Hint for the driver or pool to cache prepared statements, driver default if not set. */
+  private Boolean poolableStatements;
+
+  private final Async async = new Async();
+  private final Streaming streaming = new Streaming();
+  private final Metrics metrics = new Metrics();
+  private final Validation validation = new Validation();
+  private final Replicas replicas = new Replicas();
+  private final Batch batch = new Batch();
+
+  public int getSqlParserCacheSize() {
+    return sqlParserCacheSize;
+  }
+
+  /**
+   * set sqlParserCacheSize.
+   *
+   * @param sqlParserCacheSize sqlParserCacheSize
+   */
+  public void setSqlParserCacheSize(int sqlParserCacheSize) {
+    this.sqlParserCacheSize = sqlParserCacheSize;
+  }
+
+  public int getTemplateCacheSize() {
+    return templateCacheSize;
+  }
+
+  /**
+   * set templateCacheSize.
+   *
+   * @param templateCacheSize templateCacheSize
+   */
+  public void setTemplateCacheSize(int templateCacheSize) {
+    this.templateCacheSize = templateCacheSize;
+  }
+
+  public int getFetchSize() {
+    return fetchSize;
+  }
+
+  /**
+   * set fetchSize.
+   *
+   * @param fetchSize fetchSize
+   */
+  public void setFetchSize(int fetchSize) {
+    this.fetchSize = fetchSize;
+  }
+
+  public int getMaxRows() {
+    return maxRows;
+  }
+
+  /**
+   * set maxRows.
+   *
+   * @param maxRows maxRows
+   */
+  public void setMaxRows(int maxRows) {
+    this.maxRows = maxRows;
+  }
+
+  public Duration getQueryTimeout() {
+    return queryTimeout;
+  }
+
+  /**
+   * set queryTimeout.
+   *
+   * @param queryTimeout queryTimeout
+   */
+  public void setQueryTimeout(Duration queryTimeout) {
+    this.queryTimeout = queryTimeout;
+  }
+
+  public Boolean getPoolableStatements() {
+    return poolableStatements;
+  }
+
+  /**
+   * set poolableStatements.
+   *
+   * @param poolableStatements poolableStatements
+   */
+  public void setPoolableStatements(Boolean poolableStatements) {
+    this.poolableStatements = poolableStatements;
+  }
+
+  public Async getAsync() {
+    return async;
+  }
+
+  public Streaming getStreaming() {
+    return streaming;
+  }
+
+  public Metrics getMetrics() {
+    return metrics;
+  }
+
+  public Validation getValidation() {
+    return validation;
+  }
+
+  public Replicas getReplicas() {
+    return replicas;
+  }
+
+  public Batch getBatch() {
+    return batch;
+  }
+
+  /** Asynchronous and reactive repository methods. */
+  public static class Async {
+
+    /** Maximum number of calls holding a connection, 0 to use the size of the pool. */
+    private int maxConcurrency;
+
+    public int getMaxConcurrency() {
+      return maxConcurrency;
+    }
+
+    /**
+     * set maxConcurrency.
+     *
+     * @param maxConcurrency maxConcurrency
+     */
+    public void setMaxConcurrency(int maxConcurrency) {
+      this.maxConcurrency = maxConcurrency;
+    }
+  }
+
+  /** Streaming queries, see {@link StreamingQuery}. */
+  public static class Streaming {
+
+    /** Rows fetched per round-trip by streaming queries not declaring their own. */
+    private int fetchSize = 1000;
+
+    public int getFetchSize() {
+      return fetchSize;
+    }
+
+    /**
+     * set fetchSize.
+     *
+     * @param fetchSize fetchSize
+     */
+    public void setFetchSize(int fetchSize) {
+      this.fetchSize = fetchSize;
+    }
+  }
+
+  /** Micrometer instrumentation. */
+  public static class Metrics {
+
+    /** Whether statements are timed when a meter registry is present. */
+    private boolean enabled = true;
+
+    /** Whether timers publish a percentile histogram. */
+    private boolean percentileHistogram = true;
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    /**
+     * set enabled.
+     *
+     * @param enabled enabled
+     */
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    public boolean isPercentileHistogram() {
+      return percentileHistogram;
+    }
+
+    /**
+     * set percentileHistogram.
+     *
+     * @param percentileHistogram percentileHistogram
+     */
+    public void setPercentileHistogram(boolean percentileHistogram) {
+      this.percentileHistogram = percentileHistogram;
+    }
+  }
+
+  /** Validation of repository statements at startup. */
+  public static class Validation {
+
+    /** Whether statements are parsed at startup. */
+    private boolean enabled;
+
+    /** Whether statements are also prepared against the database. */
+    private boolean prepare;
+
+    /** Whether invalid statements abort the startup rather than being logged. */
+    private boolean failFast = true;
+
+    /** Number of repositories validated concurrently, 0 to use all available processors. */
+    private int parallelism;
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    /**
+     * set enabled.
+     *
+     * @param enabled enabled
+     */
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    public boolean isPrepare() {
+      return prepare;
+    }
+
+    /**
+     * set prepare.
+     *
+     * @param prepare prepare
+     */
+    public void setPrepare(boolean prepare) {
+      this.prepare = prepare;
+    }
+
+    public boolean isFailFast() {
+      return failFast;
+    }
+
+    /**
+     * set failFast.
+     *
+     * @param failFast failFast
+     */
+    public void setFailFast(boolean failFast) {
+      this.failFast = failFast;
+    }
+
+    public int getParallelism() {
+      return parallelism;
+    }
+
+    /**
+     * set parallelism.
+     *
+     * @param parallelism parallelism
+     */
+    public void setParallelism(int parallelism) {
+      this.parallelism = parallelism;
+    }
+  }
+
+  /** Read replicas, see {@link JdbiReplicaRouter}. */
+  public static class Replicas {
+
+    /** Names of the data source beans of the replicas, reads stay on the primary if empty. */
+    private List<String> dataSources = new ArrayList<>();
+
+    /** How the replica of a read is selected. */
+    private JdbiReplicaRouter.Selection selection = JdbiReplicaRouter.Selection.ROUND_ROBIN;
+
+    public List<String> getDataSources() {
+      return dataSources;
+    }
+
+    /**
+     * set dataSources.
+     *
+     * @param dataSources dataSources
+     */
+    public void setDataSources(List<String> dataSources) {
+      this.dataSources = dataSources;
+    }
+
+    public JdbiReplicaRouter.Selection getSelection() {
+      return selection;
+    }
+
+    /**
+     * set selection.
+     *
+     * @param selection selection
+     */
+    public void setSelection(JdbiReplicaRouter.Selection selection) {
+      this.selection = selection;
+    }
+  }
+
+  /** {@code @SqlBatch} methods, see {@link MultiRowInsert}. */
+  public static class Batch {
+
+    /** Maximum rows of a multi-row insert not declaring its own. */
+    private int rowsPerStatement = 1000;
+
+    public int getRowsPerStatement() {
+      return rowsPerStatement;
+    }
+
+    /**
+     * set rowsPerStatement.
+     *
+     * @param rowsPerStatement rowsPerStatement
+     */
+    public void setRowsPerStatement(int rowsPerStatement) {
+      this.rowsPerStatement = rowsPerStatement;
+    }
+  }
+}
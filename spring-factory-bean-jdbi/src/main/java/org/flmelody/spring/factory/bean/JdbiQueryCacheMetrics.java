@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Publishes the {@link QueryCache}s of a {@link QueryCacheManager} as the {@code
+ * jdbi.repository.cache.gets} counter, tagged by {@code result} hit or miss, the {@code
+ * jdbi.repository.cache.evictions} counter and the {@code jdbi.repository.cache.size} gauge, all
+ * tagged by region and cache. Caches of the same name in a region, such as those of pooled
+ * repositories, are summed.
+ *
+ * @author esotericman
+ */
+public class JdbiQueryCacheMetrics implements MeterBinder {
+  private final QueryCacheManager queryCacheManager;
+
+  public JdbiQueryCacheMetrics(QueryCacheManager queryCacheManager) {
+    this.queryCacheManager = queryCacheManager;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    queryCacheManager.addListener(
+        (region, queryCache) -> {
+          String name = queryCache.getName();
+          FunctionCounter.builder(
+                  "jdbi.repository.cache.gets",
+                  queryCacheManager,
+                  sum(region, name, QueryCache::getHitCount))
+              .description("Cached query calls by result")
+              .tags("region", region, "cache", name, "result", "hit")
+              .register(registry);
+          FunctionCounter.builder(
+                  "jdbi.repository.cache.gets",
+                  queryCacheManager,
+                  sum(region, name, QueryCache::getMissCount))
+              .description("Cached query calls by result")
+              .tags("region", region, "cache", name, "result", "miss")
+              .register(registry);
+          FunctionCounter.builder(
+                  "jdbi.repository.cache.evictions",
+                  queryCacheManager,
+                  sum(region, name, QueryCache::getEvictionCount))
+              .description("Cached results evicted to stay within the maximum size")
+              .tags("region", region, "cache", name)
+              .register(registry);
+          Gauge.builder(
+                  "jdbi.repository.cache.size",
+                  queryCacheManager,
+                  sum(region, name, QueryCache::getSize))
+              .description("Cached results")
+              .tags("region", region, "cache", name)
+              .register(registry);
+        });
+  }
+
+  private static ToDoubleFunction<QueryCacheManager> sum(
+      String region, String name, ToLongFunction<QueryCache> count) {
+    return queryCacheManager -> {
+      long sum = 0;
+      for (QueryCache queryCache : queryCacheManager.getCaches(region)) {
+        if (queryCache.getName().equals(name)) {
+          sum += count.applyAsLong(queryCache);
+        }
+      }
+      return sum;
+    };
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import org.jdbi.v3.core.Jdbi;
+
+/**
+ * Selects the replica serving a read of a repository. Reads of {@code @SqlQuery} and {@link
+ * ReadOnly} methods are routed to a replica, unless they run in a write transaction or a {@link
+ * JdbiUnitOfWork} of the primary.
+ *
+ * @author esotericman
+ */
+public class JdbiReplicaRouter {
+  private final List<Jdbi> replicas;
+  private final Selection selection;
+  private final AtomicInteger next = new AtomicInteger();
+  private final AtomicIntegerArray outstanding;
+
+  public JdbiReplicaRouter(List<Jdbi> replicas, Selection selection) {
+    if (replicas.isEmpty()) {
+      throw new IllegalArgumentException("At least one replica is required");
+    }
+    this.replicas = List.copyOf(replicas);
+    this.selection = selection;
+    this.outstanding = new AtomicIntegerArray(replicas.size());
+  }
+
+  /**
+   * Select a replica for a call, to be released once the call completes.
+   *
+   * @return index of the replica
+   */
+  public int acquire() {
+    int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+    int selected = start;
+    if (selection == Selection.LEAST_OUTSTANDING) {
+      // starting from the round-robin position spreads ties
+      for (int i = 1; i < replicas.size(); i++) {
+        int candidate = (start + i) % replicas.size();
+        if (outstanding.get(candidate) < outstanding.get(selected)) {
+          selected = candidate;
+        }
+      }
+    }
+    outstanding.incrementAndGet(selected);
+    return selected;
+  }
+
+  /**
+   * Release a replica selected by {@link #acquire()}.
+   *
+   * @param replica index of the replica
+   */
+  public void release(int replica) {
+    outstanding.decrementAndGet(replica);
+  }
+
+  public List<Jdbi> getReplicas() {
+    return replicas;
+  }
+
+  public Selection getSelection() {
+    return selection;
+  }
+
+  /** How a replica is selected. */
+  public enum Selection {
+    /** Replicas take turns. */
+    ROUND_ROBIN,
+    /** The replica with the fewest calls in progress is used. */
+    LEAST_OUTSTANDING
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean;
+
+import org.jdbi.v3.core.Jdbi;
+
+/**
+ * Collaborators of all {@link JdbiRepositoryFactoryBean}s, resolved once. Declared as the only
+ * factory reference of a scan, it replaces the by-type lookups of every repository:
+ *
+ * <pre>{@code
+ * @JdbiRepositoryScan(factoryReferences = "repositoryContext=jdbiRepositoryContext")
+ * }</pre>
+ *
+ * @author esotericman
+ */
+public class JdbiRepositoryContext {
+  private Jdbi jdbi;
+  private QueryCacheManager queryCacheManager;
+  private JdbiAsyncExecutor asyncExecutor;
+  private JdbiProperties jdbiProperties;
+  private JdbiReplicaRouter replicaRouter;
+  private JdbiHedgeStatistics hedgeStatistics;
+
+  public Jdbi getJdbi() {
+    return jdbi;
+  }
+
+  /**
+   * set jdbi.
+   *
+   * @param jdbi jdbi
+   */
+  public void setJdbi(Jdbi jdbi) {
+    this.jdbi = jdbi;
+  }
+
+  public QueryCacheManager getQueryCacheManager() {
+    return queryCacheManager;
+  }
+
+  /**
+   * set queryCacheManager.
+   *
+   * @param queryCacheManager queryCacheManager
+   */
+  public void setQueryCacheManager(QueryCacheManager queryCacheManager) {
+    this.queryCacheManager = queryCacheManager;
+  }
+
+  public JdbiAsyncExecutor getAsyncExecutor() {
+    return asyncExecutor;
+  }
+
+  /**
+   * set asyncExecutor.
+   *
+   * @param asyncExecutor asyncExecutor
+   */
+  public void setAsyncExecutor(JdbiAsyncExecutor asyncExecutor) {
+    this.asyncExecutor = asyncExecutor;
+  }
+
+  public JdbiProperties getJdbiProperties() {
+    return jdbiProperties;
+  }
+
+  /**
+   * set jdbiProperties.
+   *
+   * @param jdbiProperties jdbiProperties
+   */
+  public void setJdbiProperties(JdbiProperties jdbiProperties) {
+    this.jdbiProperties = jdbiProperties;
+  }
+
+  public JdbiReplicaRouter getReplicaRouter() {
+    return replicaRouter;
+  }
+
+  /**
+   * set replicaRouter.
+   *
+   * @param replicaRouter replicaRouter
+   */
+  public void setReplicaRouter(JdbiReplicaRouter replicaRouter) {
+    this.replicaRouter = replicaRouter;
+  }
+
+  public JdbiHedgeStatistics getHedgeStatistics() {
+    return hedgeStatistics;
+  }
+
+  /**
+   * set hedgeStatistics.
+   *
+   * @param hedgeStatistics hedgeStatistics
+   */
+  public void setHedgeStatistics(JdbiHedgeStatistics hedgeStatistics) {
+    this.hedgeStatistics = hedgeStatistics;
+  }
+}
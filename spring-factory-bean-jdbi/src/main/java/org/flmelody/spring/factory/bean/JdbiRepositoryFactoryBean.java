@@ -16,15 +16,44 @@
 
 package org.flmelody.spring.factory.bean;
 
+import org.flmelody.spring.factory.bean.annotation.AbstractProxyFactoryBean;
+import org.flmelody.spring.factory.bean.jdbi.AsyncInvocationHandler;
+import org.flmelody.spring.factory.bean.jdbi.CachingInvocationHandler;
+import org.flmelody.spring.factory.bean.jdbi.CoalescingInvocationHandler;
+import org.flmelody.spring.factory.bean.jdbi.HandleBoundInvocationHandler;
+import org.flmelody.spring.factory.bean.jdbi.HedgingInvocationHandler;
+import org.flmelody.spring.factory.bean.jdbi.MultiRowInsertInvocationHandler;
+import org.flmelody.spring.factory.bean.jdbi.ReplicaRoutingInvocationHandler;
+import org.flmelody.spring.factory.bean.jdbi.RepositorySqlObjects;
+import org.flmelody.spring.factory.bean.jdbi.ShardingInvocationHandler;
+import org.flmelody.spring.factory.bean.jdbi.StreamingInvocationHandler;
 import org.jdbi.v3.core.Jdbi;
-import org.springframework.beans.factory.FactoryBean;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.BeanNameAware;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
 
 /**
  * @author esotericman
  */
-public class JdbiRepositoryFactoryBean<T> implements FactoryBean<T> {
+public class JdbiRepositoryFactoryBean<T> extends AbstractProxyFactoryBean<T>
+    implements DisposableBean, BeanFactoryAware, BeanNameAware {
+  private static final int DEFAULT_MAX_CONCURRENCY = 10;
   private final Class<T> beanInterface;
   private Jdbi jdbi;
+  private QueryCacheManager queryCacheManager;
+  private JdbiAsyncExecutor asyncExecutor;
+  private JdbiAsyncExecutor ownAsyncExecutor;
+  private JdbiProperties jdbiProperties;
+  private JdbiReplicaRouter replicaRouter;
+  private JdbiHedgeStatistics hedgeStatistics;
+  private CoalescingInvocationHandler<T> coalescingInvocationHandler;
+  private CachingInvocationHandler<T> cachingInvocationHandler;
+  private T product;
+  private BeanFactory beanFactory;
+  private String beanName;
+  private boolean singleton = true;
 
   public JdbiRepositoryFactoryBean(Class<T> beanInterface) {
     this.beanInterface = beanInterface;
@@ -32,8 +61,123 @@ public class JdbiRepositoryFactoryBean<T> implements FactoryBean<T> {
 
   /** {@inheritDoc} */
   @Override
-  public T getObject() throws Exception {
-    return getJdbi().onDemand(beanInterface);
+  protected synchronized T createProxy() {
+    // built once, so that repeated calls of non-singleton factories share coalescers and caches
+    if (product != null) {
+      return product;
+    }
+    T repository =
+        ShardingInvocationHandler.isSharded(beanInterface) ? shardedRepository() : jdbiRepository();
+    if (CachingInvocationHandler.isCaching(beanInterface)) {
+      if (queryCacheManager == null) {
+        queryCacheManager = new QueryCacheManager();
+      }
+      cachingInvocationHandler =
+          new CachingInvocationHandler<>(beanInterface, repository, queryCacheManager);
+      repository = cachingInvocationHandler.newProxy();
+    }
+    product = repository;
+    return repository;
+  }
+
+  private T shardedRepository() {
+    JdbiShardMap shardMap =
+        beanFactory.getBean(beanInterface.getAnnotation(Sharded.class).value(), JdbiShardMap.class);
+    return new ShardingInvocationHandler<>(beanInterface, shardMap, getOrCreateAsyncExecutor())
+        .newProxy();
+  }
+
+  private T jdbiRepository() {
+    T repository = RepositorySqlObjects.onDemand(getJdbi(), beanInterface);
+    if (beanInterface.isAnnotationPresent(HandleBound.class)) {
+      repository =
+          new HandleBoundInvocationHandler<>(beanInterface, repository, getJdbi()).newProxy();
+    }
+    if (replicaRouter != null && ReplicaRoutingInvocationHandler.isRouted(beanInterface)) {
+      repository =
+          new ReplicaRoutingInvocationHandler<>(beanInterface, repository, getJdbi(), replicaRouter)
+              .newProxy();
+    }
+    if (HedgingInvocationHandler.isHedged(beanInterface)) {
+      if (replicaRouter == null) {
+        throw new IllegalStateException(
+            "@Hedged on " + beanInterface.getName() + " requires read replicas to hedge across");
+      }
+      if (hedgeStatistics == null) {
+        hedgeStatistics = new JdbiHedgeStatistics();
+      }
+      repository =
+          new HedgingInvocationHandler<>(
+                  beanInterface,
+                  repository,
+                  getJdbi(),
+                  replicaRouter,
+                  getOrCreateAsyncExecutor(),
+                  hedgeStatistics)
+              .newProxy();
+    }
+    if (jdbiProperties == null) {
+      jdbiProperties = new JdbiProperties();
+    }
+    if (StreamingInvocationHandler.isStreaming(beanInterface)) {
+      int fetchSize = jdbiProperties.getStreaming().getFetchSize();
+      repository =
+          new StreamingInvocationHandler<>(beanInterface, repository, getJdbi(), fetchSize)
+              .newProxy();
+    }
+    if (CoalescingInvocationHandler.isCoalescing(beanInterface)) {
+      coalescingInvocationHandler =
+          new CoalescingInvocationHandler<>(beanInterface, repository, getJdbi());
+      repository = coalescingInvocationHandler.newProxy();
+    }
+    if (MultiRowInsertInvocationHandler.isMultiRowInsert(beanInterface)) {
+      repository =
+          new MultiRowInsertInvocationHandler<>(
+                  beanInterface, repository, getJdbi(), jdbiProperties.getBatch())
+              .newProxy();
+    }
+    if (AsyncInvocationHandler.isAsync(beanInterface)) {
+      repository =
+          new AsyncInvocationHandler<>(beanInterface, repository, getOrCreateAsyncExecutor())
+              .newProxy();
+    }
+    return repository;
+  }
+
+  private JdbiAsyncExecutor getOrCreateAsyncExecutor() {
+    if (asyncExecutor == null) {
+      ownAsyncExecutor = new JdbiAsyncExecutor(DEFAULT_MAX_CONCURRENCY);
+      asyncExecutor = ownAsyncExecutor;
+    }
+    return asyncExecutor;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void setBeanFactory(BeanFactory beanFactory) {
+    this.beanFactory = beanFactory;
+    this.singleton = resolveSingleton();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void setBeanName(String beanName) {
+    this.beanName = beanName;
+    this.singleton = resolveSingleton();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void destroy() {
+    if (cachingInvocationHandler != null) {
+      cachingInvocationHandler.close();
+    }
+    if (coalescingInvocationHandler != null) {
+      coalescingInvocationHandler.close();
+    }
+    if (ownAsyncExecutor != null) {
+      ownAsyncExecutor.destroy();
+    }
   }
 
   /** {@inheritDoc} */
@@ -45,6 +189,16 @@ public class JdbiRepositoryFactoryBean<T> implements FactoryBean<T> {
   /** {@inheritDoc} */
   @Override
   public boolean isSingleton() {
+    return singleton;
+  }
+
+  private boolean resolveSingleton() {
+    // scoped and pooled factories, such as pooledTarget.<name> prototypes, share no product
+    if (beanName != null
+        && beanFactory instanceof ConfigurableListableBeanFactory listableBeanFactory
+        && listableBeanFactory.containsBeanDefinition(beanName)) {
+      return listableBeanFactory.getMergedBeanDefinition(beanName).isSingleton();
+    }
     return true;
   }
 
@@ -56,4 +210,42 @@ public class JdbiRepositoryFactoryBean<T> implements FactoryBean<T> {
   public void setJdbi(Jdbi jdbi) {
     this.jdbi = jdbi;
   }
+
+  public QueryCacheManager getQueryCacheManager() {
+    return queryCacheManager;
+  }
+
+  public JdbiAsyncExecutor getAsyncExecutor() {
+    return asyncExecutor;
+  }
+
+  public JdbiProperties getJdbiProperties() {
+    return jdbiProperties;
+  }
+
+  public JdbiReplicaRouter getReplicaRouter() {
+    return replicaRouter;
+  }
+
+  public JdbiHedgeStatistics getHedgeStatistics() {
+    return hedgeStatistics;
+  }
+
+  /**
+   * set repositoryContext, the collaborators shared by all repositories. They are no writable
+   * properties of their own, so autowiring by type resolves the context instead of each of them.
+   * The {@link Jdbi} of the context only applies when no other is set.
+   *
+   * @param repositoryContext repositoryContext
+   */
+  public void setRepositoryContext(JdbiRepositoryContext repositoryContext) {
+    if (this.jdbi == null) {
+      this.jdbi = repositoryContext.getJdbi();
+    }
+    this.queryCacheManager = repositoryContext.getQueryCacheManager();
+    this.asyncExecutor = repositoryContext.getAsyncExecutor();
+    this.jdbiProperties = repositoryContext.getJdbiProperties();
+    this.replicaRouter = repositoryContext.getReplicaRouter();
+    this.hedgeStatistics = repositoryContext.getHedgeStatistics();
+  }
 }
@@ -57,4 +57,52 @@ public @interface JdbiRepositoryScan {
    */
   @AliasFor(annotation = SpringBeanScan.class, attribute = "lazyInitialization")
   boolean lazyInitialization() default false;
+
+  /**
+   * Alias for {@link SpringBeanScan#lazyResolve()}
+   *
+   * @return lazyResolve
+   */
+  @AliasFor(annotation = SpringBeanScan.class, attribute = "lazyResolve")
+  boolean lazyResolve() default false;
+
+  /**
+   * Alias for {@link SpringBeanScan#preInstantiate()}
+   *
+   * @return preInstantiate
+   */
+  @AliasFor(annotation = SpringBeanScan.class, attribute = "preInstantiate")
+  boolean preInstantiate() default false;
+
+  /**
+   * Alias for {@link SpringBeanScan#parallelism()}
+   *
+   * @return parallelism
+   */
+  @AliasFor(annotation = SpringBeanScan.class, attribute = "parallelism")
+  int parallelism() default 1;
+
+  /**
+   * Alias for {@link SpringBeanScan#poolSize()}
+   *
+   * @return poolSize
+   */
+  @AliasFor(annotation = SpringBeanScan.class, attribute = "poolSize")
+  int poolSize() default 0;
+
+  /**
+   * Alias for {@link SpringBeanScan#poolIdleTimeout()}
+   *
+   * @return poolIdleTimeout
+   */
+  @AliasFor(annotation = SpringBeanScan.class, attribute = "poolIdleTimeout")
+  long poolIdleTimeout() default 60000;
+
+  /**
+   * Alias for {@link SpringBeanScan#factoryReferences()}
+   *
+   * @return factoryReferences
+   */
+  @AliasFor(annotation = SpringBeanScan.class, attribute = "factoryReferences")
+  String[] factoryReferences() default {};
 }
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.ToIntFunction;
+import org.jdbi.v3.core.Jdbi;
+
+/**
+ * Maps shard keys to the {@link Jdbi} of their shard, see {@link Sharded}.
+ *
+ * @author esotericman
+ */
+public class JdbiShardMap {
+  private final List<Jdbi> shards;
+  private final ToIntFunction<Object> shardFunction;
+
+  /**
+   * Create a shard map.
+   *
+   * @param shards shards
+   * @param shardFunction returns the index of the shard of a key
+   */
+  public JdbiShardMap(List<Jdbi> shards, ToIntFunction<Object> shardFunction) {
+    if (shards.isEmpty()) {
+      throw new IllegalArgumentException("At least one shard is required");
+    }
+    this.shards = List.copyOf(shards);
+    this.shardFunction = shardFunction;
+  }
+
+  /**
+   * Create a shard map spreading keys by their hash.
+   *
+   * @param shards shards
+   * @return shard map
+   */
+  public static JdbiShardMap hash(List<Jdbi> shards) {
+    return new JdbiShardMap(
+        shards,
+        key -> {
+          // the same shard for the same number, whatever its boxed type
+          int hash =
+              key instanceof Number number ? Long.hashCode(number.longValue()) : key.hashCode();
+          return Math.floorMod(hash, shards.size());
+        });
+  }
+
+  /**
+   * Create a shard map assigning ranges of numeric keys, shard {@code i} holding the keys from
+   * {@code lowerBounds[i]} up to the next bound. Keys below the first bound belong to the first
+   * shard.
+   *
+   * @param shards shards
+   * @param lowerBounds ascending lower bounds, one per shard
+   * @return shard map
+   */
+  public static JdbiShardMap range(List<Jdbi> shards, long... lowerBounds) {
+    if (lowerBounds.length != shards.size()) {
+      throw new IllegalArgumentException(
+          "Expected " + shards.size() + " lower bounds but got " + lowerBounds.length);
+    }
+    long[] bounds = lowerBounds.clone();
+    return new JdbiShardMap(
+        shards,
+        key -> {
+          if (!(key instanceof Number number)) {
+            throw new IllegalArgumentException("Range shard key must be a number: " + key);
+          }
+          int index = Arrays.binarySearch(bounds, number.longValue());
+          return index >= 0 ? index : Math.max(0, -index - 2);
+        });
+  }
+
+  /**
+   * Return the index of the shard of a key.
+   *
+   * @param key shard key
+   * @return index of the shard
+   */
+  public int shardOf(Object key) {
+    if (key == null) {
+      throw new IllegalArgumentException("Shard key must not be null");
+    }
+    int shard = shardFunction.applyAsInt(key);
+    if (shard < 0 || shard >= shards.size()) {
+      throw new IllegalStateException("No shard " + shard + " for key " + key);
+    }
+    return shard;
+  }
+
+  public List<Jdbi> getShards() {
+    return shards;
+  }
+}
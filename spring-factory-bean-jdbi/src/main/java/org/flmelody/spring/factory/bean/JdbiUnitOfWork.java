@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean;
+
+import jakarta.annotation.Nullable;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.HandleCallback;
+import org.jdbi.v3.core.Jdbi;
+
+/**
+ * Thread-scoped unit of work sharing one handle between the {@link HandleBound} repositories called
+ * within it. Nested units of work reuse the outer handle.
+ *
+ * <pre>{@code
+ * JdbiUnitOfWork.execute(jdbi, handle -> {
+ *   userRepository.insert(user);
+ *   return auditRepository.log(user.getId());
+ * });
+ * }</pre>
+ *
+ * @author esotericman
+ */
+public final class JdbiUnitOfWork {
+  private static final ThreadLocal<Map<Jdbi, Handle>> handles = new ThreadLocal<>();
+
+  private JdbiUnitOfWork() {}
+
+  /**
+   * Run the callback with the handle bound to the current thread, opening one if needed.
+   *
+   * @param jdbi jdbi
+   * @param callback callback
+   * @param <R> result type
+   * @param <X> exception type
+   * @return result of callback
+   * @throws X exception of callback
+   */
+  public static <R, X extends Exception> R execute(Jdbi jdbi, HandleCallback<R, X> callback)
+      throws X {
+    Handle current = currentHandle(jdbi);
+    if (current != null) {
+      return callback.withHandle(current);
+    }
+    Map<Jdbi, Handle> boundHandles = handles.get();
+    if (boundHandles == null) {
+      boundHandles = new IdentityHashMap<>();
+      handles.set(boundHandles);
+    }
+    try (Handle handle = jdbi.open()) {
+      boundHandles.put(jdbi, handle);
+      return callback.withHandle(handle);
+    } finally {
+      boundHandles.remove(jdbi);
+      if (boundHandles.isEmpty()) {
+        handles.remove();
+      }
+    }
+  }
+
+  /**
+   * Return the handle of the current unit of work.
+   *
+   * @param jdbi jdbi
+   * @return handle, or null outside a unit of work
+   */
+  @Nullable
+  public static Handle currentHandle(Jdbi jdbi) {
+    Map<Jdbi, Handle> boundHandles = handles.get();
+    return boundHandles != null ? boundHandles.get(jdbi) : null;
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Execute a {@code @SqlBatch} insert as chunked multi-row {@code INSERT ... VALUES (...), (...)}
+ * statements instead of a JDBC batch of single-row statements. On a repository, applies to all of
+ * its batch inserts. The statement must end with a single {@code VALUES} tuple of named parameters,
+ * bound with {@code @Bind}, {@code @BindBean} or by name, and must not contain comments; statements
+ * with {@code ON CONFLICT}, {@code RETURNING} or other clauses after the tuple are rejected.
+ *
+ * <p>Chunks are limited by {@link #rowsPerStatement()} and by the bind parameter limit of the
+ * database, and run in one transaction. The method may return {@code void}, {@code int[]} or
+ * {@code boolean[]}. Row counts are exact when every row of a chunk is inserted, otherwise they are
+ * {@link java.sql.Statement#SUCCESS_NO_INFO}.
+ *
+ * @author esotericman
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+public @interface MultiRowInsert {
+
+  /**
+   * Maximum rows of one statement, 0 for the {@code flmelody.jdbi.batch.rows-per-statement}
+   * property.
+   *
+   * @return rows per statement
+   */
+  int rowsPerStatement() default 0;
+
+  /**
+   * Maximum bind parameters of one statement, 0 to derive it from the database product.
+   *
+   * @return max parameters
+   */
+  int maxParameters() default 0;
+}
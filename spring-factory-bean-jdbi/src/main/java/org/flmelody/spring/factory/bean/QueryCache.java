@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Size bounded cache of the results of one {@link CachedQuery} method. Reads and loads do not
+ * lock; once the cache is full, the least recently read of a few sampled entries is evicted, which
+ * approximates least recently used eviction.
+ *
+ * @author esotericman
+ */
+public class QueryCache {
+  private static final int EVICTION_SAMPLES = 8;
+
+  private final String name;
+  private final long maximumSize;
+  private final long ttlNanos;
+  private final ConcurrentMap<Object, Entry> entries = new ConcurrentHashMap<>();
+  private final ReentrantLock evictionLock = new ReentrantLock();
+  // guarded by evictionLock
+  private Iterator<Map.Entry<Object, Entry>> evictionCursor;
+  private final AtomicLong generation = new AtomicLong();
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+  private final LongAdder evictionCount = new LongAdder();
+
+  QueryCache(String name, long maximumSize, long ttl) {
+    this.name = name;
+    this.maximumSize = Math.max(1, maximumSize);
+    this.ttlNanos = ttl > 0 ? ttl * 1_000_000 : 0;
+  }
+
+  /**
+   * Return the cached result of the given key, loading it on a miss.
+   *
+   * @param key argument tuple
+   * @param loader loads the result
+   * @return result, may be null
+   * @throws Throwable exception of the loader
+   */
+  public Object get(Object key, Loader loader) throws Throwable {
+    long now = System.nanoTime();
+    Entry entry = entries.get(key);
+    if (entry != null) {
+      if (!isExpired(entry, now)) {
+        entry.readAt = now;
+        hitCount.increment();
+        return entry.value;
+      }
+      if (entries.remove(key, entry)) {
+        evictionCount.increment();
+      }
+    }
+    missCount.increment();
+    // results loaded across an invalidation may already be stale and are not cached
+    long loadGeneration = generation.get();
+    Object value = loader.load();
+    if (loadGeneration == generation.get()) {
+      Entry loaded = new Entry(value, now);
+      entries.put(key, loaded);
+      if (loadGeneration != generation.get()) {
+        entries.remove(key, loaded);
+      } else if (entries.size() > maximumSize) {
+        evict(now);
+      }
+    }
+    return value;
+  }
+
+  /** Remove all cached results. */
+  public void invalidate() {
+    generation.incrementAndGet();
+    entries.clear();
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public long getSize() {
+    return entries.size();
+  }
+
+  public long getHitCount() {
+    return hitCount.sum();
+  }
+
+  public long getMissCount() {
+    return missCount.sum();
+  }
+
+  public long getEvictionCount() {
+    return evictionCount.sum();
+  }
+
+  private boolean isExpired(Entry entry, long now) {
+    return ttlNanos != 0 && now - entry.createdAt >= ttlNanos;
+  }
+
+  /**
+   * Evict entries until the cache fits its maximum size. The samples are taken by a cursor that
+   * keeps sweeping the map, so every entry is eventually considered. Only one thread evicts at a
+   * time; it checks the size again once it releases the lock, so that entries added meanwhile by
+   * the other threads are evicted too.
+   */
+  private void evict(long now) {
+    while (entries.size() > maximumSize && evictionLock.tryLock()) {
+      try {
+        while (entries.size() > maximumSize) {
+          Map.Entry<Object, Entry> victim = sample(now);
+          if (victim == null) {
+            return;
+          }
+          if (entries.remove(victim.getKey(), victim.getValue())) {
+            evictionCount.increment();
+          }
+        }
+      } finally {
+        evictionLock.unlock();
+      }
+    }
+  }
+
+  private Map.Entry<Object, Entry> sample(long now) {
+    Map.Entry<Object, Entry> victim = null;
+    for (int i = 0; i < EVICTION_SAMPLES; i++) {
+      if (evictionCursor == null || !evictionCursor.hasNext()) {
+        evictionCursor = entries.entrySet().iterator();
+        if (!evictionCursor.hasNext()) {
+          break;
+        }
+      }
+      Map.Entry<Object, Entry> candidate = evictionCursor.next();
+      if (isExpired(candidate.getValue(), now)) {
+        return candidate;
+      }
+      if (victim == null || candidate.getValue().readAt < victim.getValue().readAt) {
+        victim = candidate;
+      }
+    }
+    return victim;
+  }
+
+  /** Loads a result on a cache miss. */
+  @FunctionalInterface
+  public interface Loader {
+
+    /**
+     * Load the result.
+     *
+     * @return result, may be null
+     * @throws Throwable exception of the query
+     */
+    Object load() throws Throwable;
+  }
+
+  private static class Entry {
+    private final Object value;
+    private final long createdAt;
+    // written racily on reads, eviction only needs an approximate order
+    private long readAt;
+
+    Entry(Object value, long createdAt) {
+      this.value = value;
+      this.createdAt = createdAt;
+      this.readAt = createdAt;
+    }
+  }
+}
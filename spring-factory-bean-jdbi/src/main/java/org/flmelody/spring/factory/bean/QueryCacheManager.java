@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+
+/**
+ * Holds the {@link QueryCache}s of all repositories by {@link CacheRegion}. Repositories share a
+ * region, and thereby invalidate each other, only when they use the same manager.
+ *
+ * @author esotericman
+ */
+public class QueryCacheManager {
+  private final ConcurrentMap<String, List<QueryCache>> regions = new ConcurrentHashMap<>();
+  private final List<BiConsumer<String, QueryCache>> listeners = new ArrayList<>();
+
+  /**
+   * Create a cache in the given region.
+   *
+   * @param region region
+   * @param name name of the cache
+   * @param maximumSize maximum number of entries
+   * @param ttl time to live in milliseconds
+   * @return cache
+   */
+  public QueryCache createCache(String region, String name, long maximumSize, long ttl) {
+    QueryCache queryCache = new QueryCache(name, maximumSize, ttl);
+    synchronized (listeners) {
+      regions.computeIfAbsent(region, key -> new CopyOnWriteArrayList<>()).add(queryCache);
+      listeners.forEach(listener -> listener.accept(region, queryCache));
+    }
+    return queryCache;
+  }
+
+  /**
+   * Register a listener called with the region and cache of every cache, current and future.
+   *
+   * @param listener listener
+   */
+  public void addListener(BiConsumer<String, QueryCache> listener) {
+    synchronized (listeners) {
+      listeners.add(listener);
+      regions.forEach(
+          (region, queryCaches) ->
+              queryCaches.forEach(queryCache -> listener.accept(region, queryCache)));
+    }
+  }
+
+  /**
+   * Clear all caches of the given region.
+   *
+   * @param region region
+   */
+  public void invalidate(String region) {
+    List<QueryCache> queryCaches = regions.get(region);
+    if (queryCaches != null) {
+      queryCaches.forEach(QueryCache::invalidate);
+    }
+  }
+
+  /**
+   * Remove a cache from the given region, dropping the region with its last cache.
+   *
+   * @param region region
+   * @param queryCache cache created in the region
+   */
+  public void removeCache(String region, QueryCache queryCache) {
+    regions.computeIfPresent(
+        region,
+        (key, queryCaches) -> {
+          queryCaches.remove(queryCache);
+          return queryCaches.isEmpty() ? null : queryCaches;
+        });
+  }
+
+  public Set<String> getRegionNames() {
+    return Collections.unmodifiableSet(regions.keySet());
+  }
+
+  /**
+   * Return the caches of the given region, to read their statistics.
+   *
+   * @param region region
+   * @return caches
+   */
+  public List<QueryCache> getCaches(String region) {
+    return Collections.unmodifiableList(regions.getOrDefault(region, List.of()));
+  }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Spread the rows of a repository over the shards of a {@link JdbiShardMap} bean. Calls of methods
+ * with a {@link ShardKey} parameter run on the shard of the key. Calls of other methods run on all
+ * shards in parallel and their results are merged: collections are concatenated, counts are
+ * summed, booleans are or-ed, and the first present result is returned otherwise.
+ *
+ * <p>Sharded repositories do not hold a handle of their own, so {@link HandleBound}, streaming,
+ * coalesced and asynchronous methods are not supported.
+ *
+ * @author esotericman
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Sharded {
+
+  /**
+   * Name of the {@link JdbiShardMap} bean.
+   *
+   * @return bean name
+   */
+  String value();
+}
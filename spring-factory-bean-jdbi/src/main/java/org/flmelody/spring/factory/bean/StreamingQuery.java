@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Streams the rows of {@code SqlQuery} methods returning {@code Stream}, {@code Iterator} or {@code
+ * ResultIterable} from a forward-only cursor. Each result owns a handle, released when it is
+ * exhausted or closed, or when it is garbage collected, in which case a leak is logged. On a type,
+ * applies to all such methods of the repository.
+ *
+ * @author esotericman
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+public @interface StreamingQuery {
+
+  /**
+   * Number of rows fetched per round-trip, negative to use {@code
+   * flmelody.jdbi.streaming.fetch-size}. MySQL only streams with {@link Integer#MIN_VALUE}.
+   *
+   * @return fetch size
+   */
+  int fetchSize() default -1;
+}
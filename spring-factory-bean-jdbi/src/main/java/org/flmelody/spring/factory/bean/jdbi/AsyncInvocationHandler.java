@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.jdbi;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import org.flmelody.spring.factory.bean.CoalescedUpdate;
+import org.flmelody.spring.factory.bean.JdbiAsyncExecutor;
+import org.jdbi.v3.sqlobject.statement.SqlQuery;
+import org.jdbi.v3.sqlobject.statement.SqlUpdate;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Executes the {@link SqlQuery} and {@link SqlUpdate} methods returning {@link CompletableFuture},
+ * {@code Mono} or {@code Flux} on a {@link JdbiAsyncExecutor}. The method of the decorated
+ * repository is called by the executing thread, and returns its result already completed, see
+ * {@link RepositorySqlObjects}.
+ *
+ * @author esotericman
+ */
+public class AsyncInvocationHandler<T> extends RepositoryInvocationHandler<T> {
+  private static final String MONO = "reactor.core.publisher.Mono";
+  private static final String FLUX = "reactor.core.publisher.Flux";
+  private static final boolean reactorPresent =
+      ClassUtils.isPresent(FLUX, AsyncInvocationHandler.class.getClassLoader());
+  private final JdbiAsyncExecutor asyncExecutor;
+  private final Map<Method, ReturnKind> returnKinds = new HashMap<>();
+
+  public AsyncInvocationHandler(
+      Class<T> repositoryInterface, T target, JdbiAsyncExecutor asyncExecutor) {
+    super(repositoryInterface, target);
+    this.asyncExecutor = asyncExecutor;
+    for (Method method : repositoryInterface.getMethods()) {
+      if (isAsync(method)) {
+        returnKinds.put(method, returnKind(method));
+      }
+    }
+  }
+
+  /**
+   * Whether the repository declares any asynchronous or reactive statement.
+   *
+   * @param repositoryInterface repository interface
+   * @return supported or not
+   */
+  public static boolean isAsync(Class<?> repositoryInterface) {
+    for (Method method : repositoryInterface.getMethods()) {
+      if (isAsync(method)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  protected Object doInvoke(Method method, Object[] args) throws Throwable {
+    ReturnKind returnKind = returnKinds.get(method);
+    if (returnKind == null) {
+      return invokeTarget(target, method, args);
+    }
+    return switch (returnKind) {
+      case FUTURE -> asyncExecutor.submit(() -> join(call(method, args)));
+      case MONO -> ReactiveResults.mono(
+          asyncExecutor, () -> ReactiveResults.get(call(method, args)));
+      case FLUX -> ReactiveResults.flux(asyncExecutor, () -> call(method, args));
+    };
+  }
+
+  private Object call(Method method, Object[] args) throws Exception {
+    try {
+      return invokeTarget(target, method, args);
+    } catch (Exception | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new UndeclaredThrowableException(e);
+    }
+  }
+
+  private static Object join(Object stage) throws Exception {
+    try {
+      return ((CompletionStage<?>) stage).toCompletableFuture().join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof Exception cause) {
+        throw cause;
+      }
+      throw e;
+    }
+  }
+
+  private static boolean isAsync(Method method) {
+    // coalesced updates complete their futures when their batch is flushed
+    return returnKind(method) != null && !method.isAnnotationPresent(CoalescedUpdate.class);
+  }
+
+  /**
+   * Return how the result of a statement method is delivered asynchronously.
+   *
+   * @param method repository method
+   * @return return kind, null if the method is not an asynchronous statement
+   */
+  static ReturnKind returnKind(Method method) {
+    if (!(method.isAnnotationPresent(SqlQuery.class)
+        || method.isAnnotationPresent(SqlUpdate.class))) {
+      return null;
+    }
+    Class<?> returnType = method.getReturnType();
+    if (returnType == CompletableFuture.class || returnType == CompletionStage.class) {
+      return ReturnKind.FUTURE;
+    }
+    if (reactorPresent && MONO.equals(returnType.getName())) {
+      return ReturnKind.MONO;
+    }
+    if (reactorPresent && FLUX.equals(returnType.getName())) {
+      return ReturnKind.FLUX;
+    }
+    return null;
+  }
+
+  enum ReturnKind {
+    FUTURE,
+    MONO,
+    FLUX
+  }
+}
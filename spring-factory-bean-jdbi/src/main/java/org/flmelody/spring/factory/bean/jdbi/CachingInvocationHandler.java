@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.jdbi;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.stream.BaseStream;
+import org.flmelody.spring.factory.bean.CacheRegion;
+import org.flmelody.spring.factory.bean.CachedQuery;
+import org.flmelody.spring.factory.bean.QueryCache;
+import org.flmelody.spring.factory.bean.QueryCacheManager;
+import org.jdbi.v3.core.result.ResultIterable;
+import org.jdbi.v3.sqlobject.statement.SqlBatch;
+import org.jdbi.v3.sqlobject.statement.SqlCall;
+import org.jdbi.v3.sqlobject.statement.SqlScript;
+import org.jdbi.v3.sqlobject.statement.SqlScripts;
+import org.jdbi.v3.sqlobject.statement.SqlUpdate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Serves the {@link CachedQuery} methods of a repository from a {@link QueryCache} and clears the
+ * {@link CacheRegion} of the repository after each update.
+ *
+ * @author esotericman
+ */
+public class CachingInvocationHandler<T> extends RepositoryInvocationHandler<T>
+    implements AutoCloseable {
+  private final QueryCacheManager queryCacheManager;
+  private final String region;
+  private final Map<Method, QueryCache> queryCaches = new HashMap<>();
+
+  public CachingInvocationHandler(
+      Class<T> repositoryInterface, T target, QueryCacheManager queryCacheManager) {
+    super(repositoryInterface, target);
+    this.queryCacheManager = queryCacheManager;
+    this.region = getRegion(repositoryInterface);
+    for (Method method : repositoryInterface.getMethods()) {
+      CachedQuery cachedQuery = method.getAnnotation(CachedQuery.class);
+      if (cachedQuery == null) {
+        continue;
+      }
+      checkReturnType(method);
+      queryCaches.put(
+          method,
+          queryCacheManager.createCache(
+              region,
+              repositoryInterface.getSimpleName() + "." + method.getName(),
+              cachedQuery.maximumSize(),
+              cachedQuery.ttl()));
+    }
+  }
+
+  /**
+   * Whether the repository takes part in a cache region.
+   *
+   * @param repositoryInterface repository interface
+   * @return supported or not
+   */
+  public static boolean isCaching(Class<?> repositoryInterface) {
+    if (repositoryInterface.isAnnotationPresent(CacheRegion.class)) {
+      return true;
+    }
+    for (Method method : repositoryInterface.getMethods()) {
+      if (method.isAnnotationPresent(CachedQuery.class)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  protected Object doInvoke(Method method, Object[] args) throws Throwable {
+    QueryCache queryCache = queryCaches.get(method);
+    if (queryCache != null) {
+      // reads of an ongoing transaction may see uncommitted rows
+      if (TransactionSynchronizationManager.isActualTransactionActive()) {
+        return invokeTarget(target, method, args);
+      }
+      return queryCache.get(new CacheKey(args), () -> invokeTarget(target, method, args));
+    }
+    if (!isUpdate(method)) {
+      return invokeTarget(target, method, args);
+    }
+    Object result;
+    try {
+      result = invokeTarget(target, method, args);
+    } finally {
+      invalidate();
+    }
+    if (result instanceof CompletionStage<?> completionStage) {
+      // deferred updates, such as coalesced ones, invalidate again once they are executed
+      completionStage.whenComplete((value, e) -> queryCacheManager.invalidate(region));
+    }
+    return result;
+  }
+
+  /** Remove the caches of the repository from its region. */
+  @Override
+  public void close() {
+    queryCaches.values().forEach(queryCache -> queryCacheManager.removeCache(region, queryCache));
+  }
+
+  private void invalidate() {
+    queryCacheManager.invalidate(region);
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      // results loaded by other threads before the commit are stale afterwards
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+              queryCacheManager.invalidate(region);
+            }
+          });
+    }
+  }
+
+  private static String getRegion(Class<?> repositoryInterface) {
+    CacheRegion cacheRegion = repositoryInterface.getAnnotation(CacheRegion.class);
+    return cacheRegion != null ? cacheRegion.value() : repositoryInterface.getName();
+  }
+
+  private static boolean isUpdate(Method method) {
+    return method.isAnnotationPresent(SqlUpdate.class)
+        || method.isAnnotationPresent(SqlBatch.class)
+        || method.isAnnotationPresent(SqlCall.class)
+        || method.isAnnotationPresent(SqlScript.class)
+        || method.isAnnotationPresent(SqlScripts.class);
+  }
+
+  private static void checkReturnType(Method method) {
+    Class<?> returnType = method.getReturnType();
+    if (returnType == void.class
+        || BaseStream.class.isAssignableFrom(returnType)
+        || Iterator.class.isAssignableFrom(returnType)
+        || ResultIterable.class.isAssignableFrom(returnType)
+        || CompletionStage.class.isAssignableFrom(returnType)) {
+      throw new IllegalStateException(
+          "Unsupported return type " + returnType.getName() + " of @CachedQuery " + method);
+    }
+  }
+
+  private record CacheKey(Object[] args) {
+
+    @Override
+    public boolean equals(Object other) {
+      return other instanceof CacheKey cacheKey && Arrays.deepEquals(args, cacheKey.args);
+    }
+
+    @Override
+    public int hashCode() {
+      return Arrays.deepHashCode(args);
+    }
+
+    @Override
+    public String toString() {
+      return Arrays.deepToString(args);
+    }
+  }
+}
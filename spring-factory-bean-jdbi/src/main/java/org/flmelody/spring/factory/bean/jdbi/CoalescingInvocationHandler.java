@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.jdbi;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import org.flmelody.spring.factory.bean.CoalescedUpdate;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.sqlobject.statement.SqlUpdate;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+
+/**
+ * Routes the {@link CoalescedUpdate} methods of a repository through an {@link UpdateCoalescer}.
+ *
+ * @author esotericman
+ */
+public class CoalescingInvocationHandler<T> extends RepositoryInvocationHandler<T>
+    implements AutoCloseable {
+  private final Map<Method, UpdateCoalescer> coalescers = new HashMap<>();
+
+  public CoalescingInvocationHandler(Class<T> repositoryInterface, T target, Jdbi jdbi) {
+    super(repositoryInterface, target);
+    for (Method method : repositoryInterface.getMethods()) {
+      CoalescedUpdate coalescedUpdate = method.getAnnotation(CoalescedUpdate.class);
+      if (coalescedUpdate == null) {
+        continue;
+      }
+      if (!AnnotatedElementUtils.hasAnnotation(method, SqlUpdate.class)) {
+        throw new IllegalStateException("@CoalescedUpdate requires @SqlUpdate on " + method);
+      }
+      checkReturnType(method);
+      coalescers.put(
+          method, new UpdateCoalescer(jdbi, repositoryInterface, method, coalescedUpdate));
+    }
+  }
+
+  /**
+   * Whether the repository declares any coalesced method.
+   *
+   * @param repositoryInterface repository interface
+   * @return supported or not
+   */
+  public static boolean isCoalescing(Class<?> repositoryInterface) {
+    for (Method method : repositoryInterface.getMethods()) {
+      if (method.isAnnotationPresent(CoalescedUpdate.class)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  protected Object doInvoke(Method method, Object[] args) throws Throwable {
+    UpdateCoalescer coalescer = coalescers.get(method);
+    if (coalescer == null) {
+      return invokeTarget(target, method, args);
+    }
+    CompletableFuture<Integer> future = coalescer.submit(args);
+    Class<?> returnType = method.getReturnType();
+    if (CompletionStage.class.isAssignableFrom(returnType)) {
+      return future;
+    }
+    int count;
+    try {
+      count = future.join();
+    } catch (CompletionException e) {
+      throw e.getCause();
+    }
+    if (returnType == long.class || returnType == Long.class) {
+      return (long) count;
+    }
+    if (returnType == boolean.class || returnType == Boolean.class) {
+      return count > 0;
+    }
+    return returnType == void.class ? null : count;
+  }
+
+  /** Flush the queued calls. */
+  @Override
+  public void close() {
+    coalescers.values().forEach(UpdateCoalescer::flush);
+  }
+
+  private static void checkReturnType(Method method) {
+    Class<?> returnType = method.getReturnType();
+    if (returnType != void.class
+        && returnType != int.class
+        && returnType != Integer.class
+        && returnType != long.class
+        && returnType != Long.class
+        && returnType != boolean.class
+        && returnType != Boolean.class
+        && !isFutureOfCount(method)) {
+      throw new IllegalStateException(
+          "Unsupported return type " + returnType.getName() + " of @CoalescedUpdate " + method);
+    }
+  }
+
+  private static boolean isFutureOfCount(Method method) {
+    Class<?> returnType = method.getReturnType();
+    if (returnType != CompletableFuture.class && returnType != CompletionStage.class) {
+      return false;
+    }
+    Class<?> countType = ResolvableType.forMethodReturnType(method).getGeneric(0).resolve();
+    return countType == null || countType == Integer.class;
+  }
+}
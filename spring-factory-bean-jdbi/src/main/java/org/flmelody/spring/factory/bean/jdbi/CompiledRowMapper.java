@@ -0,0 +1,355 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.jdbi;
+
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.lang.reflect.RecordComponent;
+import java.lang.reflect.Type;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import org.flmelody.spring.factory.bean.CompiledMapper;
+import org.jdbi.v3.core.mapper.ColumnMapper;
+import org.jdbi.v3.core.mapper.MappingException;
+import org.jdbi.v3.core.mapper.NoSuchMapperException;
+import org.jdbi.v3.core.mapper.RowMapper;
+import org.jdbi.v3.core.mapper.reflect.ColumnName;
+import org.jdbi.v3.core.statement.StatementContext;
+import org.springframework.beans.BeanUtils;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Maps rows to a bean or a record without per-row reflection. Setters are compiled to lambdas,
+ * and the record constructor to a method handle, once per type. Columns are bound to properties
+ * once per result set shape, so that each row is mapped by column index.
+ *
+ * @author esotericman
+ * @see CompiledMapper
+ */
+public final class CompiledRowMapper<T> implements RowMapper<T> {
+  private static final int MAX_SHAPES = 256;
+  private final Class<T> type;
+  private final List<Property> properties;
+  private final Supplier<Object> beanConstructor;
+  private final MethodHandle recordConstructor;
+  private final Map<List<String>, int[]> shapes = new ConcurrentHashMap<>();
+
+  private CompiledRowMapper(
+      Class<T> type,
+      List<Property> properties,
+      Supplier<Object> beanConstructor,
+      MethodHandle recordConstructor) {
+    this.type = type;
+    this.properties = properties;
+    this.beanConstructor = beanConstructor;
+    this.recordConstructor = recordConstructor;
+  }
+
+  /**
+   * Compile a row mapper of the given bean or record type.
+   *
+   * @param type bean or record type
+   * @param <T> mapped type
+   * @return row mapper
+   * @throws IllegalArgumentException if the type is neither a record nor a bean with a no-arg
+   *     constructor
+   */
+  public static <T> CompiledRowMapper<T> of(Class<T> type) {
+    MethodHandles.Lookup lookup = lookup(type);
+    try {
+      if (type.isRecord()) {
+        RecordComponent[] components = type.getRecordComponents();
+        Class<?>[] parameterTypes = new Class<?>[components.length];
+        for (int i = 0; i < components.length; i++) {
+          parameterTypes[i] = components[i].getType();
+        }
+        Constructor<T> constructor = type.getDeclaredConstructor(parameterTypes);
+        Parameter[] parameters = constructor.getParameters();
+        List<Property> properties = new ArrayList<>();
+        for (int i = 0; i < components.length; i++) {
+          ColumnName columnName = parameters[i].getAnnotation(ColumnName.class);
+          properties.add(
+              new Property(
+                  columnName(components[i].getName(), columnName),
+                  components[i].getGenericType(),
+                  components[i].getType(),
+                  null));
+        }
+        MethodHandle handle =
+            lookup
+                .unreflectConstructor(constructor)
+                .asSpreader(Object[].class, components.length)
+                .asType(MethodType.methodType(Object.class, Object[].class));
+        return new CompiledRowMapper<>(type, properties, null, handle);
+      }
+      List<Property> properties = new ArrayList<>();
+      for (PropertyDescriptor descriptor : BeanUtils.getPropertyDescriptors(type)) {
+        Method writeMethod = descriptor.getWriteMethod();
+        if (writeMethod == null) {
+          continue;
+        }
+        ColumnName columnName = writeMethod.getAnnotation(ColumnName.class);
+        if (columnName == null && descriptor.getReadMethod() != null) {
+          columnName = descriptor.getReadMethod().getAnnotation(ColumnName.class);
+        }
+        properties.add(
+            new Property(
+                columnName(descriptor.getName(), columnName),
+                writeMethod.getGenericParameterTypes()[0],
+                writeMethod.getParameterTypes()[0],
+                compileSetter(lookup, type, writeMethod)));
+      }
+      return new CompiledRowMapper<>(type, properties, compileConstructor(lookup, type), null);
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new IllegalArgumentException(
+          type.getName() + " is neither a record nor a bean with an accessible no-arg constructor",
+          e);
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public T map(ResultSet rs, StatementContext ctx) throws SQLException {
+    return specialize(rs, ctx).map(rs, ctx);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public RowMapper<T> specialize(ResultSet rs, StatementContext ctx) throws SQLException {
+    ResultSetMetaData metaData = rs.getMetaData();
+    String[] labels = new String[metaData.getColumnCount()];
+    for (int i = 0; i < labels.length; i++) {
+      labels[i] = metaData.getColumnLabel(i + 1);
+    }
+    List<String> shape = Arrays.asList(labels);
+    int[] columns = shapes.get(shape);
+    if (columns == null) {
+      columns = bind(labels);
+      if (shapes.size() < MAX_SHAPES) {
+        shapes.put(shape, columns);
+      }
+    }
+    // resolved per result set, the column mappers depend on the configuration of the statement
+    ColumnMapper<?>[] columnMappers = new ColumnMapper<?>[columns.length];
+    for (int i = 0; i < columns.length; i++) {
+      if (columns[i] > 0) {
+        Property property = properties.get(i);
+        columnMappers[i] =
+            ctx.findColumnMapperFor(property.genericType())
+                .orElseThrow(
+                    () ->
+                        new NoSuchMapperException(
+                            "No column mapper registered for "
+                                + property.genericType().getTypeName()));
+      }
+    }
+    return recordConstructor != null
+        ? new RecordRowMapper(columns, columnMappers)
+        : new BeanRowMapper(columns, columnMappers);
+  }
+
+  private int[] bind(String[] labels) {
+    int[] columns = new int[properties.size()];
+    boolean matched = false;
+    for (int i = 0; i < columns.length; i++) {
+      String name = properties.get(i).name();
+      for (int column = 0; column < labels.length; column++) {
+        if (name.equals(normalize(labels[column]))) {
+          columns[i] = column + 1;
+          matched = true;
+          break;
+        }
+      }
+    }
+    if (!matched) {
+      throw new IllegalArgumentException(
+          "Mapping "
+              + type.getName()
+              + " didn't find any matching columns in "
+              + Arrays.toString(labels));
+    }
+    return columns;
+  }
+
+  private static String columnName(String propertyName, ColumnName columnName) {
+    return normalize(columnName != null ? columnName.value() : propertyName);
+  }
+
+  private static String normalize(String name) {
+    return name.replace("_", "").toLowerCase(Locale.ROOT);
+  }
+
+  private static MethodHandles.Lookup lookup(Class<?> type) {
+    try {
+      return MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+    } catch (IllegalAccessException e) {
+      return MethodHandles.publicLookup();
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Supplier<Object> compileConstructor(MethodHandles.Lookup lookup, Class<?> type)
+      throws NoSuchMethodException, IllegalAccessException {
+    MethodHandle constructor = lookup.findConstructor(type, MethodType.methodType(void.class));
+    try {
+      return (Supplier<Object>)
+          LambdaMetafactory.metafactory(
+                  lookup,
+                  "get",
+                  MethodType.methodType(Supplier.class),
+                  MethodType.methodType(Object.class),
+                  constructor,
+                  MethodType.methodType(type))
+              .getTarget()
+              .invokeExact();
+    } catch (Throwable e) {
+      // the lookup may lack the access required to define a lambda, e.g. across class loaders
+      MethodHandle generic = constructor.asType(MethodType.methodType(Object.class));
+      return () -> {
+        try {
+          return generic.invokeExact();
+        } catch (Throwable t) {
+          throw mappingException(type, t);
+        }
+      };
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static BiConsumer<Object, Object> compileSetter(
+      MethodHandles.Lookup lookup, Class<?> type, Method setter) throws IllegalAccessException {
+    MethodHandle handle = lookup.unreflect(setter);
+    Class<?> valueType = ClassUtils.resolvePrimitiveIfNecessary(setter.getParameterTypes()[0]);
+    try {
+      return (BiConsumer<Object, Object>)
+          LambdaMetafactory.metafactory(
+                  lookup,
+                  "accept",
+                  MethodType.methodType(BiConsumer.class),
+                  MethodType.methodType(void.class, Object.class, Object.class),
+                  handle,
+                  MethodType.methodType(void.class, type, valueType))
+              .getTarget()
+              .invokeExact();
+    } catch (Throwable e) {
+      MethodHandle generic =
+          handle.asType(MethodType.methodType(void.class, Object.class, Object.class));
+      return (bean, value) -> {
+        try {
+          generic.invokeExact(bean, value);
+        } catch (Throwable t) {
+          throw mappingException(type, t);
+        }
+      };
+    }
+  }
+
+  private static RuntimeException mappingException(Class<?> type, Throwable cause) {
+    if (cause instanceof RuntimeException runtimeException) {
+      return runtimeException;
+    }
+    if (cause instanceof Error error) {
+      throw error;
+    }
+    return new MappingException("Failed to map " + type.getName(), cause);
+  }
+
+  private record Property(
+      String name, Type genericType, Class<?> rawType, BiConsumer<Object, Object> setter) {
+
+    Object defaultValue() {
+      return rawType.isPrimitive() ? Array.get(Array.newInstance(rawType, 1), 0) : null;
+    }
+  }
+
+  private class BeanRowMapper implements RowMapper<T> {
+    private final int[] columns;
+    private final ColumnMapper<?>[] columnMappers;
+
+    BeanRowMapper(int[] columns, ColumnMapper<?>[] columnMappers) {
+      this.columns = columns;
+      this.columnMappers = columnMappers;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public T map(ResultSet rs, StatementContext ctx) throws SQLException {
+      Object bean = beanConstructor.get();
+      for (int i = 0; i < columns.length; i++) {
+        if (columns[i] > 0) {
+          Object value = columnMappers[i].map(rs, columns[i], ctx);
+          Property property = properties.get(i);
+          // a null column leaves a primitive property untouched
+          if (value != null || !property.rawType().isPrimitive()) {
+            property.setter().accept(bean, value);
+          }
+        }
+      }
+      return type.cast(bean);
+    }
+  }
+
+  private class RecordRowMapper implements RowMapper<T> {
+    private final int[] columns;
+    private final ColumnMapper<?>[] columnMappers;
+    private final Object[] defaults;
+
+    RecordRowMapper(int[] columns, ColumnMapper<?>[] columnMappers) {
+      this.columns = columns;
+      this.columnMappers = columnMappers;
+      this.defaults = new Object[columns.length];
+      for (int i = 0; i < columns.length; i++) {
+        defaults[i] = properties.get(i).defaultValue();
+      }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public T map(ResultSet rs, StatementContext ctx) throws SQLException {
+      Object[] arguments = defaults.clone();
+      for (int i = 0; i < columns.length; i++) {
+        if (columns[i] > 0) {
+          Object value = columnMappers[i].map(rs, columns[i], ctx);
+          if (value != null) {
+            arguments[i] = value;
+          }
+        }
+      }
+      try {
+        return type.cast(recordConstructor.invokeExact(arguments));
+      } catch (Throwable t) {
+        throw mappingException(type, t);
+      }
+    }
+  }
+}
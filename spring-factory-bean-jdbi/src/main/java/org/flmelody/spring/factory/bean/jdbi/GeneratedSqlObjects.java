@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.jdbi;
+
+import jakarta.annotation.Nullable;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.sqlobject.GenerateSqlObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Creates on-demand repositories from the implementations generated for {@link GenerateSqlObject}
+ * interfaces, so that calls are dispatched by plain method calls instead of a reflective proxy.
+ *
+ * @author esotericman
+ */
+public final class GeneratedSqlObjects {
+  private static final Logger logger = LoggerFactory.getLogger(GeneratedSqlObjects.class);
+  private static final ClassValue<Constructor<?>> onDemandConstructors =
+      new ClassValue<>() {
+        @Override
+        protected Constructor<?> computeValue(Class<?> repositoryInterface) {
+          return findOnDemandConstructor(repositoryInterface);
+        }
+      };
+
+  private GeneratedSqlObjects() {}
+
+  /**
+   * Create an on-demand repository, from its generated implementation if there is one.
+   *
+   * @param jdbi jdbi
+   * @param repositoryInterface repository interface
+   * @param <T> repository type
+   * @return repository
+   */
+  public static <T> T onDemand(Jdbi jdbi, Class<T> repositoryInterface) {
+    Constructor<?> constructor = onDemandConstructors.get(repositoryInterface);
+    if (constructor == null) {
+      return jdbi.onDemand(repositoryInterface);
+    }
+    try {
+      return repositoryInterface.cast(constructor.newInstance(jdbi));
+    } catch (InvocationTargetException e) {
+      throw new IllegalStateException(
+          "Failed to create generated repository of " + repositoryInterface.getName(),
+          e.getCause());
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException(
+          "Failed to create generated repository of " + repositoryInterface.getName(), e);
+    }
+  }
+
+  /**
+   * Whether a generated implementation of the repository is available.
+   *
+   * @param repositoryInterface repository interface
+   * @return generated or not
+   */
+  public static boolean isGenerated(Class<?> repositoryInterface) {
+    return onDemandConstructors.get(repositoryInterface) != null;
+  }
+
+  /**
+   * Return the name of the implementation the JDBI annotation processor generates.
+   *
+   * @param repositoryInterface repository interface
+   * @return class name
+   */
+  static String getGeneratedClassName(Class<?> repositoryInterface) {
+    String packageName = repositoryInterface.getPackageName();
+    String className = repositoryInterface.getName();
+    // nested interfaces are generated as top-level classes
+    String simpleName =
+        packageName.isEmpty() ? className : className.substring(packageName.length() + 1);
+    return (packageName.isEmpty() ? "" : packageName + ".")
+        + simpleName.replace('$', '_')
+        + "Impl";
+  }
+
+  @Nullable
+  private static Constructor<?> findOnDemandConstructor(Class<?> repositoryInterface) {
+    if (!repositoryInterface.isAnnotationPresent(GenerateSqlObject.class)) {
+      return null;
+    }
+    String onDemandClassName = getGeneratedClassName(repositoryInterface) + "$OnDemand";
+    ClassLoader classLoader = repositoryInterface.getClassLoader();
+    if (!ClassUtils.isPresent(onDemandClassName, classLoader)) {
+      // the annotation processor did not run, JDBI reports the missing class itself
+      logger.warn(
+          repositoryInterface.getName()
+              + " is annotated with @GenerateSqlObject but "
+              + onDemandClassName
+              + " was not found");
+      return null;
+    }
+    try {
+      Class<?> onDemandClass = ClassUtils.forName(onDemandClassName, classLoader);
+      if (!repositoryInterface.isAssignableFrom(onDemandClass)) {
+        return null;
+      }
+      Constructor<?> constructor = onDemandClass.getDeclaredConstructor(Jdbi.class);
+      constructor.setAccessible(true);
+      if (logger.isDebugEnabled()) {
+        logger.debug(
+            "Using generated " + onDemandClassName + " for " + repositoryInterface.getName());
+      }
+      return constructor;
+    } catch (ClassNotFoundException | NoSuchMethodException | LinkageError e) {
+      logger.warn(
+          "Unable to use generated " + onDemandClassName + ", falling back to Jdbi.onDemand: " + e);
+      return null;
+    }
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.jdbi;
+
+import java.lang.reflect.Method;
+import org.flmelody.spring.factory.bean.HandleBound;
+import org.flmelody.spring.factory.bean.JdbiUnitOfWork;
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.spring5.JdbiUtil;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Runs calls on the handle of the current transaction or unit of work, see {@link HandleBound}.
+ *
+ * @author esotericman
+ */
+public class HandleBoundInvocationHandler<T> extends RepositoryInvocationHandler<T> {
+  private final Jdbi jdbi;
+
+  public HandleBoundInvocationHandler(Class<T> repositoryInterface, T target, Jdbi jdbi) {
+    super(repositoryInterface, target);
+    this.jdbi = jdbi;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  protected Object doInvoke(Method method, Object[] args) throws Throwable {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      // bound to the transaction and closed on completion
+      Handle handle = JdbiUtil.getHandle(jdbi);
+      try {
+        return invokeTarget(RepositorySqlObjects.attach(handle, repositoryInterface), method, args);
+      } finally {
+        JdbiUtil.closeIfNeeded(handle);
+      }
+    }
+    Handle handle = JdbiUnitOfWork.currentHandle(jdbi);
+    if (handle != null) {
+      return invokeTarget(RepositorySqlObjects.attach(handle, repositoryInterface), method, args);
+    }
+    return invokeTarget(target, method, args);
+  }
+}
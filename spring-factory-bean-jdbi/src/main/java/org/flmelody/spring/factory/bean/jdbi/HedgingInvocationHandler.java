@@ -0,0 +1,289 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.jdbi;
+
+import java.lang.reflect.Method;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.BaseStream;
+import org.flmelody.spring.factory.bean.Hedged;
+import org.flmelody.spring.factory.bean.JdbiAsyncExecutor;
+import org.flmelody.spring.factory.bean.JdbiHedgeStatistics;
+import org.flmelody.spring.factory.bean.JdbiHedgeStatistics.MethodStatistics;
+import org.flmelody.spring.factory.bean.JdbiReplicaRouter;
+import org.flmelody.spring.factory.bean.JdbiUnitOfWork;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.result.ResultIterable;
+import org.jdbi.v3.core.statement.StatementContext;
+import org.jdbi.v3.core.statement.StatementCustomizer;
+import org.jdbi.v3.sqlobject.statement.SqlQuery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Hedges the {@link Hedged} queries of a repository across the replicas of a {@link
+ * JdbiReplicaRouter}.
+ *
+ * @author esotericman
+ */
+public class HedgingInvocationHandler<T> extends RepositoryInvocationHandler<T> {
+  private static final Logger logger = LoggerFactory.getLogger(HedgingInvocationHandler.class);
+  private final Jdbi jdbi;
+  private final JdbiReplicaRouter replicaRouter;
+  private final JdbiAsyncExecutor asyncExecutor;
+  private final Map<Method, HedgedMethod> hedgedMethods = new HashMap<>();
+
+  public HedgingInvocationHandler(
+      Class<T> repositoryInterface,
+      T target,
+      Jdbi jdbi,
+      JdbiReplicaRouter replicaRouter,
+      JdbiAsyncExecutor asyncExecutor,
+      JdbiHedgeStatistics hedgeStatistics) {
+    super(repositoryInterface, target);
+    this.jdbi = jdbi;
+    this.replicaRouter = replicaRouter;
+    this.asyncExecutor = asyncExecutor;
+    Hedged typeHedged = repositoryInterface.getAnnotation(Hedged.class);
+    for (Method method : repositoryInterface.getMethods()) {
+      Hedged hedged = method.getAnnotation(Hedged.class);
+      if (hedged == null) {
+        hedged = typeHedged;
+      }
+      if (hedged == null) {
+        continue;
+      }
+      if (!method.isAnnotationPresent(SqlQuery.class) || !isBlockingType(method.getReturnType())) {
+        if (method.isAnnotationPresent(Hedged.class)) {
+          throw new IllegalStateException(
+              "@Hedged requires a @SqlQuery method with a materialized result on " + method);
+        }
+        continue;
+      }
+      if (hedged.percentile() <= 0 || hedged.percentile() > 1) {
+        throw new IllegalStateException("@Hedged percentile must be in (0, 1] on " + method);
+      }
+      hedgedMethods.put(
+          method,
+          new HedgedMethod(
+              hedged,
+              hedgeStatistics.getStatistics(repositoryInterface.getName(), method.getName())));
+    }
+  }
+
+  /**
+   * Whether the repository declares any hedged method.
+   *
+   * @param repositoryInterface repository interface
+   * @return supported or not
+   */
+  public static boolean isHedged(Class<?> repositoryInterface) {
+    if (repositoryInterface.isAnnotationPresent(Hedged.class)) {
+      return true;
+    }
+    for (Method method : repositoryInterface.getMethods()) {
+      if (method.isAnnotationPresent(Hedged.class)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isBlockingType(Class<?> type) {
+    return !BaseStream.class.isAssignableFrom(type)
+        && !Iterator.class.isAssignableFrom(type)
+        && !ResultIterable.class.isAssignableFrom(type)
+        && !CompletionStage.class.isAssignableFrom(type)
+        && !Future.class.isAssignableFrom(type)
+        && !type.getName().startsWith("org.reactivestreams.")
+        && !type.getName().startsWith("reactor.core.publisher.");
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  protected Object doInvoke(Method method, Object[] args) throws Throwable {
+    HedgedMethod hedgedMethod = hedgedMethods.get(method);
+    if (hedgedMethod == null
+        || TransactionSynchronizationManager.isActualTransactionActive()
+        || JdbiUnitOfWork.currentHandle(jdbi) != null) {
+      return invokeTarget(target, method, args);
+    }
+    long start = System.nanoTime();
+    int replica = replicaRouter.acquire();
+    Attempt first = new Attempt(replicaRouter.getReplicas().get(replica), method, args);
+    first.future.whenComplete((result, e) -> replicaRouter.release(replica));
+    Attempt hedge = null;
+    try {
+      Attempt winner;
+      try {
+        first.future.get(hedgedMethod.getDelayNanos(), TimeUnit.NANOSECONDS);
+        winner = first;
+      } catch (TimeoutException e) {
+        hedge = new Attempt(hedgeJdbi(replica), method, args);
+        winner = firstSuccess(first, hedge).get();
+      }
+      hedgedMethod.record(System.nanoTime() - start, hedge != null, winner == hedge);
+      return winner.future.getNow(null);
+    } catch (ExecutionException e) {
+      throw e.getCause() instanceof AttemptFailure failure ? failure.getCause() : e.getCause();
+    } finally {
+      first.cancel();
+      if (hedge != null) {
+        hedge.cancel();
+      }
+    }
+  }
+
+  private Jdbi hedgeJdbi(int replica) {
+    int replicas = replicaRouter.getReplicas().size();
+    return replicas > 1 ? replicaRouter.getReplicas().get((replica + 1) % replicas) : jdbi;
+  }
+
+  private CompletableFuture<Attempt> firstSuccess(Attempt first, Attempt hedge) {
+    CompletableFuture<Attempt> winner = new CompletableFuture<>();
+    AtomicInteger failures = new AtomicInteger();
+    for (Attempt attempt : Arrays.asList(first, hedge)) {
+      attempt.future.whenComplete(
+          (result, e) -> {
+            if (e == null) {
+              winner.complete(attempt);
+            } else if (failures.incrementAndGet() == 2) {
+              // both failed, the error of the last one is reported
+              winner.completeExceptionally(e);
+            }
+          });
+    }
+    return winner;
+  }
+
+  /** A call on one replica, whose statement can be cancelled from another thread. */
+  private class Attempt implements StatementCustomizer {
+    private final AtomicReference<Statement> statement = new AtomicReference<>();
+    private final CompletableFuture<Object> future;
+    private volatile boolean cancelled;
+
+    Attempt(Jdbi replica, Method method, Object[] args) {
+      this.future =
+          asyncExecutor.submit(
+              () -> {
+                try {
+                  return replica.withHandle(
+                      handle -> {
+                        handle.addCustomizer(this);
+                        try {
+                          return invokeTarget(
+                              RepositorySqlObjects.attach(handle, repositoryInterface),
+                              method,
+                              args);
+                        } catch (Throwable e) {
+                          throw new AttemptFailure(e);
+                        }
+                      });
+                } finally {
+                  statement.set(null);
+                }
+              });
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void beforeExecution(PreparedStatement stmt, StatementContext ctx) throws SQLException {
+      statement.set(stmt);
+      if (cancelled) {
+        stmt.cancel();
+      }
+    }
+
+    void cancel() {
+      if (future.isDone()) {
+        return;
+      }
+      cancelled = true;
+      Statement current = statement.get();
+      if (current != null) {
+        try {
+          current.cancel();
+        } catch (SQLException e) {
+          // the statement may complete or close meanwhile
+          if (logger.isDebugEnabled()) {
+            logger.debug("Failed to cancel hedged statement: " + e.getMessage());
+          }
+        }
+      }
+    }
+  }
+
+  private static class HedgedMethod {
+    private static final int WINDOW = 1024;
+    private static final int MIN_SAMPLES = 100;
+    private static final int REFRESH_INTERVAL = 64;
+    private final double percentile;
+    private final long minDelayNanos;
+    private final MethodStatistics statistics;
+    private final long[] latencies = new long[WINDOW];
+    private long samples;
+    private volatile long delayNanos;
+
+    HedgedMethod(Hedged hedged, MethodStatistics statistics) {
+      this.percentile = hedged.percentile();
+      this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(hedged.minDelay());
+      this.statistics = statistics;
+      this.delayNanos =
+          Math.max(minDelayNanos, TimeUnit.MILLISECONDS.toNanos(hedged.initialDelay()));
+    }
+
+    long getDelayNanos() {
+      return delayNanos;
+    }
+
+    void record(long latencyNanos, boolean hedged, boolean hedgeWon) {
+      statistics.record(hedged, hedgeWon);
+      synchronized (this) {
+        latencies[(int) (samples % WINDOW)] = latencyNanos;
+        samples++;
+        // sorting the window on every call would cost more than the hedge saves
+        if (samples >= MIN_SAMPLES && samples % REFRESH_INTERVAL == 0) {
+          long[] window = Arrays.copyOf(latencies, (int) Math.min(samples, WINDOW));
+          Arrays.sort(window);
+          int index = (int) Math.ceil(percentile * window.length) - 1;
+          delayNanos = Math.max(minDelayNanos, window[Math.max(0, index)]);
+        }
+      }
+    }
+  }
+
+  /** Carries any exception of a repository method out of an attempt. */
+  private static class AttemptFailure extends Exception {
+    AttemptFailure(Throwable cause) {
+      super(cause);
+    }
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.jdbi;
+
+import jakarta.annotation.Nonnull;
+import java.lang.reflect.Method;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.flmelody.spring.factory.bean.CompiledMapper;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.mapper.ColumnMapper;
+import org.jdbi.v3.core.mapper.RowMapper;
+import org.jdbi.v3.core.spi.JdbiPlugin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.core.ResolvableType;
+
+/**
+ * Registers the {@link RowMapper} and {@link ColumnMapper} beans on a {@link Jdbi}, and a {@link
+ * CompiledRowMapper} for every {@link CompiledMapper} type returned by a repository registered by
+ * {@code JdbiRepositoryScan}.
+ *
+ * @author esotericman
+ */
+public class JdbiMapperPlugin extends JdbiPlugin.Singleton implements BeanFactoryAware {
+  private static final Logger logger = LoggerFactory.getLogger(JdbiMapperPlugin.class);
+  private static final int MAX_DEPTH = 4;
+  private final ObjectProvider<RowMapper<?>> rowMappers;
+  private final ObjectProvider<ColumnMapper<?>> columnMappers;
+  // shared by the primary and the replicas, so that result set shapes are bound once
+  private final Map<Class<?>, CompiledRowMapper<?>> compiledRowMappers = new ConcurrentHashMap<>();
+  private ConfigurableListableBeanFactory beanFactory;
+
+  public JdbiMapperPlugin(
+      ObjectProvider<RowMapper<?>> rowMappers, ObjectProvider<ColumnMapper<?>> columnMappers) {
+    this.rowMappers = rowMappers;
+    this.columnMappers = columnMappers;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void setBeanFactory(@Nonnull BeanFactory beanFactory) throws BeansException {
+    if (beanFactory instanceof ConfigurableListableBeanFactory listableBeanFactory) {
+      this.beanFactory = listableBeanFactory;
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void customizeJdbi(Jdbi jdbi) {
+    for (RowMapper<?> rowMapper : rowMappers.orderedStream().toList()) {
+      jdbi.registerRowMapper(rowMapper);
+    }
+    for (ColumnMapper<?> columnMapper : columnMappers.orderedStream().toList()) {
+      jdbi.registerColumnMapper(columnMapper);
+    }
+    if (beanFactory == null) {
+      return;
+    }
+    Set<Class<?>> resultTypes = new LinkedHashSet<>();
+    for (Class<?> repository : JdbiStatementValidator.findRepositories(beanFactory)) {
+      for (Method method : repository.getMethods()) {
+        collectResultTypes(
+            ResolvableType.forMethodReturnType(method, repository), resultTypes, 0);
+      }
+    }
+    for (Class<?> resultType : resultTypes) {
+      jdbi.registerRowMapper(
+          resultType, compiledRowMappers.computeIfAbsent(resultType, CompiledRowMapper::of));
+    }
+    if (logger.isDebugEnabled() && !resultTypes.isEmpty()) {
+      logger.debug("Registered compiled row mappers of " + resultTypes);
+    }
+  }
+
+  private static void collectResultTypes(
+      ResolvableType type, Set<Class<?>> resultTypes, int depth) {
+    // bounded, type variables may refer to themselves
+    if (depth > MAX_DEPTH) {
+      return;
+    }
+    if (type.isArray()) {
+      collectResultTypes(type.getComponentType(), resultTypes, depth + 1);
+      return;
+    }
+    // element types of collections, optionals, streams and asynchronous results
+    for (ResolvableType generic : type.getGenerics()) {
+      collectResultTypes(generic, resultTypes, depth + 1);
+    }
+    Class<?> resolved = type.resolve();
+    if (resolved != null && resolved.isAnnotationPresent(CompiledMapper.class)) {
+      resultTypes.add(resolved);
+    }
+  }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.jdbi;
+
+import jakarta.annotation.Nonnull;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.flmelody.spring.factory.bean.JdbiRepositoryFactoryBean;
+import org.flmelody.spring.factory.bean.annotation.ProxyClassPathBeanDefinitionScanner;
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.statement.ParsedSql;
+import org.jdbi.v3.core.statement.Query;
+import org.jdbi.v3.core.statement.SqlStatements;
+import org.jdbi.v3.core.statement.StatementContext;
+import org.jdbi.v3.sqlobject.SqlObjects;
+import org.jdbi.v3.sqlobject.customizer.BindList;
+import org.jdbi.v3.sqlobject.customizer.Define;
+import org.jdbi.v3.sqlobject.customizer.DefineList;
+import org.jdbi.v3.sqlobject.statement.SqlBatch;
+import org.jdbi.v3.sqlobject.statement.SqlCall;
+import org.jdbi.v3.sqlobject.statement.SqlQuery;
+import org.jdbi.v3.sqlobject.statement.SqlUpdate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Renders and parses the SQL of every repository registered by {@code JdbiRepositoryScan} once all
+ * singletons exist, optionally preparing it against the database. This fills the caches of the
+ * SQL object metadata and the SQL parser before the first call, and reports broken statements at
+ * startup. Statements with {@link Define}, {@link DefineList} or {@link BindList} parameters are
+ * only rendered at call time and skipped.
+ *
+ * @author esotericman
+ */
+public class JdbiStatementValidator implements SmartInitializingSingleton, BeanFactoryAware {
+  private static final Logger logger = LoggerFactory.getLogger(JdbiStatementValidator.class);
+  private final Jdbi jdbi;
+  private final boolean prepare;
+  private final boolean failFast;
+  private final int parallelism;
+  private ConfigurableListableBeanFactory beanFactory;
+
+  public JdbiStatementValidator(Jdbi jdbi, boolean prepare, boolean failFast, int parallelism) {
+    this.jdbi = jdbi;
+    this.prepare = prepare;
+    this.failFast = failFast;
+    this.parallelism = Math.max(1, parallelism);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void setBeanFactory(@Nonnull BeanFactory beanFactory) throws BeansException {
+    this.beanFactory = (ConfigurableListableBeanFactory) beanFactory;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void afterSingletonsInstantiated() {
+    List<Class<?>> repositories = findRepositories(beanFactory);
+    if (repositories.isEmpty()) {
+      return;
+    }
+    long start = System.nanoTime();
+    AtomicInteger statements = new AtomicInteger();
+    List<String> failures = new ArrayList<>();
+    CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("jdbi-validation-");
+    threadFactory.setDaemon(true);
+    ExecutorService executorService =
+        Executors.newFixedThreadPool(Math.min(parallelism, repositories.size()), threadFactory);
+    try {
+      List<Future<List<String>>> futures = new ArrayList<>();
+      for (Class<?> repository : repositories) {
+        futures.add(executorService.submit(() -> validate(repository, statements)));
+      }
+      for (Future<List<String>> future : futures) {
+        failures.addAll(future.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted during statement validation", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Statement validation failed", e.getCause());
+    } finally {
+      executorService.shutdownNow();
+    }
+    long elapsed = (System.nanoTime() - start) / 1_000_000;
+    if (!failures.isEmpty()) {
+      String report =
+          failures.size()
+              + " invalid repository statement(s):"
+              + System.lineSeparator()
+              + String.join(System.lineSeparator(), failures);
+      if (failFast) {
+        throw new IllegalStateException(report);
+      }
+      logger.warn(report);
+    }
+    if (logger.isInfoEnabled()) {
+      logger.info(
+          (prepare ? "Prepared " : "Parsed ")
+              + statements.get()
+              + " statement(s) of "
+              + repositories.size()
+              + " repositories in "
+              + elapsed
+              + " ms, "
+              + failures.size()
+              + " invalid");
+    }
+  }
+
+  /**
+   * Return the repository interfaces registered by {@code JdbiRepositoryScan}.
+   *
+   * @param beanFactory beanFactory
+   * @return repository interfaces
+   */
+  static List<Class<?>> findRepositories(ConfigurableListableBeanFactory beanFactory) {
+    Set<Class<?>> repositories = new LinkedHashSet<>();
+    for (String beanName : beanFactory.getBeanDefinitionNames()) {
+      BeanDefinition definition = beanFactory.getMergedBeanDefinition(beanName);
+      if (definition.getAttribute(ProxyClassPathBeanDefinitionScanner.PROXY_INTERFACE_ATTRIBUTE)
+              instanceof String beanInterface
+          && JdbiRepositoryFactoryBean.class.getName().equals(definition.getBeanClassName())) {
+        repositories.add(
+            ClassUtils.resolveClassName(beanInterface, beanFactory.getBeanClassLoader()));
+      }
+    }
+    return new ArrayList<>(repositories);
+  }
+
+  private List<String> validate(Class<?> repository, AtomicInteger statements) {
+    List<String> failures = new ArrayList<>();
+    try (Handle handle = jdbi.open()) {
+      // builds and caches the method handlers of the repository
+      RepositorySqlObjects.attach(handle, repository);
+      for (Method method : repository.getMethods()) {
+        if (!isStatement(method) || isTemplated(method)) {
+          continue;
+        }
+        try {
+          validate(handle, repository, method);
+          statements.incrementAndGet();
+        } catch (Exception e) {
+          failures.add(repository.getName() + "." + method.getName() + ": " + e.getMessage());
+        }
+      }
+    } catch (Exception e) {
+      failures.add(repository.getName() + ": " + e.getMessage());
+    }
+    return failures;
+  }
+
+  private void validate(Handle handle, Class<?> repository, Method method) throws Exception {
+    String sql =
+        handle
+            .getConfig(SqlObjects.class)
+            .getSqlLocator()
+            .locate(repository, method, handle.getConfig());
+    try (Query query = handle.createQuery(sql)) {
+      StatementContext context = query.getContext();
+      SqlStatements sqlStatements = context.getConfig(SqlStatements.class);
+      String rendered = sqlStatements.getTemplateEngine().render(sql, context);
+      ParsedSql parsedSql = sqlStatements.getSqlParser().parse(rendered, context);
+      if (prepare && !method.isAnnotationPresent(SqlCall.class)) {
+        try (PreparedStatement statement =
+            handle.getConnection().prepareStatement(parsedSql.getSql())) {
+          // some drivers only check the statement once its metadata is requested
+          statement.getParameterMetaData();
+        }
+      }
+    }
+  }
+
+  private static boolean isStatement(Method method) {
+    return method.isAnnotationPresent(SqlQuery.class)
+        || method.isAnnotationPresent(SqlUpdate.class)
+        || method.isAnnotationPresent(SqlBatch.class)
+        || method.isAnnotationPresent(SqlCall.class);
+  }
+
+  private static boolean isTemplated(Method method) {
+    for (Parameter parameter : method.getParameters()) {
+      for (Annotation annotation : parameter.getAnnotations()) {
+        if (annotation instanceof Define
+            || annotation instanceof DefineList
+            || annotation instanceof BindList) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+}
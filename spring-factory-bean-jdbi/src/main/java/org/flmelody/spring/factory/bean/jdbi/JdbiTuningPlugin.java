@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.jdbi;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import org.flmelody.spring.factory.bean.JdbiProperties;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.spi.JdbiPlugin;
+import org.jdbi.v3.core.statement.ParsedSql;
+import org.jdbi.v3.core.statement.SqlParser;
+import org.jdbi.v3.core.statement.SqlStatements;
+import org.jdbi.v3.core.statement.StatementContext;
+import org.jdbi.v3.core.statement.StatementCustomizer;
+import org.jdbi.v3.core.statement.TemplateEngine;
+import org.springframework.util.ConcurrentLruCache;
+
+/**
+ * Applies {@link JdbiProperties} to a {@link Jdbi}.
+ *
+ * @author esotericman
+ */
+public class JdbiTuningPlugin extends JdbiPlugin.Singleton {
+  private final JdbiProperties properties;
+
+  public JdbiTuningPlugin(JdbiProperties properties) {
+    this.properties = properties;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void customizeJdbi(Jdbi jdbi) {
+    SqlStatements sqlStatements = jdbi.getConfig(SqlStatements.class);
+    if (properties.getSqlParserCacheSize() > 0) {
+      sqlStatements.setSqlParser(
+          new CachingSqlParser(sqlStatements.getSqlParser(), properties.getSqlParserCacheSize()));
+    }
+    if (properties.getTemplateCacheSize() > 0) {
+      sqlStatements.setTemplateEngine(
+          new CachingTemplateEngine(
+              sqlStatements.getTemplateEngine(), properties.getTemplateCacheSize()));
+    }
+    int queryTimeout =
+        properties.getQueryTimeout() != null
+            ? (int) Math.max(1, properties.getQueryTimeout().toSeconds())
+            : 0;
+    if (properties.getFetchSize() > 0
+        || properties.getMaxRows() > 0
+        || queryTimeout > 0
+        || properties.getPoolableStatements() != null) {
+      jdbi.addCustomizer(
+          new TuningCustomizer(
+              properties.getFetchSize(),
+              properties.getMaxRows(),
+              queryTimeout,
+              properties.getPoolableStatements()));
+    }
+  }
+
+  /**
+   * Caches parsed statements by their SQL. The built-in parsers do not depend on the statement
+   * context, which makes the SQL a sufficient key.
+   */
+  private static class CachingSqlParser implements SqlParser {
+    private final SqlParser delegate;
+    private final ConcurrentLruCache<String, ParsedSql> cache;
+    private final ThreadLocal<StatementContext> parsingContext = new ThreadLocal<>();
+
+    CachingSqlParser(SqlParser delegate, int cacheSize) {
+      this.delegate = delegate;
+      this.cache =
+          new ConcurrentLruCache<>(cacheSize, sql -> delegate.parse(sql, parsingContext.get()));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public ParsedSql parse(String sql, StatementContext ctx) {
+      parsingContext.set(ctx);
+      try {
+        return cache.get(sql);
+      } finally {
+        parsingContext.remove();
+      }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String nameParameter(String rawName, StatementContext ctx) {
+      return delegate.nameParameter(rawName, ctx);
+    }
+  }
+
+  /** Caches rendered statements by their template and defined attributes. */
+  private static class CachingTemplateEngine implements TemplateEngine {
+    private final ConcurrentLruCache<TemplateKey, String> cache;
+    private final ThreadLocal<StatementContext> renderingContext = new ThreadLocal<>();
+
+    CachingTemplateEngine(TemplateEngine delegate, int cacheSize) {
+      this.cache =
+          new ConcurrentLruCache<>(
+              cacheSize, key -> delegate.render(key.template(), renderingContext.get()));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String render(String template, StatementContext ctx) {
+      renderingContext.set(ctx);
+      try {
+        return cache.get(new TemplateKey(template, new HashMap<>(ctx.getAttributes())));
+      } finally {
+        renderingContext.remove();
+      }
+    }
+
+    private record TemplateKey(String template, Map<String, Object> attributes) {}
+  }
+
+  private static class TuningCustomizer implements StatementCustomizer {
+    private final int fetchSize;
+    private final int maxRows;
+    private final int queryTimeout;
+    private final Boolean poolable;
+
+    TuningCustomizer(int fetchSize, int maxRows, int queryTimeout, Boolean poolable) {
+      this.fetchSize = fetchSize;
+      this.maxRows = maxRows;
+      this.queryTimeout = queryTimeout;
+      this.poolable = poolable;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void beforeExecution(PreparedStatement stmt, StatementContext ctx) throws SQLException {
+      if (fetchSize > 0) {
+        stmt.setFetchSize(fetchSize);
+      }
+      if (maxRows > 0) {
+        stmt.setMaxRows(maxRows);
+      }
+      if (queryTimeout > 0) {
+        stmt.setQueryTimeout(queryTimeout);
+      }
+      if (poolable != null) {
+        stmt.setPoolable(poolable);
+      }
+    }
+  }
+}
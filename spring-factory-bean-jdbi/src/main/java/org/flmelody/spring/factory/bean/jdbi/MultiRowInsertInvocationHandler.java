@@ -0,0 +1,618 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.jdbi;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import org.flmelody.spring.factory.bean.JdbiProperties;
+import org.flmelody.spring.factory.bean.JdbiUnitOfWork;
+import org.flmelody.spring.factory.bean.MultiRowInsert;
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.statement.Update;
+import org.jdbi.v3.spring5.JdbiUtil;
+import org.jdbi.v3.sqlobject.customizer.Bind;
+import org.jdbi.v3.sqlobject.customizer.BindBean;
+import org.jdbi.v3.sqlobject.customizer.SqlStatementCustomizingAnnotation;
+import org.jdbi.v3.sqlobject.statement.GetGeneratedKeys;
+import org.jdbi.v3.sqlobject.statement.SqlBatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.ObjectUtils;
+import org.springframework.util.StringUtils;
+
+/**
+ * Executes the {@link MultiRowInsert} batch inserts of a repository as chunked multi-row inserts.
+ * The chunks run in the extension context of the method, with the customizers of its type and
+ * itself, as the JDBC batch of the method would.
+ *
+ * @author esotericman
+ */
+public class MultiRowInsertInvocationHandler<T> extends RepositoryInvocationHandler<T> {
+  private static final Logger logger =
+      LoggerFactory.getLogger(MultiRowInsertInvocationHandler.class);
+  private static final String VALUES = "values";
+  private final Jdbi jdbi;
+  private final Map<Method, MultiRowStatement> statements = new HashMap<>();
+  private volatile int databaseMaxParameters;
+
+  public MultiRowInsertInvocationHandler(
+      Class<T> repositoryInterface, T target, Jdbi jdbi, JdbiProperties.Batch batch) {
+    super(repositoryInterface, target);
+    this.jdbi = jdbi;
+    MultiRowInsert repositoryInsert = repositoryInterface.getAnnotation(MultiRowInsert.class);
+    for (Method method : repositoryInterface.getMethods()) {
+      MultiRowInsert multiRowInsert = method.getAnnotation(MultiRowInsert.class);
+      if (multiRowInsert == null) {
+        multiRowInsert = repositoryInsert;
+      }
+      if (multiRowInsert == null || !method.isAnnotationPresent(SqlBatch.class)) {
+        continue;
+      }
+      int rowsPerStatement =
+          multiRowInsert.rowsPerStatement() > 0
+              ? multiRowInsert.rowsPerStatement()
+              : batch.getRowsPerStatement();
+      SqlObjectStatement statement =
+          new SqlObjectStatement(
+              RepositorySqlObjects.sqlObjectType(repositoryInterface),
+              RepositorySqlObjects.sqlObjectMethod(repositoryInterface, method));
+      String sql = statement.locate(statement.configure(jdbi.getConfig()));
+      statements.put(
+          method,
+          new MultiRowStatement(
+              method, statement, sql, rowsPerStatement, multiRowInsert.maxParameters()));
+    }
+  }
+
+  /**
+   * Whether the repository declares any batch insert to rewrite.
+   *
+   * @param repositoryInterface repository interface
+   * @return supported or not
+   */
+  public static boolean isMultiRowInsert(Class<?> repositoryInterface) {
+    boolean repositoryInsert = repositoryInterface.isAnnotationPresent(MultiRowInsert.class);
+    for (Method method : repositoryInterface.getMethods()) {
+      if (method.isAnnotationPresent(SqlBatch.class)
+          && (repositoryInsert || method.isAnnotationPresent(MultiRowInsert.class))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  protected Object doInvoke(Method method, Object[] args) throws Throwable {
+    MultiRowStatement statement = statements.get(method);
+    if (statement == null) {
+      return invokeTarget(target, method, args);
+    }
+    int[] counts;
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      Handle handle = JdbiUtil.getHandle(jdbi);
+      try {
+        counts = insert(handle, statement, args);
+      } finally {
+        JdbiUtil.closeIfNeeded(handle);
+      }
+    } else {
+      Handle handle = JdbiUnitOfWork.currentHandle(jdbi);
+      if (handle != null) {
+        counts = insert(handle, statement, args);
+      } else {
+        try (Handle opened = jdbi.open()) {
+          counts = insert(opened, statement, args);
+        }
+      }
+    }
+    Class<?> returnType = method.getReturnType();
+    if (returnType == boolean[].class) {
+      boolean[] inserted = new boolean[counts.length];
+      for (int i = 0; i < counts.length; i++) {
+        inserted[i] = counts[i] != 0;
+      }
+      return inserted;
+    }
+    return returnType == void.class ? null : counts;
+  }
+
+  private int[] insert(Handle handle, MultiRowStatement statement, Object[] args)
+      throws Exception {
+    List<List<?>> rows = statement.rows(args);
+    int rowCount = rows.isEmpty() ? 0 : Integer.MAX_VALUE;
+    for (List<?> row : rows) {
+      rowCount = Math.min(rowCount, row.size());
+    }
+    int[] counts = new int[rowCount];
+    if (rowCount == 0) {
+      return counts;
+    }
+    int rowsPerChunk = statement.rowsPerChunk(maxParameters(handle, statement));
+    statement.sqlObjectStatement.call(
+        handle,
+        () -> {
+          if (counts.length <= rowsPerChunk || handle.isInTransaction()) {
+            executeChunks(handle, statement, args, rows, counts, rowsPerChunk);
+          } else {
+            // all or none of the rows, as with a JDBC batch
+            handle.useTransaction(
+                transactional ->
+                    executeChunks(transactional, statement, args, rows, counts, rowsPerChunk));
+          }
+          return null;
+        });
+    return counts;
+  }
+
+  private static void executeChunks(
+      Handle handle,
+      MultiRowStatement statement,
+      Object[] args,
+      List<List<?>> rows,
+      int[] counts,
+      int rowsPerChunk)
+      throws SQLException {
+    for (int from = 0; from < counts.length; from += rowsPerChunk) {
+      int chunkRows = Math.min(rowsPerChunk, counts.length - from);
+      try (Update update = handle.createUpdate(statement.render(chunkRows, rowsPerChunk))) {
+        statement.sqlObjectStatement.customize(update);
+        statement.bind(update, args, rows, from, chunkRows);
+        int inserted = update.execute();
+        // the rows of a chunk share one count, spread only when it is unambiguous
+        Arrays.fill(
+            counts, from, from + chunkRows, inserted == chunkRows ? 1 : Statement.SUCCESS_NO_INFO);
+      }
+    }
+  }
+
+  private int maxParameters(Handle handle, MultiRowStatement statement) throws SQLException {
+    if (statement.maxParameters > 0) {
+      return statement.maxParameters;
+    }
+    int maxParameters = databaseMaxParameters;
+    if (maxParameters == 0) {
+      maxParameters =
+          maxParameters(handle.getConnection().getMetaData().getDatabaseProductName());
+      databaseMaxParameters = maxParameters;
+    }
+    return maxParameters;
+  }
+
+  private static int maxParameters(String databaseProductName) {
+    String product = databaseProductName.toLowerCase(Locale.ROOT);
+    if (product.contains("sql server")) {
+      return 2000;
+    }
+    if (product.contains("postgres") || product.contains("db2")) {
+      return 32767;
+    }
+    if (product.contains("mysql")
+        || product.contains("mariadb")
+        || product.contains("oracle")
+        || product.contains("h2")
+        || product.contains("hsql")) {
+      return 65535;
+    }
+    // SQLite before 3.32, and a safe bet for anything else
+    return 999;
+  }
+
+  /**
+   * A single-row insert split around its {@code VALUES} tuple and the parameters in it. Quoted
+   * literals and identifiers are skipped when the statement is split, and statements it cannot
+   * split with certainty, with comments, backslash escapes or anything after the tuple such as
+   * {@code ON CONFLICT} or {@code RETURNING}, are rejected.
+   */
+  private static class MultiRowStatement {
+    private final SqlObjectStatement sqlObjectStatement;
+    private final String prefix;
+    private final String suffix;
+    private final List<String> fragments = new ArrayList<>();
+    private final List<ParameterReference> references = new ArrayList<>();
+    private final List<BatchParameter> parameters = new ArrayList<>();
+    private final int rowsPerStatement;
+    private final int maxParameters;
+    private volatile RenderedChunk fullChunk;
+
+    MultiRowStatement(
+        Method method,
+        SqlObjectStatement sqlObjectStatement,
+        String sql,
+        int rowsPerStatement,
+        int maxParameters) {
+      this.sqlObjectStatement = sqlObjectStatement;
+      this.rowsPerStatement = Math.max(1, rowsPerStatement);
+      this.maxParameters = maxParameters;
+      Class<?> returnType = method.getReturnType();
+      if (returnType != void.class && returnType != int[].class && returnType != boolean[].class) {
+        throw new IllegalStateException(
+            "Unsupported return type " + returnType.getName() + " of @MultiRowInsert " + method);
+      }
+      if (AnnotatedElementUtils.hasAnnotation(method, GetGeneratedKeys.class)) {
+        throw new IllegalStateException("@GetGeneratedKeys is not supported on " + method);
+      }
+      int values = valuesKeyword(method, sql);
+      if (!sql.stripLeading().regionMatches(true, 0, "insert", 0, 6) || values < 0) {
+        throw new IllegalStateException("Not an INSERT ... VALUES statement: " + method);
+      }
+      int open = skipWhitespace(sql, values + VALUES.length());
+      int close =
+          open < sql.length() && sql.charAt(open) == '('
+              ? closingParenthesis(method, sql, open)
+              : -1;
+      if (close < 0) {
+        throw new IllegalStateException("Expected a VALUES tuple in " + method);
+      }
+      this.prefix = sql.substring(0, open);
+      this.suffix = sql.substring(close + 1);
+      String rest = suffix.strip();
+      if (!rest.isEmpty() && !rest.equals(";")) {
+        throw new IllegalStateException(
+            "Expected a single VALUES tuple ending the statement in " + method);
+      }
+      if (hasParameter(method, prefix)) {
+        throw new IllegalStateException("Parameters outside of the VALUES tuple in " + method);
+      }
+      Parameter[] methodParameters = method.getParameters();
+      for (int i = 0; i < methodParameters.length; i++) {
+        parameters.add(batchParameter(method, methodParameters[i], i));
+      }
+      if (parameters.stream().noneMatch(BatchParameter::iterable)) {
+        throw new IllegalStateException("No iterable or array argument of " + method);
+      }
+      parseTuple(method, sql, open, close);
+    }
+
+    int rowsPerChunk(int maxParameters) {
+      int parametersPerRow = Math.max(1, references.size());
+      return Math.max(1, Math.min(rowsPerStatement, maxParameters / parametersPerRow));
+    }
+
+    String render(int rows, int rowsPerChunk) {
+      RenderedChunk chunk = fullChunk;
+      if (chunk != null && chunk.rows() == rows) {
+        return chunk.sql();
+      }
+      StringBuilder sql = new StringBuilder(prefix);
+      for (int row = 0; row < rows; row++) {
+        if (row > 0) {
+          sql.append(", ");
+        }
+        for (int i = 0; i < references.size(); i++) {
+          ParameterReference reference = references.get(i);
+          sql.append(fragments.get(i)).append(':').append(reference.head());
+          if (reference.perRow()) {
+            sql.append("_r").append(row);
+          }
+          sql.append(reference.tail());
+        }
+        sql.append(fragments.get(references.size()));
+      }
+      String rendered = sql.append(suffix).toString();
+      if (rows == rowsPerChunk) {
+        // keeps the statement of full chunks, remainders differ from call to call
+        fullChunk = new RenderedChunk(rows, rendered);
+      }
+      return rendered;
+    }
+
+    List<List<?>> rows(Object[] args) {
+      List<List<?>> rows = new ArrayList<>();
+      for (BatchParameter parameter : parameters) {
+        if (parameter.iterable()) {
+          rows.add(toList(args[parameter.index()]));
+        }
+      }
+      return rows;
+    }
+
+    void bind(Update update, Object[] args, List<List<?>> rows, int from, int chunkRows) {
+      for (int row = 0; row < chunkRows; row++) {
+        int iterable = 0;
+        for (BatchParameter parameter : parameters) {
+          Object value =
+              parameter.iterable() ? rows.get(iterable++).get(from + row) : args[parameter.index()];
+          if (!parameter.referenced()) {
+            continue;
+          }
+          String name = parameter.name() + "_r" + row;
+          if (parameter.bean()) {
+            update.bindBean(name, value);
+          } else {
+            update.bind(name, value);
+          }
+        }
+      }
+    }
+
+    private void parseTuple(Method method, String sql, int open, int close) {
+      int fragmentStart = open;
+      int i = open;
+      while (i <= close) {
+        char c = sql.charAt(i);
+        if (isQuote(c)) {
+          i = skipQuoted(method, sql, i);
+        } else if (c == ':' && i + 1 <= close && sql.charAt(i + 1) == ':') {
+          // cast operator
+          i += 2;
+        } else if (c == ':' && i + 1 <= close && isNameStart(sql.charAt(i + 1))) {
+          int end = i + 1;
+          while (end <= close && isNamePart(sql.charAt(end))) {
+            end++;
+          }
+          fragments.add(sql.substring(fragmentStart, i));
+          references.add(reference(method, sql.substring(i + 1, end)));
+          fragmentStart = end;
+          i = end;
+        } else if (c == '?') {
+          throw new IllegalStateException("Positional parameters are not supported in " + method);
+        } else {
+          i++;
+        }
+      }
+      fragments.add(sql.substring(fragmentStart, close + 1));
+    }
+
+    private ParameterReference reference(Method method, String token) {
+      for (BatchParameter parameter : parameters) {
+        if (!parameter.bean() && parameter.name().equals(token)) {
+          parameter.markReferenced();
+          return new ParameterReference(parameter.name(), "", true);
+        }
+      }
+      for (BatchParameter parameter : parameters) {
+        if (parameter.bean()
+            && !parameter.name().isEmpty()
+            && token.startsWith(parameter.name() + ".")) {
+          parameter.markReferenced();
+          return new ParameterReference(
+              parameter.name(), token.substring(parameter.name().length()), true);
+        }
+      }
+      for (BatchParameter parameter : parameters) {
+        if (parameter.bean() && parameter.name().isEmpty()) {
+          parameter.markReferenced();
+          return new ParameterReference("", "." + token, true);
+        }
+      }
+      // bound once for the statement, by a customizer such as @Timestamped
+      return new ParameterReference(token, "", false);
+    }
+
+    private static BatchParameter batchParameter(Method method, Parameter parameter, int index) {
+      Class<?> type = parameter.getType();
+      boolean iterable =
+          Iterable.class.isAssignableFrom(type)
+              || Iterator.class.isAssignableFrom(type)
+              || type.isArray();
+      Bind bind = parameter.getAnnotation(Bind.class);
+      if (bind != null) {
+        String name = StringUtils.hasText(bind.value()) ? bind.value() : parameterName(parameter);
+        return new BatchParameter(index, checkName(method, name), false, iterable);
+      }
+      BindBean bindBean = parameter.getAnnotation(BindBean.class);
+      if (bindBean != null) {
+        return new BatchParameter(index, bindBean.value(), true, iterable);
+      }
+      for (Annotation annotation : parameter.getAnnotations()) {
+        Class<? extends Annotation> annotationType = annotation.annotationType();
+        if (annotationType.isAnnotationPresent(SqlStatementCustomizingAnnotation.class)) {
+          throw new IllegalStateException(
+              "@" + annotationType.getSimpleName() + " is not supported on " + method);
+        }
+      }
+      String name = checkName(method, parameterName(parameter));
+      return new BatchParameter(index, name, false, iterable);
+    }
+
+    private static String checkName(Method method, String name) {
+      if (name == null) {
+        throw new IllegalStateException(
+            "Unnamed parameter of " + method + ", use @Bind or compile with -parameters");
+      }
+      return name;
+    }
+
+    private static String parameterName(Parameter parameter) {
+      return parameter.isNamePresent() ? parameter.getName() : null;
+    }
+
+    /** Return the start of the {@code VALUES} keyword, rejecting comments on the way. */
+    private static int valuesKeyword(Method method, String sql) {
+      int values = -1;
+      int i = 0;
+      while (i < sql.length()) {
+        char c = sql.charAt(i);
+        if (isQuote(c)) {
+          i = skipQuoted(method, sql, i);
+          continue;
+        }
+        if (sql.startsWith("--", i) || sql.startsWith("/*", i)) {
+          throw new IllegalStateException("Comments are not supported in " + method);
+        }
+        if (values < 0
+            && sql.regionMatches(true, i, VALUES, 0, VALUES.length())
+            && (i == 0 || !isNamePart(sql.charAt(i - 1)))
+            && (i + VALUES.length() == sql.length()
+                || !isNamePart(sql.charAt(i + VALUES.length())))) {
+          values = i;
+        }
+        i++;
+      }
+      return values;
+    }
+
+    private static boolean hasParameter(Method method, String sql) {
+      int i = 0;
+      while (i < sql.length()) {
+        char c = sql.charAt(i);
+        if (isQuote(c)) {
+          i = skipQuoted(method, sql, i);
+        } else if (c == ':' && i + 1 < sql.length() && sql.charAt(i + 1) == ':') {
+          i += 2;
+        } else if ((c == ':' && i + 1 < sql.length() && isNameStart(sql.charAt(i + 1)))
+            || c == '?') {
+          return true;
+        } else {
+          i++;
+        }
+      }
+      return false;
+    }
+
+    private static int closingParenthesis(Method method, String sql, int open) {
+      int depth = 0;
+      int i = open;
+      while (i < sql.length()) {
+        char c = sql.charAt(i);
+        if (isQuote(c)) {
+          i = skipQuoted(method, sql, i);
+          continue;
+        }
+        if (c == '(') {
+          depth++;
+        } else if (c == ')' && --depth == 0) {
+          return i;
+        }
+        i++;
+      }
+      return -1;
+    }
+
+    /** Return the end of the quoted literal or identifier at {@code start}, exclusive. */
+    private static int skipQuoted(Method method, String sql, int start) {
+      char quote = sql.charAt(start);
+      int i = start + 1;
+      while (i < sql.length()) {
+        char c = sql.charAt(i);
+        if (c == '\\') {
+          // an escape in MySQL, a plain character in standard SQL
+          throw new IllegalStateException("Backslashes in quotes are not supported in " + method);
+        }
+        if (c == quote) {
+          if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+            // a doubled quote stands for itself
+            i += 2;
+            continue;
+          }
+          return i + 1;
+        }
+        i++;
+      }
+      throw new IllegalStateException("Unterminated quote in " + method);
+    }
+
+    private static int skipWhitespace(String sql, int start) {
+      int i = start;
+      while (i < sql.length() && Character.isWhitespace(sql.charAt(i))) {
+        i++;
+      }
+      return i;
+    }
+
+    private static boolean isQuote(char c) {
+      return c == '\'' || c == '"' || c == '`';
+    }
+
+    private static boolean isNameStart(char c) {
+      return Character.isLetter(c) || c == '_';
+    }
+
+    private static boolean isNamePart(char c) {
+      return Character.isLetterOrDigit(c) || c == '_' || c == '.';
+    }
+
+    private static List<?> toList(Object value) {
+      if (value == null) {
+        throw new IllegalArgumentException("Batch argument must not be null");
+      }
+      if (value instanceof List<?> list) {
+        return list;
+      }
+      List<Object> list = new ArrayList<>();
+      if (value instanceof Iterable<?> iterable) {
+        iterable.forEach(list::add);
+      } else if (value instanceof Iterator<?> iterator) {
+        iterator.forEachRemaining(list::add);
+      } else {
+        list.addAll(Arrays.asList(ObjectUtils.toObjectArray(value)));
+      }
+      return list;
+    }
+  }
+
+  /**
+   * A parameter of the tuple, bound to {@code head + "_r" + row + tail} when it takes the value of
+   * each row, to {@code head + tail} otherwise.
+   */
+  private record ParameterReference(String head, String tail, boolean perRow) {}
+
+  private record RenderedChunk(int rows, String sql) {}
+
+  private static class BatchParameter {
+    private final int index;
+    private final String name;
+    private final boolean bean;
+    private final boolean iterable;
+    private boolean referenced;
+
+    BatchParameter(int index, String name, boolean bean, boolean iterable) {
+      this.index = index;
+      this.name = name;
+      this.bean = bean;
+      this.iterable = iterable;
+    }
+
+    int index() {
+      return index;
+    }
+
+    String name() {
+      return name;
+    }
+
+    boolean bean() {
+      return bean;
+    }
+
+    boolean iterable() {
+      return iterable;
+    }
+
+    boolean referenced() {
+      return referenced;
+    }
+
+    void markReferenced() {
+      this.referenced = true;
+    }
+  }
+}
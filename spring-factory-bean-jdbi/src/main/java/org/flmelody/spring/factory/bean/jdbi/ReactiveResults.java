@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.jdbi;
+
+import java.util.concurrent.Callable;
+import java.util.stream.Stream;
+import org.flmelody.spring.factory.bean.JdbiAsyncExecutor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Reactor adapters of {@link AsyncInvocationHandler} and {@link RepositorySqlObjects}, only loaded
+ * when Reactor is present.
+ *
+ * @author esotericman
+ */
+final class ReactiveResults {
+
+  private ReactiveResults() {}
+
+  static Mono<Object> mono(JdbiAsyncExecutor asyncExecutor, Callable<Object> task) {
+    return Mono.fromFuture(() -> asyncExecutor.submit(task));
+  }
+
+  static Flux<Object> flux(JdbiAsyncExecutor asyncExecutor, Callable<Object> query) {
+    // the permit is held until the flux terminates, while the rows are pulled on demand on another
+    // scheduler than the pool of the executor, whose threads only run tasks holding a permit
+    return Mono.fromFuture(asyncExecutor::acquire)
+        .doOnDiscard(JdbiAsyncExecutor.Permit.class, JdbiAsyncExecutor.Permit::close)
+        .flatMapMany(
+            permit ->
+                Flux.using(() -> permit, p -> rows(query), JdbiAsyncExecutor.Permit::close)
+                    .subscribeOn(Schedulers.boundedElastic()));
+  }
+
+  static Mono<Object> just(Object result) {
+    return Mono.justOrEmpty(result);
+  }
+
+  static Flux<Object> fromStream(Stream<?> rows) {
+    return Flux.fromStream(rows);
+  }
+
+  static Object get(Object mono) {
+    return ((Mono<?>) mono).block();
+  }
+
+  private static Flux<Object> rows(Callable<Object> query) {
+    try {
+      return Flux.from((Flux<?>) query.call());
+    } catch (Exception e) {
+      return Flux.error(e);
+    }
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.jdbi;
+
+import java.lang.reflect.Method;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.flmelody.spring.factory.bean.JdbiReplicaRouter;
+import org.flmelody.spring.factory.bean.JdbiUnitOfWork;
+import org.flmelody.spring.factory.bean.ReadOnly;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.sqlobject.statement.SqlQuery;
+import org.jdbi.v3.sqlobject.transaction.Transaction;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Routes the reads of a repository to the replicas of a {@link JdbiReplicaRouter}.
+ *
+ * @author esotericman
+ */
+public class ReplicaRoutingInvocationHandler<T> extends RepositoryInvocationHandler<T> {
+  private final Jdbi jdbi;
+  private final JdbiReplicaRouter replicaRouter;
+  private final List<T> replicaRepositories;
+  private final Set<Method> readMethods = new HashSet<>();
+
+  public ReplicaRoutingInvocationHandler(
+      Class<T> repositoryInterface, T target, Jdbi jdbi, JdbiReplicaRouter replicaRouter) {
+    super(repositoryInterface, target);
+    this.jdbi = jdbi;
+    this.replicaRouter = replicaRouter;
+    this.replicaRepositories =
+        replicaRouter.getReplicas().stream()
+            .map(replica -> RepositorySqlObjects.onDemand(replica, repositoryInterface))
+            .toList();
+    for (Method method : repositoryInterface.getMethods()) {
+      if (isRead(method)) {
+        readMethods.add(method);
+      }
+    }
+  }
+
+  /**
+   * Whether the repository has methods to route.
+   *
+   * @param repositoryInterface repository interface
+   * @return supported or not
+   */
+  public static boolean isRouted(Class<?> repositoryInterface) {
+    for (Method method : repositoryInterface.getMethods()) {
+      if (isRead(method)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isRead(Method method) {
+    if (method.isAnnotationPresent(ReadOnly.class)) {
+      return true;
+    }
+    // a transaction of the method itself may write as well
+    return method.isAnnotationPresent(SqlQuery.class)
+        && !method.isAnnotationPresent(Transaction.class);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  protected Object doInvoke(Method method, Object[] args) throws Throwable {
+    if (!readMethods.contains(method) || isBoundToPrimary()) {
+      return invokeTarget(target, method, args);
+    }
+    int replica = replicaRouter.acquire();
+    try {
+      return invokeTarget(replicaRepositories.get(replica), method, args);
+    } finally {
+      replicaRouter.release(replica);
+    }
+  }
+
+  private boolean isBoundToPrimary() {
+    // reads of a write transaction must see its own changes
+    if (TransactionSynchronizationManager.isActualTransactionActive()
+        && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+      return true;
+    }
+    return JdbiUnitOfWork.currentHandle(jdbi) != null;
+  }
+}
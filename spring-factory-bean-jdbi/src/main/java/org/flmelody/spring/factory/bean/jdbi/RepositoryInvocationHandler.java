@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.jdbi;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * Base of the proxies decorating the repository produced by {@code JdbiRepositoryFactoryBean}.
+ *
+ * @author esotericman
+ */
+public abstract class RepositoryInvocationHandler<T> implements InvocationHandler {
+  protected final Class<T> repositoryInterface;
+  protected final T target;
+
+  protected RepositoryInvocationHandler(Class<T> repositoryInterface, T target) {
+    this.repositoryInterface = repositoryInterface;
+    this.target = target;
+  }
+
+  /**
+   * Create the decorated repository.
+   *
+   * @return proxy of repository interface
+   */
+  public T newProxy() {
+    return repositoryInterface.cast(
+        Proxy.newProxyInstance(
+            repositoryInterface.getClassLoader(), new Class<?>[] {repositoryInterface}, this));
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    if (method.getDeclaringClass() == Object.class) {
+      return switch (method.getName()) {
+        case "equals" -> proxy == args[0];
+        case "hashCode" -> System.identityHashCode(proxy);
+        case "toString" -> repositoryInterface.getName() + "@" + getClass().getSimpleName();
+        default -> invokeTarget(target, method, args);
+      };
+    }
+    return doInvoke(method, args);
+  }
+
+  /**
+   * Handle a repository method.
+   *
+   * @param method repository method
+   * @param args arguments, may be null
+   * @return result
+   * @throws Throwable exception of the repository method
+   */
+  protected abstract Object doInvoke(Method method, Object[] args) throws Throwable;
+
+  /**
+   * Invoke the method on the given repository, unwrapping reflection exceptions.
+   *
+   * @param repository repository
+   * @param method method
+   * @param args arguments
+   * @return result
+   * @throws Throwable exception of the repository method
+   */
+  protected static Object invokeTarget(Object repository, Method method, Object[] args)
+      throws Throwable {
+    try {
+      return method.invoke(repository, args);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+}
@@ -0,0 +1,436 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.jdbi;
+
+import jakarta.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+import org.flmelody.spring.factory.bean.jdbi.AsyncInvocationHandler.ReturnKind;
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.sqlobject.transaction.Transaction;
+import org.springframework.asm.ClassReader;
+import org.springframework.asm.ClassVisitor;
+import org.springframework.asm.ClassWriter;
+import org.springframework.asm.FieldVisitor;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.asm.SpringAsmInfo;
+import org.springframework.asm.Type;
+import org.springframework.core.ResolvableType;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Creates the SQL objects behind repositories. JDBI rejects statements returning {@code
+ * CompletableFuture}, {@code Mono} or {@code Flux}, so a repository declaring them is served by a
+ * synchronous counterpart: the same interface, defined again by a child class loader, whose
+ * asynchronous statements return their result type, or a {@code Stream} for a {@code Flux}. JDBI
+ * attaches the counterpart with all its annotations, and the repository wraps the results of its
+ * methods as they are returned, already completed; {@link AsyncInvocationHandler} moves the calls
+ * to another thread.
+ *
+ * @author esotericman
+ */
+public final class RepositorySqlObjects {
+  private static final ClassValue<Optional<Counterpart>> counterparts =
+      new ClassValue<>() {
+        @Override
+        protected Optional<Counterpart> computeValue(Class<?> repositoryInterface) {
+          return Optional.ofNullable(Counterpart.create(repositoryInterface));
+        }
+      };
+
+  private RepositorySqlObjects() {}
+
+  /**
+   * Create an on-demand repository, from its generated implementation if there is one.
+   *
+   * @param jdbi jdbi
+   * @param repositoryInterface repository interface
+   * @param <T> repository type
+   * @return repository
+   */
+  public static <T> T onDemand(Jdbi jdbi, Class<T> repositoryInterface) {
+    Counterpart counterpart = counterparts.get(repositoryInterface).orElse(null);
+    if (counterpart == null) {
+      return GeneratedSqlObjects.onDemand(jdbi, repositoryInterface);
+    }
+    return counterpart.adapt(repositoryInterface, jdbi.onDemand(counterpart.sqlObjectType), jdbi);
+  }
+
+  /**
+   * Attach a repository to a handle.
+   *
+   * @param handle handle
+   * @param repositoryInterface repository interface
+   * @param <T> repository type
+   * @return repository
+   */
+  public static <T> T attach(Handle handle, Class<T> repositoryInterface) {
+    Counterpart counterpart = counterparts.get(repositoryInterface).orElse(null);
+    if (counterpart == null) {
+      return handle.attach(repositoryInterface);
+    }
+    return counterpart.adapt(repositoryInterface, handle.attach(counterpart.sqlObjectType), null);
+  }
+
+  /**
+   * Return the type JDBI sees for a repository, its synchronous counterpart if it has one.
+   *
+   * @param repositoryInterface repository interface
+   * @return SQL object type
+   */
+  public static Class<?> sqlObjectType(Class<?> repositoryInterface) {
+    return counterparts
+        .get(repositoryInterface)
+        .<Class<?>>map(counterpart -> counterpart.sqlObjectType)
+        .orElse(repositoryInterface);
+  }
+
+  /**
+   * Return the method JDBI sees for a method of a repository.
+   *
+   * @param repositoryInterface repository interface
+   * @param method abstract method of the repository
+   * @return SQL object method
+   */
+  static Method sqlObjectMethod(Class<?> repositoryInterface, Method method) {
+    return counterparts
+        .get(repositoryInterface)
+        .map(counterpart -> counterpart.methods.get(method))
+        .orElse(method);
+  }
+
+  /** The synchronous counterpart of a repository and the mapping of its methods. */
+  private static final class Counterpart {
+    private final Class<?> sqlObjectType;
+    private final Map<Method, Method> methods = new HashMap<>();
+    private final Map<Method, ReturnKind> returnKinds = new HashMap<>();
+
+    private Counterpart(Class<?> repositoryInterface, Map<String, ReturnKind> rewritten) {
+      this.sqlObjectType = define(repositoryInterface, rewritten);
+      for (Method method : repositoryInterface.getMethods()) {
+        if (method.isDefault() || Modifier.isStatic(method.getModifiers())) {
+          continue;
+        }
+        ReturnKind returnKind = AsyncInvocationHandler.returnKind(method);
+        if (returnKind != null) {
+          returnKinds.put(method, returnKind);
+        }
+        try {
+          Method sqlObjectMethod =
+              sqlObjectType.getMethod(method.getName(), method.getParameterTypes());
+          ReflectionUtils.makeAccessible(sqlObjectMethod);
+          methods.put(method, sqlObjectMethod);
+        } catch (NoSuchMethodException e) {
+          throw new IllegalStateException("No counterpart of " + method, e);
+        }
+      }
+    }
+
+    static Counterpart create(Class<?> repositoryInterface) {
+      Map<String, ReturnKind> rewritten = new HashMap<>();
+      for (Method method : repositoryInterface.getMethods()) {
+        ReturnKind returnKind = AsyncInvocationHandler.returnKind(method);
+        if (returnKind == null) {
+          continue;
+        }
+        if (method.getDeclaringClass() != repositoryInterface) {
+          throw new IllegalStateException(
+              "Asynchronous statements must be declared by "
+                  + repositoryInterface.getName()
+                  + " itself: "
+                  + method);
+        }
+        rewritten.put(method.getName() + Type.getMethodDescriptor(method), returnKind);
+      }
+      if (rewritten.isEmpty()) {
+        return null;
+      }
+      for (Method method : repositoryInterface.getMethods()) {
+        if (method.isDefault() && method.isAnnotationPresent(Transaction.class)) {
+          // default methods are run by the repository, which the counterpart knows nothing of
+          throw new IllegalStateException(
+              "@Transaction default methods are not supported along asynchronous statements: "
+                  + method);
+        }
+      }
+      return new Counterpart(repositoryInterface, rewritten);
+    }
+
+    <T> T adapt(Class<T> repositoryInterface, Object sqlObject, @Nullable Jdbi jdbi) {
+      return repositoryInterface.cast(
+          Proxy.newProxyInstance(
+              repositoryInterface.getClassLoader(),
+              new Class<?>[] {repositoryInterface},
+              new CounterpartInvocationHandler(this, repositoryInterface, sqlObject, jdbi)));
+    }
+
+    private static Class<?> define(
+        Class<?> repositoryInterface, Map<String, ReturnKind> rewritten) {
+      String className = repositoryInterface.getName();
+      ClassLoader classLoader = repositoryInterface.getClassLoader();
+      String resourceName =
+          ClassUtils.convertClassNameToResourcePath(className) + ClassUtils.CLASS_FILE_SUFFIX;
+      byte[] classFile;
+      try (InputStream in = classLoader.getResourceAsStream(resourceName)) {
+        if (in == null) {
+          throw new IllegalStateException("Class file of " + className + " not found");
+        }
+        classFile = in.readAllBytes();
+      } catch (IOException e) {
+        throw new IllegalStateException("Unable to read the class file of " + className, e);
+      }
+      Map<String, Method> methods = new HashMap<>();
+      for (Method method : repositoryInterface.getMethods()) {
+        methods.put(method.getName() + Type.getMethodDescriptor(method), method);
+      }
+      ClassWriter classWriter = new ClassWriter(0);
+      new ClassReader(classFile)
+          .accept(
+              new CounterpartVisitor(classWriter, repositoryInterface, methods, rewritten),
+              ClassReader.SKIP_CODE);
+      CounterpartClassLoader counterpartClassLoader =
+          new CounterpartClassLoader(classLoader, repositoryInterface, classWriter.toByteArray());
+      try {
+        return counterpartClassLoader.loadClass(className);
+      } catch (ClassNotFoundException | LinkageError e) {
+        throw new IllegalStateException("Unable to define the counterpart of " + className, e);
+      }
+    }
+  }
+
+  /**
+   * Copies a repository interface without its fields, default, static and private methods, and
+   * with the return types of its asynchronous statements replaced. Nest and inner class attributes
+   * are dropped, as they would name classes of the original loader.
+   */
+  private static class CounterpartVisitor extends ClassVisitor {
+    private final Class<?> repositoryInterface;
+    private final Map<String, Method> methods;
+    private final Map<String, ReturnKind> rewritten;
+
+    CounterpartVisitor(
+        ClassVisitor classVisitor,
+        Class<?> repositoryInterface,
+        Map<String, Method> methods,
+        Map<String, ReturnKind> rewritten) {
+      super(SpringAsmInfo.ASM_VERSION, classVisitor);
+      this.repositoryInterface = repositoryInterface;
+      this.methods = methods;
+      this.rewritten = rewritten;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public MethodVisitor visitMethod(
+        int access, String name, String descriptor, String signature, String[] exceptions) {
+      if ((access & Opcodes.ACC_ABSTRACT) == 0) {
+        return null;
+      }
+      ReturnKind returnKind = rewritten.get(name + descriptor);
+      if (returnKind == null) {
+        return super.visitMethod(access, name, descriptor, signature, exceptions);
+      }
+      Class<?> resultType =
+          ResolvableType.forMethodReturnType(methods.get(name + descriptor), repositoryInterface)
+              .getGeneric(0)
+              .resolve(Object.class);
+      Type returnType =
+          returnKind == ReturnKind.FLUX
+              ? Type.getType(Stream.class)
+              : resultType == Void.class ? Type.VOID_TYPE : Type.getType(resultType);
+      return super.visitMethod(
+          access,
+          name,
+          Type.getMethodDescriptor(returnType, Type.getArgumentTypes(descriptor)),
+          rewriteSignature(signature, returnKind, returnType == Type.VOID_TYPE),
+          exceptions);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public FieldVisitor visitField(
+        int access, String name, String descriptor, String signature, Object value) {
+      return null;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void visitNestHost(String nestHost) {}
+
+    /** {@inheritDoc} */
+    @Override
+    public void visitNestMember(String nestMember) {}
+
+    /** {@inheritDoc} */
+    @Override
+    public void visitPermittedSubclass(String permittedSubclass) {}
+
+    /** {@inheritDoc} */
+    @Override
+    public void visitOuterClass(String owner, String name, String descriptor) {}
+
+    /** {@inheritDoc} */
+    @Override
+    public void visitInnerClass(String name, String outerName, String innerName, int access) {}
+
+    private static String rewriteSignature(String signature, ReturnKind returnKind, boolean empty) {
+      if (signature == null) {
+        return null;
+      }
+      int returnStart = signature.lastIndexOf(')') + 1;
+      int throwsStart = signature.indexOf('^', returnStart);
+      String returnSignature =
+          throwsStart < 0
+              ? signature.substring(returnStart)
+              : signature.substring(returnStart, throwsStart);
+      int open = returnSignature.indexOf('<');
+      String typeArgument =
+          open < 0
+              ? "*"
+              : returnSignature.substring(open + 1, returnSignature.lastIndexOf('>'));
+      if (typeArgument.startsWith("+")) {
+        typeArgument = typeArgument.substring(1);
+      } else if (typeArgument.startsWith("*") || typeArgument.startsWith("-")) {
+        typeArgument = "Ljava/lang/Object;";
+      }
+      String rewrittenReturn =
+          returnKind == ReturnKind.FLUX
+              ? "Ljava/util/stream/Stream<" + typeArgument + ">;"
+              : empty ? "V" : typeArgument;
+      return signature.substring(0, returnStart)
+          + rewrittenReturn
+          + (throwsStart < 0 ? "" : signature.substring(throwsStart));
+    }
+  }
+
+  /**
+   * Defines the counterpart under the name of the repository and delegates everything else, so
+   * that the types, SQL files and resources it refers to are those of the repository.
+   */
+  private static class CounterpartClassLoader extends ClassLoader {
+    private final Class<?> repositoryInterface;
+    private final byte[] classFile;
+
+    CounterpartClassLoader(ClassLoader parent, Class<?> repositoryInterface, byte[] classFile) {
+      super(parent);
+      this.repositoryInterface = repositoryInterface;
+      this.classFile = classFile;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+      if (!repositoryInterface.getName().equals(name)) {
+        return super.loadClass(name, resolve);
+      }
+      synchronized (getClassLoadingLock(name)) {
+        Class<?> counterpart = findLoadedClass(name);
+        if (counterpart == null) {
+          counterpart =
+              defineClass(
+                  name,
+                  classFile,
+                  0,
+                  classFile.length,
+                  repositoryInterface.getProtectionDomain());
+        }
+        return counterpart;
+      }
+    }
+  }
+
+  /**
+   * Calls the counterpart and wraps the results of the asynchronous statements. On-demand SQL
+   * objects close their handle once the method returns, so the rows of a {@code Flux} are streamed
+   * from a handle of their own, closed with the stream.
+   */
+  private static class CounterpartInvocationHandler implements InvocationHandler {
+    private final Counterpart counterpart;
+    private final Class<?> repositoryInterface;
+    private final Object sqlObject;
+    private final Jdbi jdbi;
+
+    CounterpartInvocationHandler(
+        Counterpart counterpart,
+        Class<?> repositoryInterface,
+        Object sqlObject,
+        @Nullable Jdbi jdbi) {
+      this.counterpart = counterpart;
+      this.repositoryInterface = repositoryInterface;
+      this.sqlObject = sqlObject;
+      this.jdbi = jdbi;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      if (method.getDeclaringClass() == Object.class) {
+        return switch (method.getName()) {
+          case "equals" -> proxy == args[0];
+          case "hashCode" -> System.identityHashCode(proxy);
+          default -> repositoryInterface.getName() + "@" + sqlObject;
+        };
+      }
+      if (method.isDefault()) {
+        return InvocationHandler.invokeDefault(proxy, method, args);
+      }
+      ReturnKind returnKind = counterpart.returnKinds.get(method);
+      if (returnKind == ReturnKind.FLUX && jdbi != null) {
+        Handle handle = jdbi.open();
+        try {
+          Stream<?> rows =
+              (Stream<?>) invokeCounterpart(handle.attach(counterpart.sqlObjectType), method, args);
+          return ReactiveResults.fromStream(rows.onClose(handle::close));
+        } catch (Throwable e) {
+          handle.close();
+          throw e;
+        }
+      }
+      Object result = invokeCounterpart(sqlObject, method, args);
+      if (returnKind == null) {
+        return result;
+      }
+      return switch (returnKind) {
+        case FUTURE -> CompletableFuture.completedFuture(result);
+        case MONO -> ReactiveResults.just(result);
+        case FLUX -> ReactiveResults.fromStream((Stream<?>) result);
+      };
+    }
+
+    private Object invokeCounterpart(Object sqlObject, Method method, Object[] args)
+        throws Throwable {
+      try {
+        return counterpart.methods.get(method).invoke(sqlObject, args);
+      } catch (InvocationTargetException e) {
+        throw e.getCause();
+      }
+    }
+  }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.jdbi;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
+import org.flmelody.spring.factory.bean.JdbiAsyncExecutor;
+import org.flmelody.spring.factory.bean.JdbiShardMap;
+import org.flmelody.spring.factory.bean.ShardKey;
+import org.flmelody.spring.factory.bean.Sharded;
+
+/**
+ * Runs the calls of a {@link Sharded} repository on the shard of their key, or on all shards.
+ *
+ * @author esotericman
+ */
+public class ShardingInvocationHandler<T> extends RepositoryInvocationHandler<T> {
+  private final JdbiShardMap shardMap;
+  private final JdbiAsyncExecutor asyncExecutor;
+  private final List<T> shardRepositories;
+  private final Map<Method, Integer> shardKeys = new HashMap<>();
+
+  public ShardingInvocationHandler(
+      Class<T> repositoryInterface, JdbiShardMap shardMap, JdbiAsyncExecutor asyncExecutor) {
+    this(
+        repositoryInterface,
+        shardMap.getShards().stream()
+            .map(shard -> RepositorySqlObjects.onDemand(shard, repositoryInterface))
+            .toList(),
+        shardMap,
+        asyncExecutor);
+  }
+
+  private ShardingInvocationHandler(
+      Class<T> repositoryInterface,
+      List<T> shardRepositories,
+      JdbiShardMap shardMap,
+      JdbiAsyncExecutor asyncExecutor) {
+    super(repositoryInterface, shardRepositories.get(0));
+    this.shardMap = shardMap;
+    this.asyncExecutor = asyncExecutor;
+    this.shardRepositories = shardRepositories;
+    for (Method method : repositoryInterface.getMethods()) {
+      if (Modifier.isStatic(method.getModifiers())) {
+        continue;
+      }
+      Integer shardKey = shardKeyIndex(method);
+      if (shardKey != null) {
+        shardKeys.put(method, shardKey);
+      } else if (!method.isDefault() && isStreamingType(method.getReturnType())) {
+        throw new IllegalStateException(
+            "Results of " + method + " cannot be merged across shards, add a @ShardKey");
+      }
+    }
+  }
+
+  /**
+   * Whether the repository is sharded.
+   *
+   * @param repositoryInterface repository interface
+   * @return supported or not
+   */
+  public static boolean isSharded(Class<?> repositoryInterface) {
+    return repositoryInterface.isAnnotationPresent(Sharded.class);
+  }
+
+  private static Integer shardKeyIndex(Method method) {
+    Integer index = null;
+    Annotation[][] parameterAnnotations = method.getParameterAnnotations();
+    for (int i = 0; i < parameterAnnotations.length; i++) {
+      for (Annotation annotation : parameterAnnotations[i]) {
+        if (annotation instanceof ShardKey) {
+          if (index != null) {
+            throw new IllegalStateException("Only one @ShardKey is allowed on " + method);
+          }
+          index = i;
+        }
+      }
+    }
+    return index;
+  }
+
+  private static boolean isStreamingType(Class<?> type) {
+    return Stream.class.isAssignableFrom(type)
+        || Iterator.class.isAssignableFrom(type)
+        || (Iterable.class.isAssignableFrom(type) && !Collection.class.isAssignableFrom(type));
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  protected Object doInvoke(Method method, Object[] args) throws Throwable {
+    Integer shardKey = shardKeys.get(method);
+    if (shardKey != null) {
+      return invokeTarget(shardRepositories.get(shardMap.shardOf(args[shardKey])), method, args);
+    }
+    if (method.isDefault() || shardRepositories.size() == 1) {
+      // default methods reach the shards through the methods they call
+      return invokeTarget(target, method, args);
+    }
+    List<CompletableFuture<Object>> futures = new ArrayList<>(shardRepositories.size());
+    for (T shardRepository : shardRepositories) {
+      futures.add(
+          asyncExecutor.submit(
+              () -> {
+                try {
+                  return invokeTarget(shardRepository, method, args);
+                } catch (Throwable e) {
+                  throw new ShardFailure(e);
+                }
+              }));
+    }
+    List<Object> results = new ArrayList<>(futures.size());
+    for (CompletableFuture<Object> future : futures) {
+      try {
+        results.add(future.get());
+      } catch (ExecutionException e) {
+        // the first failing shard fails the call, the others still complete
+        throw e.getCause() instanceof ShardFailure failure ? failure.getCause() : e.getCause();
+      }
+    }
+    return merge(method.getReturnType(), results);
+  }
+
+  private static Object merge(Class<?> type, List<Object> results) {
+    if (type == void.class || type == Void.class) {
+      return null;
+    }
+    if (type == int.class || type == Integer.class) {
+      int sum = 0;
+      for (Object result : results) {
+        sum += result != null ? (Integer) result : 0;
+      }
+      return sum;
+    }
+    if (type == long.class || type == Long.class) {
+      long sum = 0;
+      for (Object result : results) {
+        sum += result != null ? (Long) result : 0;
+      }
+      return sum;
+    }
+    if (type == boolean.class || type == Boolean.class) {
+      for (Object result : results) {
+        if (Boolean.TRUE.equals(result)) {
+          return true;
+        }
+      }
+      return false;
+    }
+    if (type == int[].class) {
+      return results.stream().flatMapToInt(result -> Arrays.stream((int[]) result)).toArray();
+    }
+    if (Collection.class.isAssignableFrom(type)) {
+      Collection<Object> merged =
+          Set.class.isAssignableFrom(type) ? new LinkedHashSet<>() : new ArrayList<>();
+      if (!type.isInstance(merged)) {
+        throw new IllegalStateException("Cannot merge results of type " + type.getName());
+      }
+      for (Object result : results) {
+        if (result != null) {
+          merged.addAll((Collection<?>) result);
+        }
+      }
+      return merged;
+    }
+    if (type == Optional.class) {
+      for (Object result : results) {
+        if (result != null && ((Optional<?>) result).isPresent()) {
+          return result;
+        }
+      }
+      return Optional.empty();
+    }
+    for (Object result : results) {
+      if (result != null) {
+        return result;
+      }
+    }
+    return null;
+  }
+
+  /** Carries any exception of a repository method out of a shard call. */
+  private static class ShardFailure extends Exception {
+    ShardFailure(Throwable cause) {
+      super(cause);
+    }
+  }
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.jdbi;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.lang.reflect.Type;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.config.ConfigRegistry;
+import org.jdbi.v3.core.extension.ExtensionContext;
+import org.jdbi.v3.core.extension.ExtensionFactory;
+import org.jdbi.v3.core.extension.ExtensionMetadata;
+import org.jdbi.v3.core.extension.Extensions;
+import org.jdbi.v3.core.extension.HandleSupplier;
+import org.jdbi.v3.core.statement.SqlStatement;
+import org.jdbi.v3.sqlobject.SqlObjectFactory;
+import org.jdbi.v3.sqlobject.SqlObjects;
+import org.jdbi.v3.sqlobject.customizer.SqlStatementCustomizer;
+import org.jdbi.v3.sqlobject.customizer.SqlStatementCustomizerFactory;
+import org.jdbi.v3.sqlobject.customizer.SqlStatementCustomizingAnnotation;
+import org.jdbi.v3.sqlobject.customizer.SqlStatementParameterCustomizer;
+import org.springframework.beans.BeanUtils;
+import org.springframework.core.ResolvableType;
+import org.springframework.util.ClassUtils;
+
+/**
+ * The statement of a SQL object method, located by the {@link SqlObjects#getSqlLocator() SQL
+ * locator} and customized by the {@link SqlStatementCustomizingAnnotation customizing annotations}
+ * of the type, the method and its parameters, as the statement handlers of JDBI do.
+ *
+ * @author esotericman
+ */
+final class SqlObjectStatement {
+  private final Class<?> sqlObjectType;
+  private final Method method;
+  private final List<SqlStatementCustomizer> statementCustomizers = new ArrayList<>();
+  private final List<ParameterCustomizers> parameterCustomizers = new ArrayList<>();
+
+  SqlObjectStatement(Class<?> sqlObjectType, Method method) {
+    this.sqlObjectType = sqlObjectType;
+    this.method = method;
+    for (Class<?> type : ClassUtils.getAllInterfacesForClassAsSet(sqlObjectType)) {
+      if (type != sqlObjectType) {
+        addTypeCustomizers(type);
+      }
+    }
+    addTypeCustomizers(sqlObjectType);
+    for (Annotation annotation : method.getAnnotations()) {
+      SqlStatementCustomizerFactory factory = customizerFactory(annotation);
+      if (factory != null) {
+        statementCustomizers.add(factory.createForMethod(annotation, sqlObjectType, method));
+      }
+    }
+    Parameter[] parameters = method.getParameters();
+    for (int i = 0; i < parameters.length; i++) {
+      parameterCustomizers.add(new ParameterCustomizers(parameters[i], i));
+    }
+  }
+
+  /**
+   * Run a task in the extension context of the method, so that the statements it creates on the
+   * handle carry the configuration of the type and the method, and report the method to the
+   * statement context.
+   *
+   * @param handle handle
+   * @param task task
+   * @param <V> result type
+   * @return result of the task
+   * @throws Exception exception of the task
+   */
+  <V> V call(Handle handle, Callable<V> task) throws Exception {
+    ConfigRegistry config = configure(handle.getConfig());
+    Extensions extensions = handle.getConfig(Extensions.class);
+    if (extensions.findFactory(HandleSupplierFactory.class).isEmpty()) {
+      // registered on the configuration of the handle only, which is a copy of the jdbi's
+      extensions.register(new HandleSupplierFactory());
+    }
+    return handle
+        .attach(HandleSupplierExtension.class)
+        .getHandleSupplier()
+        .invokeInContext(ExtensionContext.forExtensionMethod(config, sqlObjectType, method), task);
+  }
+
+  /**
+   * Create the configuration of the method, with the configuring annotations of the type and the
+   * method applied.
+   *
+   * @param config configuration of a jdbi or handle
+   * @return configuration of the method
+   */
+  ConfigRegistry configure(ConfigRegistry config) {
+    Extensions extensions = config.get(Extensions.class);
+    ExtensionFactory factory =
+        extensions
+            .findFactory(SqlObjectFactory.class)
+            .orElseThrow(() -> new IllegalStateException("SqlObjectPlugin is not installed"));
+    ExtensionMetadata metadata = extensions.findMetadata(sqlObjectType, factory);
+    return metadata.createMethodConfiguration(
+        method, metadata.createInstanceConfiguration(config));
+  }
+
+  /**
+   * Locate the SQL of the method.
+   *
+   * @param config configuration of the method
+   * @return sql
+   */
+  String locate(ConfigRegistry config) {
+    return config.get(SqlObjects.class).getSqlLocator().locate(sqlObjectType, method, config);
+  }
+
+  /**
+   * Apply the customizers of the type and the method.
+   *
+   * @param statement statement
+   * @throws SQLException exception of a customizer
+   */
+  void customize(SqlStatement<?> statement) throws SQLException {
+    for (SqlStatementCustomizer customizer : statementCustomizers) {
+      customizer.apply(statement);
+    }
+  }
+
+  /**
+   * Apply the customizers of the parameters, which bind the arguments of one call.
+   *
+   * @param statement statement
+   * @param args arguments of the call, may be null
+   * @throws SQLException exception of a customizer
+   */
+  void bind(SqlStatement<?> statement, Object[] args) throws SQLException {
+    for (int i = 0; i < parameterCustomizers.size(); i++) {
+      parameterCustomizers.get(i).apply(statement, args[i]);
+    }
+  }
+
+  /**
+   * Prepare the customizers for the given configuration.
+   *
+   * @param config configuration of the method
+   */
+  void warm(ConfigRegistry config) {
+    statementCustomizers.forEach(customizer -> customizer.warm(config));
+    parameterCustomizers.forEach(customizers -> customizers.warm(config));
+  }
+
+  private void addTypeCustomizers(Class<?> type) {
+    for (Annotation annotation : type.getAnnotations()) {
+      SqlStatementCustomizerFactory factory = customizerFactory(annotation);
+      if (factory != null) {
+        statementCustomizers.add(factory.createForType(annotation, sqlObjectType));
+      }
+    }
+  }
+
+  private static SqlStatementCustomizerFactory customizerFactory(Annotation annotation) {
+    SqlStatementCustomizingAnnotation customizing =
+        annotation.annotationType().getAnnotation(SqlStatementCustomizingAnnotation.class);
+    return customizing != null ? BeanUtils.instantiateClass(customizing.value()) : null;
+  }
+
+  /** The customizers of one parameter, the default one when it carries no annotation. */
+  private class ParameterCustomizers {
+    private final Parameter parameter;
+    private final int index;
+    private final Type type;
+    private final List<SqlStatementParameterCustomizer> customizers = new ArrayList<>();
+    private volatile SqlStatementParameterCustomizer defaultCustomizer;
+
+    ParameterCustomizers(Parameter parameter, int index) {
+      this.parameter = parameter;
+      this.index = index;
+      this.type = ResolvableType.forMethodParameter(method, index, sqlObjectType).getType();
+      for (Annotation annotation : parameter.getAnnotations()) {
+        SqlStatementCustomizerFactory factory = customizerFactory(annotation);
+        if (factory != null) {
+          customizers.add(
+              factory.createForParameter(annotation, sqlObjectType, method, parameter, index, type));
+        }
+      }
+    }
+
+    void apply(SqlStatement<?> statement, Object arg) throws SQLException {
+      if (!customizers.isEmpty()) {
+        for (SqlStatementParameterCustomizer customizer : customizers) {
+          customizer.apply(statement, arg);
+        }
+      } else {
+        defaultCustomizer(statement.getConfig()).apply(statement, arg);
+      }
+    }
+
+    void warm(ConfigRegistry config) {
+      customizers.forEach(customizer -> customizer.warm(config));
+      if (customizers.isEmpty()) {
+        defaultCustomizer(config).warm(config);
+      }
+    }
+
+    private SqlStatementParameterCustomizer defaultCustomizer(ConfigRegistry config) {
+      SqlStatementParameterCustomizer customizer = defaultCustomizer;
+      if (customizer == null) {
+        customizer =
+            config
+                .get(SqlObjects.class)
+                .getDefaultParameterCustomizerFactory()
+                .createForParameter(sqlObjectType, method, parameter, index, type);
+        defaultCustomizer = customizer;
+      }
+      return customizer;
+    }
+  }
+
+  /** Exposes the handle supplier of an attachment, the way into an extension context. */
+  private interface HandleSupplierExtension {
+    HandleSupplier getHandleSupplier();
+  }
+
+  private static class HandleSupplierFactory implements ExtensionFactory {
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean accepts(Class<?> extensionType) {
+      return extensionType == HandleSupplierExtension.class;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public <E> E attach(Class<E> extensionType, HandleSupplier handleSupplier) {
+      return extensionType.cast((HandleSupplierExtension) () -> handleSupplier);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Set<FactoryFlag> getFactoryFlags() {
+      return EnumSet.of(FactoryFlag.DONT_USE_PROXY);
+    }
+  }
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.jdbi;
+
+import java.lang.ref.Cleaner;
+import java.lang.reflect.Method;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import org.flmelody.spring.factory.bean.StreamingQuery;
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.result.ResultIterable;
+import org.jdbi.v3.core.result.ResultIterator;
+import org.jdbi.v3.core.statement.StatementContext;
+import org.jdbi.v3.core.statement.StatementCustomizer;
+import org.jdbi.v3.sqlobject.statement.SqlQuery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Runs the {@link StreamingQuery} methods of a repository on a handle of their own, which stays
+ * open until the returned result is exhausted, closed or garbage collected. Outside a transaction
+ * the handle runs one of its own, so that drivers such as PostgreSQL use a cursor instead of
+ * buffering all rows. Inside a Spring transaction the query joins it, and leaves its outcome to
+ * the caller.
+ *
+ * @author esotericman
+ */
+public class StreamingInvocationHandler<T> extends RepositoryInvocationHandler<T> {
+  private static final Logger logger = LoggerFactory.getLogger(StreamingInvocationHandler.class);
+  private static final Cleaner cleaner = Cleaner.create();
+  private final Jdbi jdbi;
+  private final Map<Method, Integer> fetchSizes = new HashMap<>();
+
+  public StreamingInvocationHandler(
+      Class<T> repositoryInterface, T target, Jdbi jdbi, int defaultFetchSize) {
+    super(repositoryInterface, target);
+    this.jdbi = jdbi;
+    StreamingQuery typeStreaming = repositoryInterface.getAnnotation(StreamingQuery.class);
+    for (Method method : repositoryInterface.getMethods()) {
+      StreamingQuery streaming = method.getAnnotation(StreamingQuery.class);
+      if (streaming == null) {
+        streaming = typeStreaming;
+      }
+      if (streaming == null || !method.isAnnotationPresent(SqlQuery.class)) {
+        continue;
+      }
+      if (!isStreamingType(method.getReturnType())) {
+        if (method.isAnnotationPresent(StreamingQuery.class)) {
+          throw new IllegalStateException(
+              "@StreamingQuery requires a Stream, Iterator or ResultIterable result on " + method);
+        }
+        continue;
+      }
+      fetchSizes.put(method, streaming.fetchSize() < 0 ? defaultFetchSize : streaming.fetchSize());
+    }
+  }
+
+  /**
+   * Whether the repository declares any streaming query.
+   *
+   * @param repositoryInterface repository interface
+   * @return supported or not
+   */
+  public static boolean isStreaming(Class<?> repositoryInterface) {
+    if (repositoryInterface.isAnnotationPresent(StreamingQuery.class)) {
+      return true;
+    }
+    for (Method method : repositoryInterface.getMethods()) {
+      if (method.isAnnotationPresent(StreamingQuery.class)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  protected Object doInvoke(Method method, Object[] args) throws Throwable {
+    Integer fetchSize = fetchSizes.get(method);
+    if (fetchSize == null) {
+      return invokeTarget(target, method, args);
+    }
+    Class<?> returnType = method.getReturnType();
+    if (ResultIterable.class.isAssignableFrom(returnType)) {
+      // every iteration runs the query again on a handle of its own
+      return (ResultIterable<Object>) () -> open(method, args, fetchSize);
+    }
+    ManagedResultIterator iterator = open(method, args, fetchSize);
+    if (Iterator.class.isAssignableFrom(returnType)) {
+      return iterator;
+    }
+    return StreamSupport.stream(
+            Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false)
+        .onClose(iterator::close);
+  }
+
+  private ManagedResultIterator open(Method method, Object[] args, int fetchSize) {
+    Handle handle = jdbi.open();
+    // a transaction of the caller is joined, never ended here
+    boolean ownTransaction =
+        !TransactionSynchronizationManager.isActualTransactionActive()
+            && !handle.isInTransaction();
+    try {
+      handle.addCustomizer(new FetchSizeCustomizer(fetchSize));
+      if (ownTransaction) {
+        handle.begin();
+      }
+      Object result =
+          invokeTarget(RepositorySqlObjects.attach(handle, repositoryInterface), method, args);
+      return new ManagedResultIterator(method, handle, ownTransaction, result);
+    } catch (Throwable e) {
+      release(handle, ownTransaction, null);
+      if (e instanceof RuntimeException runtimeException) {
+        throw runtimeException;
+      }
+      throw new IllegalStateException("Streaming query failed: " + method, e);
+    }
+  }
+
+  private static boolean isStreamingType(Class<?> returnType) {
+    return Stream.class.isAssignableFrom(returnType)
+        || returnType == Iterator.class
+        || returnType == ResultIterator.class
+        || ResultIterable.class.isAssignableFrom(returnType);
+  }
+
+  private static void release(Handle handle, boolean ownTransaction, AutoCloseable rows) {
+    try {
+      if (rows != null) {
+        rows.close();
+      }
+    } catch (Exception e) {
+      logger.warn("Failed to close streamed result", e);
+    } finally {
+      try {
+        if (ownTransaction && handle.isInTransaction()) {
+          handle.rollback();
+        }
+      } finally {
+        handle.close();
+      }
+    }
+  }
+
+  private static class FetchSizeCustomizer implements StatementCustomizer {
+    private final int fetchSize;
+
+    FetchSizeCustomizer(int fetchSize) {
+      this.fetchSize = fetchSize;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void beforeExecution(PreparedStatement stmt, StatementContext ctx) throws SQLException {
+      if (fetchSize != 0) {
+        stmt.setFetchSize(fetchSize);
+      }
+      stmt.setFetchDirection(ResultSet.FETCH_FORWARD);
+    }
+  }
+
+  /** Iterator over streamed rows that owns the handle of the query. */
+  private static class ManagedResultIterator implements ResultIterator<Object> {
+    private final Iterator<?> rows;
+    private final StreamState state;
+    private final Cleaner.Cleanable cleanable;
+
+    ManagedResultIterator(Method method, Handle handle, boolean ownTransaction, Object result) {
+      AutoCloseable closeable;
+      if (result instanceof Stream<?> stream) {
+        this.rows = stream.iterator();
+        closeable = stream;
+      } else if (result instanceof ResultIterable<?> resultIterable) {
+        ResultIterator<?> iterator = resultIterable.iterator();
+        this.rows = iterator;
+        closeable = iterator;
+      } else {
+        this.rows = (Iterator<?>) result;
+        closeable = result instanceof AutoCloseable autoCloseable ? autoCloseable : null;
+      }
+      this.state = new StreamState(method, handle, ownTransaction, closeable);
+      this.cleanable = cleaner.register(this, state);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean hasNext() {
+      if (state.closed) {
+        return false;
+      }
+      boolean hasNext = rows.hasNext();
+      if (!hasNext) {
+        close();
+      }
+      return hasNext;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Object next() {
+      return rows.next();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void close() {
+      state.explicit = true;
+      cleanable.clean();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public StatementContext getContext() {
+      return rows instanceof ResultIterator<?> resultIterator ? resultIterator.getContext() : null;
+    }
+  }
+
+  /** Cleanup of a streamed result, must not reference the iterator itself. */
+  private static class StreamState implements Runnable {
+    private final Method method;
+    private final Handle handle;
+    private final boolean ownTransaction;
+    private final AutoCloseable rows;
+    private volatile boolean explicit;
+    private volatile boolean closed;
+
+    StreamState(Method method, Handle handle, boolean ownTransaction, AutoCloseable rows) {
+      this.method = method;
+      this.handle = handle;
+      this.ownTransaction = ownTransaction;
+      this.rows = rows;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void run() {
+      closed = true;
+      if (!explicit) {
+        logger.warn(
+            "Streamed result of "
+                + method
+                + " was garbage collected without being closed, close it or read it to the end");
+      }
+      release(handle, ownTransaction, rows);
+    }
+  }
+}
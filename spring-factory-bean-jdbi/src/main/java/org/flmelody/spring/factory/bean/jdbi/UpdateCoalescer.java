@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.jdbi;
+
+import java.lang.reflect.Method;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import org.flmelody.spring.factory.bean.CoalescedUpdate;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.statement.PreparedBatch;
+import org.jdbi.v3.core.statement.Update;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * Queues the calls of one {@link CoalescedUpdate} method and flushes them as a JDBC batch. The
+ * batch is prepared in the extension context of the method, from the SQL its locator finds and with
+ * its customizers, so that it binds and executes like the method itself.
+ *
+ * @author esotericman
+ */
+public class UpdateCoalescer {
+  private static final Logger logger = LoggerFactory.getLogger(UpdateCoalescer.class);
+  private final Jdbi jdbi;
+  private final SqlObjectStatement statement;
+  private final int batchSize;
+  private final long maxDelay;
+  private final ReentrantLock lock = new ReentrantLock();
+  private List<PendingUpdate> pending = new ArrayList<>();
+  private ScheduledFuture<?> scheduledFlush;
+
+  public UpdateCoalescer(
+      Jdbi jdbi, Class<?> repositoryInterface, Method method, CoalescedUpdate coalescedUpdate) {
+    this.jdbi = jdbi;
+    this.statement =
+        new SqlObjectStatement(
+            RepositorySqlObjects.sqlObjectType(repositoryInterface),
+            RepositorySqlObjects.sqlObjectMethod(repositoryInterface, method));
+    this.batchSize = Math.max(1, coalescedUpdate.batchSize());
+    this.maxDelay = Math.max(0, coalescedUpdate.maxDelay());
+  }
+
+  /**
+   * Queue one call.
+   *
+   * @param args arguments of the call
+   * @return future completed with the row count of the call
+   */
+  public CompletableFuture<Integer> submit(Object[] args) {
+    PendingUpdate update = new PendingUpdate(args);
+    List<PendingUpdate> full = null;
+    lock.lock();
+    try {
+      pending.add(update);
+      if (pending.size() >= batchSize) {
+        full = drain();
+      } else if (pending.size() == 1) {
+        scheduledFlush = Scheduler.INSTANCE.schedule(this::flush, maxDelay, TimeUnit.MILLISECONDS);
+      }
+    } finally {
+      lock.unlock();
+    }
+    if (full != null) {
+      // the caller filling the batch executes it, which throttles producers
+      execute(full);
+    }
+    return update.future;
+  }
+
+  /** Execute the queued calls now. */
+  public void flush() {
+    List<PendingUpdate> batch;
+    lock.lock();
+    try {
+      batch = drain();
+    } finally {
+      lock.unlock();
+    }
+    if (!batch.isEmpty()) {
+      execute(batch);
+    }
+  }
+
+  private List<PendingUpdate> drain() {
+    List<PendingUpdate> batch = pending;
+    pending = new ArrayList<>();
+    if (scheduledFlush != null) {
+      scheduledFlush.cancel(false);
+      scheduledFlush = null;
+    }
+    return batch;
+  }
+
+  private void execute(List<PendingUpdate> batch) {
+    int[] counts;
+    try {
+      // a failed batch is rolled back as a whole, so that calls can be retried one by one
+      counts =
+          jdbi.inTransaction(
+              handle ->
+                  statement.call(
+                      handle,
+                      () -> {
+                        PreparedBatch preparedBatch =
+                            handle.prepareBatch(statement.locate(handle.getConfig()));
+                        statement.customize(preparedBatch);
+                        for (PendingUpdate update : batch) {
+                          statement.bind(preparedBatch, update.args);
+                          preparedBatch.add();
+                        }
+                        return preparedBatch.execute();
+                      }));
+    } catch (Exception e) {
+      if (logger.isDebugEnabled()) {
+        logger.debug(
+            "Batch of " + batch.size() + " failed, executing calls one by one: " + e.getMessage());
+      }
+      batch.forEach(this::executeSingle);
+      return;
+    } catch (Throwable e) {
+      // the callers must not wait for a batch that will never complete
+      batch.forEach(update -> update.future.completeExceptionally(e));
+      throw e;
+    }
+    for (int i = 0; i < batch.size(); i++) {
+      batch.get(i).future.complete(rowCount(counts[i]));
+    }
+  }
+
+  private static int rowCount(int count) {
+    // the call succeeded but the driver does not report how many rows it changed
+    return count == Statement.SUCCESS_NO_INFO ? 1 : count;
+  }
+
+  private void executeSingle(PendingUpdate update) {
+    try {
+      update.future.complete(
+          jdbi.withHandle(
+              handle ->
+                  statement.call(
+                      handle,
+                      () -> {
+                        Update single = handle.createUpdate(statement.locate(handle.getConfig()));
+                        statement.customize(single);
+                        statement.bind(single, update.args);
+                        return single.execute();
+                      })));
+    } catch (Throwable e) {
+      update.future.completeExceptionally(e);
+      if (e instanceof Error error) {
+        throw error;
+      }
+    }
+  }
+
+  /** Schedules the flushes of all coalescers, with threads started on demand. */
+  private static class Scheduler {
+    private static final ScheduledThreadPoolExecutor INSTANCE = createScheduler();
+
+    private static ScheduledThreadPoolExecutor createScheduler() {
+      CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("jdbi-coalescer-");
+      threadFactory.setDaemon(true);
+      ScheduledThreadPoolExecutor scheduler =
+          new ScheduledThreadPoolExecutor(
+              Math.max(2, Runtime.getRuntime().availableProcessors()), threadFactory);
+      // most flushes are cancelled by a full batch, they should not pile up in the queue
+      scheduler.setRemoveOnCancelPolicy(true);
+      scheduler.setKeepAliveTime(60, TimeUnit.SECONDS);
+      scheduler.allowCoreThreadTimeOut(true);
+      return scheduler;
+    }
+  }
+
+  private static class PendingUpdate {
+    private final Object[] args;
+    private final CompletableFuture<Integer> future = new CompletableFuture<>();
+
+    PendingUpdate(Object[] args) {
+      this.args = args;
+    }
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.statement.SqlLogger;
+import org.jdbi.v3.core.statement.SqlStatements;
+import org.jdbi.v3.core.statement.StatementContext;
+import org.jdbi.v3.core.statement.UnableToExecuteStatementException;
+import org.jdbi.v3.sqlobject.SqlObjectPlugin;
+import org.jdbi.v3.sqlobject.customizer.Bind;
+import org.jdbi.v3.sqlobject.statement.SqlQuery;
+import org.jdbi.v3.sqlobject.statement.SqlUpdate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author esotericman
+ */
+class JdbiMetricsPluginTest {
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  private final AtomicInteger loggedErrors = new AtomicInteger();
+  private MetricsRepository repository;
+
+  @BeforeEach
+  void setUp() {
+    Jdbi jdbi = Jdbi.create("jdbc:h2:mem:metrics" + System.nanoTime() + ";DB_CLOSE_DELAY=-1");
+    jdbi.installPlugin(new SqlObjectPlugin());
+    jdbi.getConfig(SqlStatements.class)
+        .setSqlLogger(
+            new SqlLogger() {
+              @Override
+              public void logException(StatementContext context, SQLException ex) {
+                loggedErrors.incrementAndGet();
+              }
+            });
+    jdbi.installPlugin(new JdbiMetricsPlugin(registry, false));
+    repository = jdbi.onDemand(MetricsRepository.class);
+    jdbi.useHandle(handle -> handle.execute("create table metric (id bigint primary key)"));
+  }
+
+  @Test
+  void statementsAreTimedAndCountedPerMethod() {
+    repository.insert(1);
+    repository.insert(2);
+    assertThat(repository.count()).isEqualTo(2);
+
+    assertThat(calls("insert", "success")).isEqualTo(2);
+    assertThat(calls("count", "success")).isEqualTo(1);
+    DistributionSummary rows =
+        registry
+            .get("jdbi.repository.rows")
+            .tags("repository", MetricsRepository.class.getName(), "method", "insert")
+            .summary();
+    assertThat(rows.count()).isEqualTo(2);
+    assertThat(rows.totalAmount()).isEqualTo(2);
+    assertThat(registry.find("jdbi.repository.rows").tag("method", "count").summary()).isNull();
+  }
+
+  @Test
+  void failingStatementIsTimedAsErrorAndStillLogged() {
+    repository.insert(1);
+
+    assertThatThrownBy(() -> repository.insert(1))
+        .isInstanceOf(UnableToExecuteStatementException.class);
+
+    assertThat(calls("insert", "success")).isEqualTo(1);
+    assertThat(calls("insert", "error")).isEqualTo(1);
+    assertThat(loggedErrors).hasValue(1);
+  }
+
+  private long calls(String method, String outcome) {
+    return registry
+        .get("jdbi.repository.calls")
+        .tags(
+            "repository",
+            MetricsRepository.class.getName(),
+            "method",
+            method,
+            "outcome",
+            outcome)
+        .timer()
+        .count();
+  }
+
+  /** Repository timed by the plugin. */
+  public interface MetricsRepository {
+
+    @SqlUpdate("insert into metric (id) values (:id)")
+    void insert(@Bind("id") long id);
+
+    @SqlQuery("select count(*) from metric")
+    int count();
+  }
+}
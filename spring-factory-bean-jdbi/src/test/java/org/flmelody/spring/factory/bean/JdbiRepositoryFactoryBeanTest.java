@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Set;
+import org.flmelody.spring.factory.bean.jdbi.streaming.EventRepository;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.sqlobject.SqlObjectPlugin;
+import org.jdbi.v3.sqlobject.statement.SqlQuery;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.TypeConverter;
+import org.springframework.beans.factory.config.DependencyDescriptor;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * @author esotericman
+ */
+class JdbiRepositoryFactoryBeanTest {
+
+  @Test
+  void autowiringByTypeResolvesTheJdbiAndTheContextOnly() {
+    CountingBeanFactory beanFactory = new CountingBeanFactory();
+    try (ConfigurableApplicationContext context = run(beanFactory, ByTypeConfiguration.class)) {
+      assertCollaborators(context);
+      assertThat(beanFactory.factoryResolutions).isEqualTo(2);
+    }
+  }
+
+  @Test
+  void referencedContextNeedsNoResolution() {
+    CountingBeanFactory beanFactory = new CountingBeanFactory();
+    try (ConfigurableApplicationContext context = run(beanFactory, ReferenceConfiguration.class)) {
+      assertCollaborators(context);
+      assertThat(beanFactory.factoryResolutions).isZero();
+    }
+  }
+
+  @Test
+  void contextKeepsAReferencedJdbi() {
+    JdbiRepositoryContext repositoryContext = new JdbiRepositoryContext();
+    repositoryContext.setJdbi(Jdbi.create("jdbc:h2:mem:context"));
+    Jdbi referenced = Jdbi.create("jdbc:h2:mem:referenced");
+    JdbiRepositoryFactoryBean<EventRepository> factoryBean =
+        new JdbiRepositoryFactoryBean<>(EventRepository.class);
+
+    factoryBean.setJdbi(referenced);
+    factoryBean.setRepositoryContext(repositoryContext);
+
+    assertThat(factoryBean.getJdbi()).isSameAs(referenced);
+  }
+
+  @Test
+  void repeatedCallsShareOneRepositoryUntilDestroyed() throws Exception {
+    QueryCacheManager queryCacheManager = new QueryCacheManager();
+    JdbiRepositoryContext repositoryContext = new JdbiRepositoryContext();
+    repositoryContext.setJdbi(
+        Jdbi.create("jdbc:h2:mem:repeated").installPlugin(new SqlObjectPlugin()));
+    repositoryContext.setQueryCacheManager(queryCacheManager);
+    JdbiRepositoryFactoryBean<CachedRepository> factoryBean =
+        new JdbiRepositoryFactoryBean<>(CachedRepository.class);
+    factoryBean.setRepositoryContext(repositoryContext);
+
+    CachedRepository repository = factoryBean.getObject();
+    assertThat(factoryBean.getObject()).isSameAs(repository);
+    assertThat(repository.one()).isEqualTo(1);
+    assertThat(queryCacheManager.getCaches("cached")).hasSize(1);
+
+    factoryBean.destroy();
+    assertThat(queryCacheManager.getRegionNames()).isEmpty();
+  }
+
+  private static ConfigurableApplicationContext run(
+      DefaultListableBeanFactory beanFactory, Class<?> configuration) {
+    return new SpringApplicationBuilder(configuration)
+        .web(WebApplicationType.NONE)
+        .contextFactory(type -> new AnnotationConfigApplicationContext(beanFactory))
+        .run();
+  }
+
+  private static void assertCollaborators(ConfigurableApplicationContext context) {
+    JdbiRepositoryContext repositoryContext = context.getBean(JdbiRepositoryContext.class);
+    JdbiRepositoryFactoryBean<?> factoryBean =
+        context.getBean("&eventRepository", JdbiRepositoryFactoryBean.class);
+
+    assertThat(factoryBean.getJdbi()).isSameAs(repositoryContext.getJdbi());
+    assertThat(factoryBean.getQueryCacheManager())
+        .isSameAs(repositoryContext.getQueryCacheManager());
+    assertThat(factoryBean.getAsyncExecutor()).isSameAs(repositoryContext.getAsyncExecutor());
+    assertThat(factoryBean.getJdbiProperties()).isSameAs(repositoryContext.getJdbiProperties());
+    assertThat(factoryBean.getHedgeStatistics()).isSameAs(repositoryContext.getHedgeStatistics());
+    assertThat(context.getBean(EventRepository.class).count()).isZero();
+  }
+
+  /** Counts the dependencies resolved for repository factories. */
+  static class CountingBeanFactory extends DefaultListableBeanFactory {
+    private int factoryResolutions;
+
+    @Override
+    public Object resolveDependency(
+        DependencyDescriptor descriptor,
+        String requestingBeanName,
+        Set<String> autowiredBeanNames,
+        TypeConverter typeConverter) {
+      if (descriptor.getMethodParameter() != null
+          && JdbiRepositoryFactoryBean.class.isAssignableFrom(
+              descriptor.getMethodParameter().getContainingClass())) {
+        factoryResolutions++;
+      }
+      return super.resolveDependency(
+          descriptor, requestingBeanName, autowiredBeanNames, typeConverter);
+    }
+  }
+
+  /** Repository with a cached query. */
+  @CacheRegion("cached")
+  public interface CachedRepository {
+
+    @CachedQuery
+    @SqlQuery("select 1")
+    int one();
+  }
+
+  @Configuration
+  @EnableAutoConfiguration
+  @JdbiRepositoryScan(basePackages = "org.flmelody.spring.factory.bean.jdbi.streaming")
+  static class ByTypeConfiguration {}
+
+  @Configuration
+  @EnableAutoConfiguration
+  @JdbiRepositoryScan(
+      basePackages = "org.flmelody.spring.factory.bean.jdbi.streaming",
+      factoryReferences = "repositoryContext=jdbiRepositoryContext")
+  static class ReferenceConfiguration {}
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author esotericman
+ */
+class QueryCacheTest {
+
+  @Test
+  void recentlyReadEntriesSurviveEviction() throws Throwable {
+    QueryCache queryCache = new QueryCache("cache", 4, 0);
+    for (int key = 0; key < 4; key++) {
+      queryCache.get(key, () -> "loaded");
+    }
+    queryCache.get(0, () -> "reloaded");
+    for (int key = 4; key < 7; key++) {
+      queryCache.get(key, () -> "loaded");
+    }
+
+    assertThat(queryCache.getSize()).isEqualTo(4);
+    assertThat(queryCache.getEvictionCount()).isEqualTo(3);
+    assertThat(queryCache.get(0, () -> "reloaded")).isEqualTo("loaded");
+    assertThat(queryCache.getHitCount()).isEqualTo(2);
+  }
+
+  @Test
+  void concurrentLoadsStayWithinTheMaximumSize() throws Exception {
+    QueryCache queryCache = new QueryCache("cache", 100, 0);
+    AtomicInteger loads = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      Future<?>[] futures = new Future<?>[8];
+      for (int thread = 0; thread < futures.length; thread++) {
+        int offset = thread;
+        futures[thread] =
+            executor.submit(
+                () -> {
+                  for (int key = 0; key < 5000; key++) {
+                    try {
+                      queryCache.get((key * 31 + offset) % 1000, loads::incrementAndGet);
+                    } catch (Throwable e) {
+                      throw new IllegalStateException(e);
+                    }
+                  }
+                });
+      }
+      for (Future<?> future : futures) {
+        future.get(30, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertThat(queryCache.getSize()).isLessThanOrEqualTo(100);
+    assertThat(queryCache.getHitCount() + queryCache.getMissCount()).isEqualTo(40000);
+    assertThat(queryCache.getMissCount()).isEqualTo(loads.get());
+  }
+
+  @Test
+  void invalidateDropsEveryEntry() throws Throwable {
+    QueryCache queryCache = new QueryCache("cache", 10, 0);
+    queryCache.get("key", () -> "loaded");
+
+    queryCache.invalidate();
+
+    assertThat(queryCache.getSize()).isZero();
+    assertThat(queryCache.get("key", () -> "reloaded")).isEqualTo("reloaded");
+  }
+
+  @Test
+  void countsOfSameNamedCachesArePublishedTogether() throws Throwable {
+    QueryCacheManager queryCacheManager = new QueryCacheManager();
+    QueryCache first = queryCacheManager.createCache("country", "CountryRepository.find", 1, 0);
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    new JdbiQueryCacheMetrics(queryCacheManager).bindTo(registry);
+    // created after binding, as by a pooled repository
+    QueryCache second = queryCacheManager.createCache("country", "CountryRepository.find", 1, 0);
+
+    first.get("de", () -> "Germany");
+    first.get("de", () -> "Germany");
+    second.get("fr", () -> "France");
+    second.get("it", () -> "Italy");
+
+    assertThat(count(registry, "jdbi.repository.cache.gets", "hit")).isEqualTo(1);
+    assertThat(count(registry, "jdbi.repository.cache.gets", "miss")).isEqualTo(3);
+    assertThat(registry.get("jdbi.repository.cache.evictions").functionCounter().count())
+        .isEqualTo(1);
+    assertThat(registry.get("jdbi.repository.cache.size").gauge().value()).isEqualTo(2);
+
+    queryCacheManager.removeCache("country", second);
+    assertThat(registry.get("jdbi.repository.cache.size").gauge().value()).isEqualTo(1);
+  }
+
+  private static double count(SimpleMeterRegistry registry, String name, String result) {
+    return registry
+        .get(name)
+        .tags("region", "country", "cache", "CountryRepository.find", "result", result)
+        .functionCounter()
+        .count();
+  }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.jdbi;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.flmelody.spring.factory.bean.JdbiAsyncExecutor;
+import org.flmelody.spring.factory.bean.JdbiRepositoryScan;
+import org.flmelody.spring.factory.bean.jdbi.async.Task;
+import org.flmelody.spring.factory.bean.jdbi.async.TaskRepository;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.sqlobject.SqlObjectPlugin;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.publisher.BaseSubscriber;
+
+/**
+ * @author esotericman
+ */
+@SpringBootTest(classes = AsyncInvocationHandlerTest.AsyncConfiguration.class)
+class AsyncInvocationHandlerTest {
+  @Autowired private TaskRepository taskRepository;
+
+  @Test
+  void asyncMethodsUseTheRowMapperOfTheRepository() {
+    assertThat(taskRepository.insert(1, "write").join()).isEqualTo(1);
+    assertThat(taskRepository.insert(2, "review").join()).isEqualTo(1);
+    assertThat(taskRepository.count()).isEqualTo(2);
+
+    Optional<Task> task = taskRepository.findById(2).join();
+    assertThat(task).map(Task::getTitle).hasValue("review");
+    assertThat(taskRepository.findById(3).join()).isEmpty();
+
+    List<Task> tasks = taskRepository.findAll().join();
+    assertThat(tasks).extracting(Task::getTitle).containsExactly("write", "review");
+    assertThat(taskRepository.findByIds(List.of(2L, 3L)).join())
+        .extracting(Task::getTitle)
+        .containsExactly("review");
+    assertThat(taskRepository.findTitles().join()).containsEntry(1L, "write").hasSize(2);
+  }
+
+  @Test
+  void openFluxesDoNotStarveQueuedFutures() throws Exception {
+    Jdbi jdbi =
+        Jdbi.create("jdbc:h2:mem:saturated;DB_CLOSE_DELAY=-1").installPlugin(new SqlObjectPlugin());
+    jdbi.useHandle(handle -> handle.execute("create table task (id bigint, title varchar(64))"));
+    JdbiAsyncExecutor asyncExecutor = new JdbiAsyncExecutor(2);
+    try {
+      TaskRepository repository = repository(jdbi, asyncExecutor);
+      for (long id = 1; id <= 3; id++) {
+        repository.insert(id, "task " + id).join();
+      }
+
+      // both permits are held by fluxes that stopped requesting after their first row
+      CountDownLatch firstRows = new CountDownLatch(2);
+      List<RowSubscriber> subscribers =
+          List.of(new RowSubscriber(firstRows), new RowSubscriber(firstRows));
+      subscribers.forEach(subscriber -> repository.streamFrom(1).subscribe(subscriber));
+      assertThat(firstRows.await(10, TimeUnit.SECONDS)).isTrue();
+      assertThat(asyncExecutor.getAvailablePermits()).isZero();
+
+      List<CompletableFuture<List<Task>>> futures = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+        futures.add(repository.findAll());
+      }
+      assertThat(futures).noneMatch(CompletableFuture::isDone);
+
+      subscribers.forEach(subscriber -> subscriber.request(Long.MAX_VALUE));
+      CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+      for (CompletableFuture<List<Task>> future : futures) {
+        assertThat(future.join()).hasSize(3);
+      }
+      for (RowSubscriber subscriber : subscribers) {
+        assertThat(subscriber.completed.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(subscriber.rows).extracting(Task::getTitle).hasSize(3);
+      }
+    } finally {
+      asyncExecutor.destroy();
+    }
+  }
+
+  @Test
+  void failedFluxesReturnTheirPermit() {
+    Jdbi jdbi = Jdbi.create("jdbc:h2:mem:missing").installPlugin(new SqlObjectPlugin());
+    JdbiAsyncExecutor asyncExecutor = new JdbiAsyncExecutor(1);
+    try {
+      TaskRepository repository = repository(jdbi, asyncExecutor);
+
+      assertThatThrownBy(() -> repository.streamFrom(1).blockLast()).hasMessageContaining("TASK");
+      assertThatThrownBy(() -> repository.findAll().join()).hasMessageContaining("TASK");
+      assertThat(asyncExecutor.getAvailablePermits()).isEqualTo(1);
+    } finally {
+      asyncExecutor.destroy();
+    }
+  }
+
+  private static TaskRepository repository(Jdbi jdbi, JdbiAsyncExecutor asyncExecutor) {
+    return new AsyncInvocationHandler<>(
+            TaskRepository.class,
+            RepositorySqlObjects.onDemand(jdbi, TaskRepository.class),
+            asyncExecutor)
+        .newProxy();
+  }
+
+  private static class RowSubscriber extends BaseSubscriber<Task> {
+    private final List<Task> rows = new CopyOnWriteArrayList<>();
+    private final CountDownLatch firstRow;
+    private final CountDownLatch completed = new CountDownLatch(1);
+
+    RowSubscriber(CountDownLatch firstRow) {
+      this.firstRow = firstRow;
+    }
+
+    @Override
+    protected void hookOnSubscribe(Subscription subscription) {
+      request(1);
+    }
+
+    @Override
+    protected void hookOnNext(Task row) {
+      rows.add(row);
+      if (rows.size() == 1) {
+        firstRow.countDown();
+      }
+    }
+
+    @Override
+    protected void hookOnComplete() {
+      completed.countDown();
+    }
+  }
+
+  @Configuration
+  @EnableAutoConfiguration
+  @JdbiRepositoryScan(basePackages = "org.flmelody.spring.factory.bean.jdbi.async")
+  static class AsyncConfiguration {}
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.jdbi;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.flmelody.spring.factory.bean.CoalescedUpdate;
+import org.flmelody.spring.factory.bean.JdbiRepositoryScan;
+import org.flmelody.spring.factory.bean.jdbi.coalesced.AuditEntry;
+import org.flmelody.spring.factory.bean.jdbi.coalesced.AuditRepository;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.sqlobject.SqlObjectPlugin;
+import org.jdbi.v3.sqlobject.customizer.Bind;
+import org.jdbi.v3.sqlobject.statement.SqlUpdate;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * @author esotericman
+ */
+@SpringBootTest(classes = CoalescingInvocationHandlerTest.CoalescingConfiguration.class)
+class CoalescingInvocationHandlerTest {
+  @Autowired private AuditRepository auditRepository;
+
+  @Test
+  void batchesAreBuiltWithTheLocatorAndCustomizersOfTheMethod() throws Exception {
+    int count = auditRepository.count();
+    List<CompletableFuture<Integer>> batch =
+        List.of(
+            auditRepository.record(new AuditEntry(1, "created")),
+            auditRepository.record(new AuditEntry(2, "updated")),
+            auditRepository.record(new AuditEntry(3, "deleted")));
+    for (CompletableFuture<Integer> future : batch) {
+      assertThat(future.get(5, TimeUnit.SECONDS)).isEqualTo(1);
+    }
+    // a call that does not fill its batch is flushed after the delay
+    assertThat(auditRepository.record(new AuditEntry(4, "read")).get(5, TimeUnit.SECONDS))
+        .isEqualTo(1);
+    assertThat(auditRepository.count()).isEqualTo(count + 4);
+  }
+
+  @Test
+  void failedBatchesAreRetriedCallByCall() throws Exception {
+    CompletableFuture<Integer> first = auditRepository.record(new AuditEntry(10, "first"));
+    CompletableFuture<Integer> duplicate = auditRepository.record(new AuditEntry(10, "again"));
+    CompletableFuture<Integer> last = auditRepository.record(new AuditEntry(11, "last"));
+
+    assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo(1);
+    assertThatThrownBy(() -> duplicate.get(5, TimeUnit.SECONDS))
+        .isInstanceOf(ExecutionException.class);
+    assertThat(last.get(5, TimeUnit.SECONDS)).isEqualTo(1);
+  }
+
+  @Test
+  void callsWhoseRowCountIsNotReportedCountOneRow() throws Exception {
+    Jdbi jdbi =
+        Jdbi.create(
+                () ->
+                    withoutBatchCounts(
+                        DriverManager.getConnection("jdbc:h2:mem:noinfo;DB_CLOSE_DELAY=-1")))
+            .installPlugin(new SqlObjectPlugin());
+    jdbi.useHandle(
+        handle -> handle.execute("create table audit (id bigint, message varchar(64))"));
+    AuditRepository repository =
+        new CoalescingInvocationHandler<>(
+                AuditRepository.class,
+                RepositorySqlObjects.onDemand(jdbi, AuditRepository.class),
+                jdbi)
+            .newProxy();
+
+    List<CompletableFuture<Integer>> batch =
+        List.of(
+            repository.record(new AuditEntry(1, "created")),
+            repository.record(new AuditEntry(2, "updated")),
+            repository.record(new AuditEntry(3, "deleted")));
+    for (CompletableFuture<Integer> future : batch) {
+      assertThat(future.get(5, TimeUnit.SECONDS)).isEqualTo(1);
+    }
+  }
+
+  @Test
+  void returnTypesOtherThanCountsAreRejected() {
+    Jdbi jdbi = Jdbi.create("jdbc:h2:mem:rejected").installPlugin(new SqlObjectPlugin());
+    for (Class<?> repository : List.of(StringRepository.class, LongFutureRepository.class)) {
+      assertThatThrownBy(() -> new CoalescingInvocationHandler<>(repository, null, jdbi))
+          .isInstanceOf(IllegalStateException.class)
+          .hasMessageContaining("Unsupported return type");
+    }
+  }
+
+  private static Connection withoutBatchCounts(Connection connection) {
+    return (Connection)
+        Proxy.newProxyInstance(
+            Connection.class.getClassLoader(),
+            new Class<?>[] {Connection.class},
+            (proxy, method, args) -> {
+              Object result = invoke(connection, method, args);
+              if (!(result instanceof PreparedStatement statement)) {
+                return result;
+              }
+              return Proxy.newProxyInstance(
+                  PreparedStatement.class.getClassLoader(),
+                  new Class<?>[] {PreparedStatement.class},
+                  (statementProxy, statementMethod, statementArgs) -> {
+                    Object statementResult = invoke(statement, statementMethod, statementArgs);
+                    if (statementMethod.getName().equals("executeBatch")) {
+                      Arrays.fill((int[]) statementResult, Statement.SUCCESS_NO_INFO);
+                    }
+                    return statementResult;
+                  });
+            });
+  }
+
+  private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+    try {
+      return method.invoke(target, args);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+
+  interface StringRepository {
+    @CoalescedUpdate
+    @SqlUpdate("insert into audit (id, message) values (:id, 'string')")
+    String record(@Bind("id") long id);
+  }
+
+  interface LongFutureRepository {
+    @CoalescedUpdate
+    @SqlUpdate("insert into audit (id, message) values (:id, 'long')")
+    CompletableFuture<Long> record(@Bind("id") long id);
+  }
+
+  @Configuration
+  @EnableAutoConfiguration
+  @JdbiRepositoryScan(basePackages = "org.flmelody.spring.factory.bean.jdbi.coalesced")
+  static class CoalescingConfiguration {}
+}
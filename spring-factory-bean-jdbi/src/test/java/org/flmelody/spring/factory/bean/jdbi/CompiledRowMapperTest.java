@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.jdbi;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+import java.util.List;
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.mapper.reflect.ColumnName;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author esotericman
+ */
+class CompiledRowMapperTest {
+  private Handle handle;
+
+  @BeforeEach
+  void setUp() {
+    handle = Jdbi.create("jdbc:h2:mem:compiled" + System.nanoTime()).open();
+    handle.execute("create table task (id bigint primary key, task_title varchar(64), rank int)");
+    handle.execute(
+        "insert into task (id, task_title, rank) values (1, 'write', 3), (2, 'test', null)");
+    handle.registerRowMapper(TaskBean.class, CompiledRowMapper.of(TaskBean.class));
+    handle.registerRowMapper(TaskRecord.class, CompiledRowMapper.of(TaskRecord.class));
+  }
+
+  @AfterEach
+  void tearDown() {
+    handle.close();
+  }
+
+  @Test
+  void rowsAreMappedToBeansAndRecords() {
+    List<TaskBean> beans =
+        handle.createQuery("select * from task order by id").mapTo(TaskBean.class).list();
+    assertThat(beans)
+        .extracting(TaskBean::getId, TaskBean::getTaskTitle, TaskBean::getPriority)
+        .containsExactly(tuple(1L, "write", 3), tuple(2L, "test", 0));
+
+    // another shape of the same type binds its columns again
+    TaskBean titleOnly =
+        handle.createQuery("select task_title from task where id = 1").mapTo(TaskBean.class).one();
+    assertThat(titleOnly)
+        .extracting(TaskBean::getId, TaskBean::getTaskTitle)
+        .containsExactly(0L, "write");
+
+    assertThat(handle.createQuery("select * from task order by id").mapTo(TaskRecord.class).list())
+        .containsExactly(new TaskRecord(1, "write", 3), new TaskRecord(2, "test", 0));
+  }
+
+  @Test
+  void unmappableTypesAndShapesAreRejected() {
+    assertThatThrownBy(() -> CompiledRowMapper.of(Unconstructible.class))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("neither a record nor a bean");
+
+    assertThatThrownBy(
+            () -> handle.createQuery("select 1 as unrelated").mapTo(TaskRecord.class).one())
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("didn't find any matching columns");
+  }
+
+  /** Bean mapped by its setters. */
+  public static class TaskBean {
+    private long id;
+    private String taskTitle;
+    private int priority;
+
+    public long getId() {
+      return id;
+    }
+
+    public void setId(long id) {
+      this.id = id;
+    }
+
+    public String getTaskTitle() {
+      return taskTitle;
+    }
+
+    public void setTaskTitle(String taskTitle) {
+      this.taskTitle = taskTitle;
+    }
+
+    @ColumnName("rank")
+    public int getPriority() {
+      return priority;
+    }
+
+    public void setPriority(int priority) {
+      this.priority = priority;
+    }
+  }
+
+  /** Record mapped by its canonical constructor. */
+  public record TaskRecord(long id, String taskTitle, int rank) {}
+
+  /** Type without a no-arg constructor. */
+  public static class Unconstructible {
+
+    public Unconstructible(String value) {}
+
+    public void setValue(String value) {}
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.jdbi;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import javax.tools.ToolProvider;
+import org.flmelody.spring.factory.bean.jdbi.generated.GeneratedEventRepository;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.sqlobject.SqlObjectPlugin;
+import org.jdbi.v3.sqlobject.UnableToCreateSqlObjectException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * @author esotericman
+ */
+class GeneratedSqlObjectsTest {
+  private Jdbi jdbi;
+
+  @BeforeEach
+  void setUp() {
+    jdbi =
+        Jdbi.create("jdbc:h2:mem:generated" + System.nanoTime() + ";DB_CLOSE_DELAY=-1")
+            .installPlugin(new SqlObjectPlugin());
+    jdbi.useHandle(
+        handle -> handle.execute("create table event (id bigint primary key, name varchar(64))"));
+  }
+
+  @Test
+  void generatedImplementationServesTheRepository() {
+    GeneratedEventRepository repository =
+        GeneratedSqlObjects.onDemand(jdbi, GeneratedEventRepository.class);
+
+    assertThat(GeneratedSqlObjects.isGenerated(GeneratedEventRepository.class)).isTrue();
+    assertThat(Proxy.isProxyClass(repository.getClass())).isFalse();
+    assertThat(repository.getClass().getName())
+        .isEqualTo(GeneratedEventRepository.class.getName() + "Impl$OnDemand");
+    repository.insert(1, "created");
+    assertThat(repository.findName(1)).isEqualTo("created");
+  }
+
+  @Test
+  void missingImplementationIsReportedByJdbi(@TempDir Path directory) throws Exception {
+    Path source = directory.resolve("ungenerated/UngeneratedRepository.java");
+    Files.createDirectories(source.getParent());
+    Files.writeString(
+        source,
+        """
+        package ungenerated;
+
+        @org.jdbi.v3.sqlobject.GenerateSqlObject
+        public interface UngeneratedRepository {
+
+          @org.jdbi.v3.sqlobject.statement.SqlQuery("select count(*) from event")
+          int count();
+        }
+        """);
+    // compiled without the annotation processor, so no implementation is generated
+    int status =
+        ToolProvider.getSystemJavaCompiler()
+            .run(
+                null,
+                null,
+                null,
+                "-proc:none",
+                "-classpath",
+                System.getProperty("java.class.path"),
+                "-d",
+                directory.toString(),
+                source.toString());
+    assertThat(status).isZero();
+
+    try (URLClassLoader classLoader =
+        new URLClassLoader(new URL[] {directory.toUri().toURL()}, getClass().getClassLoader())) {
+      Class<?> repositoryInterface = classLoader.loadClass("ungenerated.UngeneratedRepository");
+
+      assertThat(GeneratedSqlObjects.isGenerated(repositoryInterface)).isFalse();
+      assertThatThrownBy(() -> GeneratedSqlObjects.onDemand(jdbi, repositoryInterface))
+          .isInstanceOf(UnableToCreateSqlObjectException.class);
+    }
+    assertThat(GeneratedSqlObjects.getGeneratedClassName(Nested.class))
+        .isEqualTo(getClass().getName() + "_NestedImpl");
+  }
+
+  /** Nested repository, generated as a top-level class. */
+  interface Nested {}
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.jdbi;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.concurrent.atomic.AtomicReference;
+import org.flmelody.spring.factory.bean.JdbiRepositoryScan;
+import org.flmelody.spring.factory.bean.JdbiUnitOfWork;
+import org.flmelody.spring.factory.bean.jdbi.bound.BoundEventRepository;
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.statement.UnableToExecuteStatementException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * @author esotericman
+ */
+@SpringBootTest(classes = HandleBoundInvocationHandlerTest.BoundConfiguration.class)
+class HandleBoundInvocationHandlerTest {
+  @Autowired private Jdbi jdbi;
+  @Autowired private BoundEventRepository eventRepository;
+
+  @Test
+  void callsInsideUnitOfWorkRunOnItsHandle() {
+    int seen =
+        JdbiUnitOfWork.execute(
+            jdbi,
+            handle -> {
+              handle.begin();
+              eventRepository.insert(1, "created");
+              eventRepository.insert(2, "updated");
+              int count = eventRepository.count();
+              // rolling back the handle of the unit of work discards the writes of the repository
+              handle.rollback();
+              return count;
+            });
+
+    assertThat(seen).isEqualTo(2);
+    assertThat(eventRepository.count()).isZero();
+  }
+
+  @Test
+  void failingUnitOfWorkClosesAndUnbindsItsHandle() {
+    AtomicReference<Handle> bound = new AtomicReference<>();
+
+    assertThatThrownBy(
+            () ->
+                JdbiUnitOfWork.execute(
+                    jdbi,
+                    handle -> {
+                      bound.set(handle);
+                      eventRepository.insert(3, "created");
+                      eventRepository.insert(3, "duplicated");
+                      return null;
+                    }))
+        .isInstanceOf(UnableToExecuteStatementException.class);
+
+    assertThat(bound.get().isClosed()).isTrue();
+    assertThat(JdbiUnitOfWork.currentHandle(jdbi)).isNull();
+    jdbi.useHandle(handle -> handle.execute("delete from event"));
+  }
+
+  @Configuration
+  @EnableAutoConfiguration
+  @JdbiRepositoryScan(basePackages = "org.flmelody.spring.factory.bean.jdbi.bound")
+  static class BoundConfiguration {}
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.jdbi;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.flmelody.spring.factory.bean.Hedged;
+import org.flmelody.spring.factory.bean.JdbiAsyncExecutor;
+import org.flmelody.spring.factory.bean.JdbiHedgeStatistics;
+import org.flmelody.spring.factory.bean.JdbiReplicaRouter;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.statement.UnableToCreateStatementException;
+import org.jdbi.v3.sqlobject.SqlObjectPlugin;
+import org.jdbi.v3.sqlobject.statement.SqlQuery;
+import org.jdbi.v3.sqlobject.statement.SqlUpdate;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author esotericman
+ */
+class HedgingInvocationHandlerTest {
+  private static final AtomicInteger DATABASES = new AtomicInteger();
+  private final JdbiAsyncExecutor asyncExecutor = new JdbiAsyncExecutor(4);
+  private final JdbiHedgeStatistics hedgeStatistics = new JdbiHedgeStatistics();
+
+  @AfterEach
+  void tearDown() {
+    asyncExecutor.destroy();
+  }
+
+  @Test
+  void slowReplicaIsOvertakenByTheHedge() {
+    Jdbi primary = database("primary", 0);
+    HedgedRepository repository =
+        hedged(primary, List.of(database("slow", 1000), database("fast", 0)));
+
+    // the first call goes to the slow replica and is hedged to the fast one
+    assertThat(repository.answer()).isEqualTo("fast");
+
+    JdbiHedgeStatistics.MethodStatistics statistics =
+        hedgeStatistics.getStatistics(HedgedRepository.class.getName(), "answer");
+    assertThat(statistics.getCalls()).isEqualTo(1);
+    assertThat(statistics.getHedges()).isEqualTo(1);
+    assertThat(statistics.getHedgeWins()).isEqualTo(1);
+  }
+
+  @Test
+  void failureOfEveryAttemptReachesTheCaller() {
+    // neither the replica nor the primary the hedge falls back to has the table
+    Jdbi primary = Jdbi.create(url()).installPlugin(new SqlObjectPlugin());
+    Jdbi replica = Jdbi.create(url()).installPlugin(new SqlObjectPlugin());
+    HedgedRepository repository = hedged(primary, List.of(replica));
+
+    assertThatThrownBy(repository::answer).isInstanceOf(UnableToCreateStatementException.class);
+    assertThatThrownBy(
+            () ->
+                new HedgingInvocationHandler<>(
+                    HedgedUpdateRepository.class,
+                    primary.onDemand(HedgedUpdateRepository.class),
+                    primary,
+                    new JdbiReplicaRouter(
+                        List.of(replica), JdbiReplicaRouter.Selection.ROUND_ROBIN),
+                    asyncExecutor,
+                    hedgeStatistics))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessageContaining("@Hedged requires a @SqlQuery method");
+  }
+
+  private HedgedRepository hedged(Jdbi primary, List<Jdbi> replicas) {
+    return new HedgingInvocationHandler<>(
+            HedgedRepository.class,
+            primary.onDemand(HedgedRepository.class),
+            primary,
+            new JdbiReplicaRouter(replicas, JdbiReplicaRouter.Selection.ROUND_ROBIN),
+            asyncExecutor,
+            hedgeStatistics)
+        .newProxy();
+  }
+
+  /**
+   * Create a database answering after the given delay.
+   *
+   * @return jdbi of database
+   */
+  private static Jdbi database(String answer, int millis) {
+    Jdbi jdbi = Jdbi.create(url()).installPlugin(new SqlObjectPlugin());
+    jdbi.useHandle(
+        handle -> {
+          handle.execute("create alias delay for \"" + Latency.class.getName() + ".delay\"");
+          handle.execute("create table latency (millis int, answer varchar(64))");
+          handle.execute("insert into latency (millis, answer) values (?, ?)", millis, answer);
+        });
+    return jdbi;
+  }
+
+  private static String url() {
+    return "jdbc:h2:mem:hedge" + DATABASES.incrementAndGet() + ";DB_CLOSE_DELAY=-1";
+  }
+
+  /** Functions of the test databases. */
+  public static class Latency {
+
+    /**
+     * Delay a statement.
+     *
+     * @param millis delay in milliseconds
+     * @return the delay
+     * @throws InterruptedException if interrupted
+     */
+    public static int delay(int millis) throws InterruptedException {
+      Thread.sleep(millis);
+      return millis;
+    }
+  }
+
+  /** Repository whose queries are hedged. */
+  @Hedged(initialDelay = 100)
+  public interface HedgedRepository {
+
+    @SqlQuery("select answer from latency where delay(millis) >= 0")
+    String answer();
+  }
+
+  /** Repository hedging a method that cannot be hedged. */
+  public interface HedgedUpdateRepository {
+
+    @Hedged
+    @SqlUpdate("delete from latency")
+    int clear();
+  }
+}
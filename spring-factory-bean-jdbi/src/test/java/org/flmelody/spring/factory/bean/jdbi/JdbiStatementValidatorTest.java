@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.jdbi;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.flmelody.spring.factory.bean.JdbiRepositoryScan;
+import org.flmelody.spring.factory.bean.jdbi.invalid.BrokenEventRepository;
+import org.flmelody.spring.factory.bean.jdbi.valid.EventLookupRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * @author esotericman
+ */
+class JdbiStatementValidatorTest {
+
+  @Test
+  void validStatementsArePreparedAtStartup() {
+    try (ConfigurableApplicationContext context = run(ValidConfiguration.class)) {
+      assertThat(context.getBean(JdbiStatementValidator.class)).isNotNull();
+      assertThat(JdbiStatementValidator.findRepositories(context.getBeanFactory()))
+          .containsExactly(EventLookupRepository.class);
+
+      EventLookupRepository repository = context.getBean(EventLookupRepository.class);
+      repository.insert(1, "created");
+      assertThat(repository.findName(1)).isEqualTo("created");
+      assertThat(repository.count("event")).isEqualTo(1);
+    }
+  }
+
+  @Test
+  void invalidStatementAbortsTheStartup() {
+    assertThatThrownBy(() -> run(BrokenConfiguration.class).close())
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessageContaining("1 invalid repository statement(s)")
+        .hasMessageContaining(BrokenEventRepository.class.getName() + ".titles");
+  }
+
+  private static ConfigurableApplicationContext run(Class<?> configuration) {
+    return new SpringApplicationBuilder(configuration)
+        .web(WebApplicationType.NONE)
+        .run("--flmelody.jdbi.validation.enabled=true", "--flmelody.jdbi.validation.prepare=true");
+  }
+
+  @Configuration
+  @EnableAutoConfiguration
+  @JdbiRepositoryScan(basePackages = "org.flmelody.spring.factory.bean.jdbi.valid")
+  static class ValidConfiguration {}
+
+  @Configuration
+  @EnableAutoConfiguration
+  @JdbiRepositoryScan(basePackages = "org.flmelody.spring.factory.bean.jdbi.invalid")
+  static class BrokenConfiguration {}
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.jdbi;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import org.flmelody.spring.factory.bean.JdbiProperties;
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.statement.StatementContext;
+import org.jdbi.v3.core.statement.StatementCustomizer;
+import org.jdbi.v3.core.statement.UnableToCreateStatementException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * @author esotericman
+ */
+@SpringBootTest(
+    classes = JdbiTuningPluginTest.TuningConfiguration.class,
+    properties = {
+      "flmelody.jdbi.sql-parser-cache-size=16",
+      "flmelody.jdbi.template-cache-size=16",
+      "flmelody.jdbi.fetch-size=5",
+      "flmelody.jdbi.max-rows=2",
+      "flmelody.jdbi.query-timeout=1500ms",
+      "flmelody.jdbi.poolable-statements=false"
+    })
+class JdbiTuningPluginTest {
+  @Autowired private Jdbi jdbi;
+  @Autowired private JdbiProperties properties;
+
+  @Test
+  void propertiesTuneEveryStatement() {
+    assertThat(properties.getQueryTimeout()).isEqualTo(Duration.ofMillis(1500));
+    List<String> settings = new ArrayList<>();
+    try (Handle handle = jdbi.open()) {
+      handle.addCustomizer(
+          new StatementCustomizer() {
+            @Override
+            public void afterExecution(PreparedStatement stmt, StatementContext ctx)
+                throws SQLException {
+              settings.add(
+                  stmt.getFetchSize()
+                      + "/"
+                      + stmt.getMaxRows()
+                      + "/"
+                      + stmt.getQueryTimeout()
+                      + "/"
+                      + stmt.isPoolable());
+            }
+          });
+      handle.execute("insert into task (id, title) values (1, 'a'), (2, 'b'), (3, 'c')");
+
+      assertThat(handle.createQuery("select title from task").mapTo(String.class).list())
+          .hasSize(2);
+      // templates are cached together with their defined attributes
+      assertThat(count(handle, "task")).isEqualTo(3);
+      assertThat(count(handle, "event")).isZero();
+      handle.execute("delete from task");
+    }
+
+    assertThat(settings).isNotEmpty().containsOnly("5/2/1/false");
+  }
+
+  @Test
+  void undefinedAttributeFailsTheCachedRendering() {
+    try (Handle handle = jdbi.open()) {
+      assertThatThrownBy(
+              () -> handle.createQuery("select count(*) from <table>").mapTo(Integer.class).one())
+          .isInstanceOf(UnableToCreateStatementException.class)
+          .hasMessageContaining("table");
+
+      assertThat(count(handle, "event")).isZero();
+    }
+  }
+
+  private static int count(Handle handle, String table) {
+    return handle
+        .createQuery("select count(*) from <table>")
+        .define("table", table)
+        .mapTo(Integer.class)
+        .one();
+  }
+
+  @Configuration
+  @EnableAutoConfiguration
+  static class TuningConfiguration {}
+}
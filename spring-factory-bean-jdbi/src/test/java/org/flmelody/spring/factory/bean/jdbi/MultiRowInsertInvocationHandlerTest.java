@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.jdbi;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+import org.flmelody.spring.factory.bean.JdbiProperties;
+import org.flmelody.spring.factory.bean.JdbiRepositoryScan;
+import org.flmelody.spring.factory.bean.MultiRowInsert;
+import org.flmelody.spring.factory.bean.jdbi.multirow.NoteRepository;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.sqlobject.SqlObjectPlugin;
+import org.jdbi.v3.sqlobject.customizer.Bind;
+import org.jdbi.v3.sqlobject.statement.SqlBatch;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * @author esotericman
+ */
+@SpringBootTest(classes = MultiRowInsertInvocationHandlerTest.MultiRowConfiguration.class)
+class MultiRowInsertInvocationHandlerTest {
+  @Autowired private NoteRepository noteRepository;
+
+  @Test
+  void chunksAreCustomizedLikeTheMethod() {
+    // the not null created column is bound by @Timestamped
+    int[] counts = noteRepository.insert(List.of(1L, 2L, 3L), List.of("a", "b", "c"));
+
+    assertThat(counts).containsExactly(1, 1, 1);
+    assertThat(noteRepository.findTexts()).containsExactly("it's (a)", "it's (b)", "it's (c)");
+  }
+
+  @Test
+  void statementsThatCannotBeSplitWithCertaintyAreRejected() {
+    Jdbi standalone = Jdbi.create("jdbc:h2:mem:rejected").installPlugin(new SqlObjectPlugin());
+    for (Class<?> repository :
+        List.of(CommentedRepository.class, UpsertRepository.class, EscapedRepository.class)) {
+      assertThatThrownBy(() -> rewrite(standalone, repository))
+          .isInstanceOf(IllegalStateException.class);
+    }
+    assertThat(MultiRowInsertInvocationHandler.isMultiRowInsert(PlainRepository.class)).isFalse();
+  }
+
+  private static <T> void rewrite(Jdbi jdbi, Class<T> repository) {
+    new MultiRowInsertInvocationHandler<>(
+        repository, jdbi.onDemand(repository), jdbi, new JdbiProperties.Batch());
+  }
+
+  @MultiRowInsert
+  interface CommentedRepository {
+    @SqlBatch("insert into note (id, text) /* (:ignored) */ values (:id, :text)")
+    void insert(@Bind("id") List<Long> ids, @Bind("text") List<String> texts);
+  }
+
+  @MultiRowInsert
+  interface UpsertRepository {
+    @SqlBatch("insert into note (id, text) values (:id, :text) on conflict (id) do nothing")
+    void insert(@Bind("id") List<Long> ids, @Bind("text") List<String> texts);
+  }
+
+  @MultiRowInsert
+  interface EscapedRepository {
+    @SqlBatch("insert into note (id, text) values (:id, 'it\\'s, :text')")
+    void insert(@Bind("id") List<Long> ids, @Bind("text") List<String> texts);
+  }
+
+  interface PlainRepository {
+    @SqlBatch("insert into note (id, text) values (:id, :text)")
+    void insert(@Bind("id") List<Long> ids, @Bind("text") List<String> texts);
+  }
+
+  @Configuration
+  @EnableAutoConfiguration
+  @JdbiRepositoryScan(basePackages = "org.flmelody.spring.factory.bean.jdbi.multirow")
+  static class MultiRowConfiguration {}
+}
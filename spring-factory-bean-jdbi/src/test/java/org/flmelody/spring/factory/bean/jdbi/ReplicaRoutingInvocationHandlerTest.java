@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.jdbi;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.flmelody.spring.factory.bean.JdbiReplicaRouter;
+import org.flmelody.spring.factory.bean.JdbiUnitOfWork;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.statement.UnableToCreateStatementException;
+import org.jdbi.v3.sqlobject.SqlObjectPlugin;
+import org.jdbi.v3.sqlobject.customizer.Bind;
+import org.jdbi.v3.sqlobject.statement.SqlQuery;
+import org.jdbi.v3.sqlobject.statement.SqlUpdate;
+import org.jdbi.v3.sqlobject.transaction.Transaction;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author esotericman
+ */
+class ReplicaRoutingInvocationHandlerTest {
+  private static final AtomicInteger DATABASES = new AtomicInteger();
+
+  @Test
+  void readsAreServedByReplicasAndWritesByThePrimary() {
+    Jdbi primary = database(0);
+    ReplicaRepository repository =
+        routed(
+            primary,
+            new JdbiReplicaRouter(
+                List.of(database(1), database(2)), JdbiReplicaRouter.Selection.ROUND_ROBIN));
+
+    repository.insert(1, "primary");
+
+    assertThat(repository.count()).isEqualTo(1);
+    assertThat(repository.count()).isEqualTo(2);
+    assertThat(repository.countInTransaction()).isEqualTo(1);
+    int countInUnitOfWork = JdbiUnitOfWork.execute(primary, handle -> repository.count());
+    assertThat(countInUnitOfWork).isEqualTo(1);
+    assertThat(primary.onDemand(ReplicaRepository.class).count()).isEqualTo(1);
+  }
+
+  @Test
+  void failingReplicaReadReachesTheCaller() {
+    Jdbi replica = Jdbi.create(url()).installPlugin(new SqlObjectPlugin());
+    ReplicaRepository repository =
+        routed(
+            database(0),
+            new JdbiReplicaRouter(List.of(replica), JdbiReplicaRouter.Selection.LEAST_OUTSTANDING));
+
+    repository.insert(1, "primary");
+
+    assertThatThrownBy(repository::count).isInstanceOf(UnableToCreateStatementException.class);
+    assertThatThrownBy(
+            () -> new JdbiReplicaRouter(List.of(), JdbiReplicaRouter.Selection.ROUND_ROBIN))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  private static ReplicaRepository routed(Jdbi primary, JdbiReplicaRouter replicaRouter) {
+    return new ReplicaRoutingInvocationHandler<>(
+            ReplicaRepository.class,
+            primary.onDemand(ReplicaRepository.class),
+            primary,
+            replicaRouter)
+        .newProxy();
+  }
+
+  /**
+   * Create a database holding the given number of events.
+   *
+   * @return jdbi of database
+   */
+  private static Jdbi database(int events) {
+    Jdbi jdbi = Jdbi.create(url()).installPlugin(new SqlObjectPlugin());
+    jdbi.useHandle(
+        handle -> {
+          handle.execute("create table event (id bigint primary key, name varchar(64))");
+          for (int id = 1; id <= events; id++) {
+            handle.execute("insert into event (id, name) values (?, 'replica')", id);
+          }
+        });
+    return jdbi;
+  }
+
+  private static String url() {
+    return "jdbc:h2:mem:replica" + DATABASES.incrementAndGet() + ";DB_CLOSE_DELAY=-1";
+  }
+
+  /** Repository with reads and writes. */
+  public interface ReplicaRepository {
+
+    @SqlUpdate("insert into event (id, name) values (:id, :name)")
+    void insert(@Bind("id") long id, @Bind("name") String name);
+
+    @SqlQuery("select count(*) from event")
+    int count();
+
+    @Transaction
+    @SqlQuery("select count(*) from event")
+    int countInTransaction();
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.jdbi;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.flmelody.spring.factory.bean.JdbiAsyncExecutor;
+import org.flmelody.spring.factory.bean.JdbiShardMap;
+import org.flmelody.spring.factory.bean.ShardKey;
+import org.flmelody.spring.factory.bean.Sharded;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.statement.UnableToCreateStatementException;
+import org.jdbi.v3.sqlobject.SqlObjectPlugin;
+import org.jdbi.v3.sqlobject.customizer.Bind;
+import org.jdbi.v3.sqlobject.statement.SqlQuery;
+import org.jdbi.v3.sqlobject.statement.SqlUpdate;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author esotericman
+ */
+class ShardingInvocationHandlerTest {
+  private static final AtomicInteger DATABASES = new AtomicInteger();
+  private final JdbiAsyncExecutor asyncExecutor = new JdbiAsyncExecutor(4);
+
+  @AfterEach
+  void tearDown() {
+    asyncExecutor.destroy();
+  }
+
+  @Test
+  void keyedCallsRunOnTheirShardAndOthersOnAll() {
+    Jdbi low = database(true);
+    Jdbi high = database(true);
+    ShardedRepository repository = sharded(JdbiShardMap.range(List.of(low, high), 0, 100));
+
+    repository.insert(1, "first");
+    repository.insert(2, "second");
+    repository.insert(150, "third");
+
+    assertThat(low.onDemand(ShardedRepository.class).count()).isEqualTo(2);
+    assertThat(high.onDemand(ShardedRepository.class).count()).isEqualTo(1);
+    assertThat(repository.findName(150L)).isEqualTo("third");
+    assertThat(repository.count()).isEqualTo(3);
+    assertThat(repository.names()).containsExactlyInAnyOrder("first", "second", "third");
+  }
+
+  @Test
+  void failingShardFailsTheFanOut() {
+    ShardedRepository repository =
+        sharded(JdbiShardMap.range(List.of(database(true), database(false)), 0, 100));
+
+    repository.insert(1, "first");
+
+    assertThatThrownBy(repository::count).isInstanceOf(UnableToCreateStatementException.class);
+    assertThatThrownBy(() -> repository.findName(null))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Shard key must not be null");
+  }
+
+  private ShardedRepository sharded(JdbiShardMap shardMap) {
+    return new ShardingInvocationHandler<>(ShardedRepository.class, shardMap, asyncExecutor)
+        .newProxy();
+  }
+
+  private static Jdbi database(boolean withTable) {
+    Jdbi jdbi =
+        Jdbi.create("jdbc:h2:mem:shard" + DATABASES.incrementAndGet() + ";DB_CLOSE_DELAY=-1")
+            .installPlugin(new SqlObjectPlugin());
+    if (withTable) {
+      jdbi.useHandle(
+          handle -> handle.execute("create table event (id bigint primary key, name varchar(64))"));
+    }
+    return jdbi;
+  }
+
+  /** Repository spread over shards by event id. */
+  @Sharded("eventShards")
+  public interface ShardedRepository {
+
+    @SqlUpdate("insert into event (id, name) values (:id, :name)")
+    void insert(@ShardKey @Bind("id") long id, @Bind("name") String name);
+
+    @SqlQuery("select name from event where id = :id")
+    String findName(@ShardKey @Bind("id") Long id);
+
+    @SqlQuery("select count(*) from event")
+    int count();
+
+    @SqlQuery("select name from event")
+    List<String> names();
+  }
+}
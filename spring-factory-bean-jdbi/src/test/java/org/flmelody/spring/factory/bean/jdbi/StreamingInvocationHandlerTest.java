@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.jdbi;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.stream.Stream;
+import org.flmelody.spring.factory.bean.JdbiRepositoryScan;
+import org.flmelody.spring.factory.bean.jdbi.streaming.EventRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * @author esotericman
+ */
+@SpringBootTest(classes = StreamingInvocationHandlerTest.StreamingConfiguration.class)
+class StreamingInvocationHandlerTest {
+  @Autowired private EventRepository eventRepository;
+  @Autowired private EventService eventService;
+
+  @Test
+  void streamInsideTransactionSeesAndKeepsItsWrites() {
+    assertThat(eventService.insertAndStream("created", "updated"))
+        .containsExactly("created", "updated");
+    assertThat(eventRepository.count()).isEqualTo(2);
+
+    try (Stream<String> names = eventRepository.streamNames()) {
+      assertThat(names).containsExactly("created", "updated");
+    }
+  }
+
+  /** Writes and streams in one transaction. */
+  public static class EventService {
+    private final EventRepository eventRepository;
+
+    public EventService(EventRepository eventRepository) {
+      this.eventRepository = eventRepository;
+    }
+
+    @Transactional
+    public List<String> insertAndStream(String... names) {
+      for (int i = 0; i < names.length; i++) {
+        eventRepository.insert(i, names[i]);
+      }
+      try (Stream<String> streamed = eventRepository.streamNames()) {
+        return streamed.toList();
+      }
+    }
+  }
+
+  @Configuration
+  @EnableAutoConfiguration
+  @JdbiRepositoryScan(basePackages = "org.flmelody.spring.factory.bean.jdbi.streaming")
+  static class StreamingConfiguration {
+
+    @Bean
+    EventService eventService(EventRepository eventRepository) {
+      return new EventService(eventRepository);
+    }
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.jdbi.async;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import org.flmelody.spring.factory.bean.annotation.SpringBean;
+import org.jdbi.v3.sqlobject.config.KeyColumn;
+import org.jdbi.v3.sqlobject.config.RegisterRowMapper;
+import org.jdbi.v3.sqlobject.config.ValueColumn;
+import org.jdbi.v3.sqlobject.customizer.Bind;
+import org.jdbi.v3.sqlobject.customizer.BindList;
+import org.jdbi.v3.sqlobject.statement.SqlQuery;
+import org.jdbi.v3.sqlobject.statement.SqlUpdate;
+import reactor.core.publisher.Flux;
+
+/**
+ * @author esotericman
+ */
+@SpringBean
+@RegisterRowMapper(TaskMapper.class)
+public interface TaskRepository {
+
+  @SqlUpdate("insert into task (id, title) values (:id, :title)")
+  CompletableFuture<Integer> insert(@Bind("id") long id, @Bind("title") String title);
+
+  @SqlQuery("select id, title from task where id = :id")
+  CompletableFuture<Optional<Task>> findById(@Bind("id") long id);
+
+  @SqlQuery("select id, title from task order by id")
+  CompletableFuture<List<Task>> findAll();
+
+  @SqlQuery("select id, title from task where id in (<ids>) order by id")
+  CompletableFuture<List<Task>> findByIds(@BindList("ids") List<Long> ids);
+
+  @SqlQuery("select id, title from task order by id")
+  @KeyColumn("id")
+  @ValueColumn("title")
+  CompletableFuture<Map<Long, String>> findTitles();
+
+  @SqlQuery("select id, title from task where id >= :from order by id")
+  Flux<Task> streamFrom(@Bind("from") long from);
+
+  @SqlQuery("select count(*) from task")
+  int count();
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.jdbi.multirow;
+
+import java.util.List;
+import org.flmelody.spring.factory.bean.MultiRowInsert;
+import org.flmelody.spring.factory.bean.annotation.SpringBean;
+import org.jdbi.v3.sqlobject.customizer.Bind;
+import org.jdbi.v3.sqlobject.customizer.Timestamped;
+import org.jdbi.v3.sqlobject.statement.SqlBatch;
+import org.jdbi.v3.sqlobject.statement.SqlQuery;
+
+/**
+ * @author esotericman
+ */
+@SpringBean
+public interface NoteRepository {
+
+  @MultiRowInsert(rowsPerStatement = 2)
+  @Timestamped
+  @SqlBatch("insert into note (id, text, created) values (:id, 'it''s (' || :text || ')', :now)")
+  int[] insert(@Bind("id") List<Long> ids, @Bind("text") List<String> texts);
+
+  @SqlQuery("select text from note order by id")
+  List<String> findTexts();
+}
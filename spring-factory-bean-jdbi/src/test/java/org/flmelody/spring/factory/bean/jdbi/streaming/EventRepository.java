@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.spring.factory.bean.jdbi.streaming;
+
+import java.util.stream.Stream;
+import org.flmelody.spring.factory.bean.StreamingQuery;
+import org.flmelody.spring.factory.bean.annotation.SpringBean;
+import org.jdbi.v3.sqlobject.customizer.Bind;
+import org.jdbi.v3.sqlobject.statement.SqlQuery;
+import org.jdbi.v3.sqlobject.statement.SqlUpdate;
+
+/**
+ * @author esotericman
+ */
+@SpringBean
+public interface EventRepository {
+
+  @SqlUpdate("insert into event (id, name) values (:id, :name)")
+  void insert(@Bind("id") long id, @Bind("name") String name);
+
+  @StreamingQuery(fetchSize = 1)
+  @SqlQuery("select name from event order by id")
+  Stream<String> streamNames();
+
+  @SqlQuery("select count(*) from event")
+  int count();
+}
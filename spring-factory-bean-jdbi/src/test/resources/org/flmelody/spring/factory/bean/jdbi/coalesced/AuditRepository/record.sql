@@ -0,0 +1 @@
+insert into audit (id, message) values (:id, :message)
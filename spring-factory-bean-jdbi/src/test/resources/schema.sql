@@ -0,0 +1,24 @@
+create table event
+(
+    id   bigint primary key,
+    name varchar(64) not null
+);
+
+create table task
+(
+    id    bigint primary key,
+    title varchar(64) not null
+);
+
+create table audit
+(
+    id      bigint primary key,
+    message varchar(64) not null
+);
+
+create table note
+(
+    id      bigint primary key,
+    text    varchar(64) not null,
+    created timestamp   not null
+);